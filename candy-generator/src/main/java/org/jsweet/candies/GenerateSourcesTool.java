@@ -32,6 +32,7 @@ import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.jsweet.JSweetDefTranslatorConfig;
+import org.jsweet.input.typescriptdef.TranslationCache;
 import org.jsweet.input.typescriptdef.TypescriptDef2Java;
 
 import com.martiansoftware.jsap.FlaggedOption;
@@ -106,13 +107,20 @@ public class GenerateSourcesTool {
 				+ "* coreVersion: " + coreVersion + "\n" //
 				+ " to out: " + outDir.getAbsolutePath());
 
+		TranslationCache translationCache = null;
+		File cacheDir = jsapArgs.getFile("cacheDir");
+		if (cacheDir != null && StringUtils.isNotBlank(cacheDir.getPath())) {
+			translationCache = new TranslationCache(cacheDir, jsapArgs.getInt("cacheSize") * 1024L * 1024L);
+		}
+
 		TypescriptDef2Java.translate( //
 				tsFiles, //
 				tsDependencies, //
 				outDir, //
 				null, //
 				false, //
-				false);
+				false, //
+				translationCache);
 
 		logger.info("**************************************************************");
 		logger.info("candy " + candyName + " successfully generated to " + outDir);
@@ -200,6 +208,23 @@ public class GenerateSourcesTool {
 				"Version of jsweet-core (ES version) to be used - one of es5, es6 - will be included by default for generation");
 		jsap.registerParameter(optionArg);
 
+		// Translation cache directory
+		optionArg = new FlaggedOption("cacheDir");
+		optionArg.setLongFlag("cacheDir");
+		optionArg.setHelp(
+				"Directory where generated sources are cached, so that generating again from the same ts definition files does not translate them again (no cache if not set)");
+		optionArg.setStringParser(FileStringParser.getParser());
+		jsap.registerParameter(optionArg);
+
+		// Translation cache size
+		optionArg = new FlaggedOption("cacheSize");
+		optionArg.setLongFlag("cacheSize");
+		optionArg.setStringParser(JSAP.INTEGER_PARSER);
+		optionArg.setDefault("" + TranslationCache.DEFAULT_MAX_SIZE / (1024 * 1024));
+		optionArg.setHelp(
+				"Maximum size of the cache directory in MB (least recently used entries are evicted beyond this size)");
+		jsap.registerParameter(optionArg);
+
 		return jsap;
 	}
 
@@ -0,0 +1,268 @@
+/* 
+ * TypeScript definitions to Java translator - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.input.typescriptdef;
+
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+import org.jsweet.input.typescriptdef.ast.CompilationUnit;
+import org.jsweet.input.typescriptdef.ast.FusedScanner;
+import org.jsweet.input.typescriptdef.ast.Scanner;
+
+/**
+ * Schedules the scanner passes that transform the TypeScript definitions ASTs.
+ * 
+ * <p>
+ * Passes are run in the order they are added. Consecutive fusable scanners
+ * (see {@link Scanner#isFusable()}) share a single traversal of the ASTs (see
+ * {@link FusedScanner}), unless one depends on another (see
+ * {@link Scanner#getDependencies()}). Since fusable scanners do not add or
+ * remove declarations, fusing scanners of consecutive passes does not hide
+ * new declarations from the following passes. Other scanners added together are run
+ * in turn on each compilation unit, and actions (such as consistency checks)
+ * are run between passes, once all the previous passes are complete.
+ * 
+ * <p>
+ * Passes that only read and modify the compilation unit they scan can be run
+ * on all the compilation units in parallel (see
+ * {@link #addParallel(Supplier)}).
+ * 
+ * @author agent
+ */
+public class PassScheduler {
+
+	private final static Logger logger = Logger.getLogger(PassScheduler.class);
+
+	private static class Step {
+		final Scanner[] scanners;
+		final Runnable action;
+		final Supplier<? extends Scanner> scannerFactory;
+
+		Step(Scanner[] scanners, Runnable action, Supplier<? extends Scanner> scannerFactory) {
+			this.scanners = scanners;
+			this.action = action;
+			this.scannerFactory = scannerFactory;
+		}
+	}
+
+	private final List<Step> steps = new ArrayList<>();
+	private final List<Scanner> fusedScanners = new ArrayList<>();
+	private final Set<Class<?>> completedScanners = new HashSet<>();
+	private int passCount = 0;
+	private int walkCount = 0;
+	private boolean fusion = true;
+	private boolean parallel = true;
+
+	/**
+	 * Enables or disables the fusion of the fusable scanners (enabled by
+	 * default). When disabled, each scanner traverses the ASTs on its own.
+	 */
+	public PassScheduler setFusion(boolean fusion) {
+		this.fusion = fusion;
+		return this;
+	}
+
+	/**
+	 * Enables or disables the parallel passes (enabled by default). When
+	 * disabled, the passes added with {@link #addParallel(Supplier)} scan the
+	 * compilation units one after the other.
+	 */
+	public PassScheduler setParallel(boolean parallel) {
+		this.parallel = parallel;
+		return this;
+	}
+
+	/**
+	 * Adds a pass made of the given scanners, which are run in turn on each
+	 * compilation unit (or in a single traversal if they are fusable).
+	 */
+	public PassScheduler add(Scanner... scanners) {
+		steps.add(new Step(scanners, null, null));
+		return this;
+	}
+
+	/**
+	 * Adds a pass that is run on all the compilation units in parallel, with
+	 * one scanner per compilation unit. The scanners must only access the
+	 * compilation unit they scan: they must not modify the context or look up
+	 * declarations through it.
+	 * 
+	 * @param scannerFactory
+	 *            creates a new scanner for each compilation unit
+	 */
+	public PassScheduler addParallel(Supplier<? extends Scanner> scannerFactory) {
+		steps.add(new Step(null, null, scannerFactory));
+		return this;
+	}
+
+	/**
+	 * Adds an action to be run once all the previously added passes are
+	 * complete.
+	 */
+	public PassScheduler addAction(Runnable action) {
+		steps.add(new Step(null, action, null));
+		return this;
+	}
+
+	/**
+	 * Runs all the passes and actions on the given compilation units.
+	 */
+	public void run(List<CompilationUnit> compilationUnits) {
+		for (Step step : steps) {
+			if (step.action != null) {
+				flushFusedScanners(compilationUnits);
+				step.action.run();
+			} else if (step.scannerFactory != null) {
+				flushFusedScanners(compilationUnits);
+				runParallel(compilationUnits, step.scannerFactory);
+			} else if (!fusion) {
+				runScanners(compilationUnits, step.scanners);
+			} else if (canFuse(step.scanners)) {
+				fusedScanners.addAll(asList(step.scanners));
+			} else {
+				flushFusedScanners(compilationUnits);
+				if (canFuse(step.scanners)) {
+					fusedScanners.addAll(asList(step.scanners));
+				} else {
+					runScanners(compilationUnits, step.scanners);
+				}
+			}
+		}
+		flushFusedScanners(compilationUnits);
+		logger.info(passCount + " passes run in " + walkCount + " AST walks ("
+				+ (passCount * compilationUnits.size() - walkCount) + " walks saved by fusion)");
+	}
+
+	/**
+	 * Gets the number of scanner passes run so far.
+	 */
+	public int getPassCount() {
+		return passCount;
+	}
+
+	/**
+	 * Gets the number of compilation unit traversals done so far.
+	 */
+	public int getWalkCount() {
+		return walkCount;
+	}
+
+	private boolean canFuse(Scanner[] scanners) {
+		List<Scanner> group = new ArrayList<>(fusedScanners);
+		for (Scanner scanner : scanners) {
+			if (!scanner.isFusable()) {
+				return false;
+			}
+			for (Class<? extends Scanner> dependency : scanner.getDependencies()) {
+				for (Scanner s : group) {
+					if (dependency.isInstance(s)) {
+						return false;
+					}
+				}
+			}
+			group.add(scanner);
+		}
+		return true;
+	}
+
+	private void checkDependencies(Scanner scanner) {
+		for (Class<? extends Scanner> dependency : scanner.getDependencies()) {
+			if (!completedScanners.contains(dependency)) {
+				logger.warn(scanner.getClass().getSimpleName() + " depends on " + dependency.getSimpleName()
+						+ ", which has not been run before");
+			}
+		}
+	}
+
+	private void flushFusedScanners(List<CompilationUnit> compilationUnits) {
+		if (fusedScanners.isEmpty()) {
+			return;
+		}
+		if (fusedScanners.size() == 1) {
+			runScanners(compilationUnits, fusedScanners.toArray(new Scanner[1]));
+		} else {
+			logger.debug("fused passes: " + fusedScanners);
+			FusedScanner fusedScanner = new FusedScanner(new ArrayList<>(fusedScanners));
+			for (Scanner scanner : fusedScanner.getScanners()) {
+				checkDependencies(scanner);
+				scanner.onScanStart();
+			}
+			for (CompilationUnit compilationUnit : compilationUnits) {
+				fusedScanner.scan(compilationUnit);
+			}
+			for (Scanner scanner : fusedScanner.getScanners()) {
+				scanner.onScanEnded();
+				completedScanners.add(scanner.getClass());
+			}
+			passCount += fusedScanner.getScanners().size();
+			walkCount += compilationUnits.size();
+		}
+		fusedScanners.clear();
+	}
+
+	private void runScanners(List<CompilationUnit> compilationUnits, Scanner[] scanners) {
+		for (Scanner scanner : scanners) {
+			checkDependencies(scanner);
+			scanner.onScanStart();
+		}
+		for (CompilationUnit compilationUnit : compilationUnits) {
+			for (Scanner scanner : scanners) {
+				try {
+					scanner.scan(compilationUnit);
+				} catch (Exception e) {
+					scanner.printStackTrace(System.err);
+					logger.error(e.getMessage(), e);
+				}
+			}
+		}
+		for (Scanner scanner : scanners) {
+			scanner.onScanEnded();
+			completedScanners.add(scanner.getClass());
+		}
+		passCount += scanners.length;
+		walkCount += scanners.length * compilationUnits.size();
+	}
+
+	private void runParallel(List<CompilationUnit> compilationUnits, Supplier<? extends Scanner> scannerFactory) {
+		Set<Class<?>> scannerClasses = ConcurrentHashMap.newKeySet();
+		(parallel ? compilationUnits.parallelStream() : compilationUnits.stream()).forEach(compilationUnit -> {
+			Scanner scanner = scannerFactory.get();
+			scannerClasses.add(scanner.getClass());
+			scanner.onScanStart();
+			try {
+				scanner.scan(compilationUnit);
+			} catch (Exception e) {
+				scanner.printStackTrace(System.err);
+				logger.error(e.getMessage(), e);
+			}
+			scanner.onScanEnded();
+		});
+		completedScanners.addAll(scannerClasses);
+		passCount++;
+		walkCount += compilationUnits.size();
+	}
+
+}
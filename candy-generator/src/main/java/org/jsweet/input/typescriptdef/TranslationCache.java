@@ -0,0 +1,259 @@
+/* 
+ * TypeScript definitions to Java translator - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.input.typescriptdef;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.jsweet.JSweetDefTranslatorConfig;
+
+/**
+ * A persistent, content-addressed cache of the Java sources generated from a
+ * set of TypeScript definition files.
+ * 
+ * <p>
+ * An entry is keyed by a hash of the contents (and paths) of all the input
+ * definitions, of the translator version and classes (see
+ * {@link #getGeneratorFingerprint()}), and of the translation parameters,
+ * so that a repeated candy generation with the same inputs copies the
+ * previously generated sources instead of parsing and translating the
+ * definitions again.
+ * 
+ * <p>
+ * Entries are directories in the cache directory. The cache is bounded in
+ * size: when it grows above its maximum size, the least recently used entries
+ * are evicted, as well as the temporary entries left by interrupted
+ * generations.
+ * 
+ * @author agent
+ */
+public class TranslationCache {
+
+	private final static Logger logger = Logger.getLogger(TranslationCache.class);
+
+	/**
+	 * The default maximum size of a cache directory (512MB).
+	 */
+	public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+	private static final String TMP_SUFFIX = ".tmp";
+
+	/**
+	 * The age after which a temporary entry is considered as left by an
+	 * interrupted generation (one hour).
+	 */
+	public static final long TMP_MAX_AGE = 60L * 60 * 1000;
+
+	private static String generatorFingerprint;
+
+	private final File directory;
+	private final long maxSize;
+
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param directory
+	 *            the directory where the entries are stored
+	 * @param maxSize
+	 *            the maximum size in bytes of all the entries
+	 */
+	public TranslationCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Gets the directory where the entries are stored.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Gets the maximum size in bytes of all the entries.
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Computes the key of the entry holding the translation of the given
+	 * definition files.
+	 * 
+	 * @param definitions
+	 *            all the definition files that are read by the translation, in
+	 *            a deterministic order
+	 * @param parameters
+	 *            the parameters that change the generated sources (the
+	 *            translator version and fingerprint are always included)
+	 * @return an hexadecimal SHA-256 hash
+	 */
+	public String computeKey(Collection<File> definitions, Object... parameters) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		update(digest, JSweetDefTranslatorConfig.APPLICATION_PROPERTIES.getProperty("application.version"));
+		update(digest, getGeneratorFingerprint());
+		for (Object parameter : parameters) {
+			update(digest, String.valueOf(parameter));
+		}
+		for (File definition : definitions) {
+			update(digest, definition.getPath());
+			digest.update(FileUtils.readFileToByteArray(definition));
+			digest.update((byte) 0);
+		}
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest()) {
+			key.append(String.format("%02x", b));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Gets a fingerprint of the generator's code, so that a rebuilt generator
+	 * with the same version (such as a snapshot) does not reuse the entries of
+	 * the previous build. It is the hash of the generator's jar, or of the
+	 * paths, sizes and modification dates of its class files when it does not
+	 * run from a jar.
+	 */
+	public static synchronized String getGeneratorFingerprint() {
+		if (generatorFingerprint == null) {
+			try {
+				MessageDigest digest = MessageDigest.getInstance("SHA-256");
+				File location = new File(TranslationCache.class.getProtectionDomain().getCodeSource().getLocation()
+						.toURI());
+				if (location.isFile()) {
+					digest.update(FileUtils.readFileToByteArray(location));
+				} else {
+					List<File> classFiles = new ArrayList<>(FileUtils.listFiles(location, null, true));
+					classFiles.sort(Comparator.comparing(File::getPath));
+					for (File classFile : classFiles) {
+						update(digest, classFile.getPath() + ":" + classFile.length() + ":" + classFile.lastModified());
+					}
+				}
+				StringBuilder fingerprint = new StringBuilder();
+				for (byte b : digest.digest()) {
+					fingerprint.append(String.format("%02x", b));
+				}
+				generatorFingerprint = fingerprint.toString();
+			} catch (Exception e) {
+				logger.warn("cannot fingerprint the generator: cache entries only depend on its version", e);
+				generatorFingerprint = "";
+			}
+		}
+		return generatorFingerprint;
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	/**
+	 * Copies the sources of the given entry, if any, to the given output
+	 * directory (which is cleaned first), and marks the entry as recently
+	 * used.
+	 * 
+	 * @return true if the entry was found and copied
+	 */
+	public boolean restore(String key, File outputDir) throws IOException {
+		File entry = new File(directory, key);
+		if (!entry.isDirectory()) {
+			return false;
+		}
+		logger.info("restoring cached translation: " + entry);
+		outputDir.mkdirs();
+		FileUtils.cleanDirectory(outputDir);
+		FileUtils.copyDirectory(entry, outputDir);
+		entry.setLastModified(System.currentTimeMillis());
+		return true;
+	}
+
+	/**
+	 * Stores the sources generated in the given output directory as the given
+	 * entry, and evicts the least recently used entries if the cache has grown
+	 * too large.
+	 */
+	public void store(String key, File outputDir) throws IOException {
+		File entry = new File(directory, key);
+		if (!entry.isDirectory()) {
+			// entries are written aside and renamed so that a concurrent or
+			// interrupted generation never sees a partial entry
+			File tmpEntry = new File(directory, key + "." + System.nanoTime() + TMP_SUFFIX);
+			// file dates are not preserved so that the temporary entry is not
+			// mistaken for an old leftover (see evict)
+			FileUtils.copyDirectory(outputDir, tmpEntry, false);
+			if (!tmpEntry.renameTo(entry)) {
+				FileUtils.deleteQuietly(tmpEntry);
+			}
+			logger.info("stored translation in cache: " + entry);
+		}
+		entry.setLastModified(System.currentTimeMillis());
+		evict();
+	}
+
+	/**
+	 * Deletes the least recently used entries until the total size of the
+	 * entries is below the maximum size. Also deletes the temporary entries
+	 * that are older than {@link #TMP_MAX_AGE}, which were left by interrupted
+	 * generations.
+	 */
+	public void evict() {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		List<File> entries = new ArrayList<>();
+		for (File file : files) {
+			if (!file.isDirectory()) {
+				continue;
+			}
+			if (file.getName().endsWith(TMP_SUFFIX)) {
+				if (System.currentTimeMillis() - file.lastModified() > TMP_MAX_AGE) {
+					logger.info("deleting leftover temporary entry: " + file);
+					FileUtils.deleteQuietly(file);
+				}
+			} else {
+				entries.add(file);
+			}
+		}
+		entries.sort(Comparator.comparingLong(File::lastModified).reversed());
+		long size = 0;
+		for (File entry : entries) {
+			size += FileUtils.sizeOfDirectory(entry);
+			if (size > maxSize) {
+				logger.info("evicting cached translation: " + entry);
+				FileUtils.deleteQuietly(entry);
+			}
+		}
+	}
+
+}
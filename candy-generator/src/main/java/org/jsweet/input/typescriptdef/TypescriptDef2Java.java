@@ -25,8 +25,15 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
@@ -96,6 +103,11 @@ public class TypescriptDef2Java {
 	public static final String TS_CORE_LIB_DIR = "lib.core";
 	public static final String TS_DOM_LIB_DIR = "lib.dom";
 	public static boolean generateMissingTypes = false;
+	/**
+	 * Tells if the definition files are parsed, and the unit-local passes run,
+	 * in parallel (otherwise, they handle one file at a time).
+	 */
+	public static boolean parallel = true;
 
 	private static void addTsDefFiles(File input, ArrayList<File> files, Predicate<File> libFilter) {
 		if (input.isDirectory()) {
@@ -121,10 +133,6 @@ public class TypescriptDef2Java {
 		}
 	}
 
-	private static void scan(List<CompilationUnit> compilationUnits, Scanner... scanners) {
-		scan(null, compilationUnits, scanners);
-	}
-
 	private static void scan(BiConsumer<CompilationUnit, Scanner> onScannedCallback,
 			List<CompilationUnit> compilationUnits, Scanner... scanners) {
 		for (Scanner scanner : scanners) {
@@ -155,13 +163,15 @@ public class TypescriptDef2Java {
 
 	private static Pattern refPattern = Pattern.compile("^///\\p{Blank}*<.*$");
 
-	private static void grabReferences(CompilationUnit cu) throws IOException {
-		for (String s : FileUtils.readLines(cu.getFile())) {
+	private static List<String> grabReferences(File tsDefFile) throws IOException {
+		List<String> references = new ArrayList<>();
+		for (String s : FileUtils.readLines(tsDefFile)) {
 			Matcher m = refPattern.matcher(s);
 			if (m.matches()) {
-				cu.addReference(s);
+				references.add(s);
 			}
 		}
+		return references;
 	}
 
 	@SuppressWarnings("serial")
@@ -171,27 +181,71 @@ public class TypescriptDef2Java {
 		}
 	};
 
-	private static void parse(Context context, File f) throws IOException {
-		// context.compilationUnits.stream().map((cu) -> { return
-		// cu.getFile();}).
-		if (context.compilationUnits.contains(new CompilationUnit(f))) {
+	/**
+	 * Parses the given definition files and the files they reference, and adds
+	 * the resulting compilation units to the context (in reference discovery
+	 * order).
+	 * 
+	 * <p>
+	 * References are discovered on the calling thread, while the discovered
+	 * files are parsed in parallel on a worker pool.
+	 */
+	private static void parse(Context context, List<File> tsDefFiles) throws IOException {
+		Set<File> discoveredFiles = ConcurrentHashMap.newKeySet();
+		for (CompilationUnit compilationUnit : context.compilationUnits) {
+			discoveredFiles.add(compilationUnit.getFile());
+		}
+		Map<File, List<String>> references = new HashMap<>();
+		List<Future<CompilationUnit>> parsedUnits = new ArrayList<>();
+		ExecutorService executor = Executors
+				.newFixedThreadPool(parallel ? Runtime.getRuntime().availableProcessors() : 1);
+		try {
+			for (File f : tsDefFiles) {
+				discover(context, f, discoveredFiles, references, parsedUnits, executor);
+			}
+			for (Future<CompilationUnit> parsedUnit : parsedUnits) {
+				CompilationUnit compilationUnit = parsedUnit.get();
+				for (String reference : references.get(compilationUnit.getFile())) {
+					compilationUnit.addReference(reference);
+				}
+				context.compilationUnits.add(compilationUnit);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while parsing", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void discover(Context context, File f, Set<File> discoveredFiles,
+			Map<File, List<String>> references, List<Future<CompilationUnit>> parsedUnits, ExecutorService executor)
+			throws IOException {
+		if (!discoveredFiles.add(f)) {
 			// logger.info("skipping: " + f);
 			return;
 		}
-		logger.info("parsing: " + f);
-		// This class is automatically generated by CUP (please generate to compile)
-		TypescriptDefParser parser = TypescriptDefParser.parseFile(f);
-		context.compilationUnits.add(parser.compilationUnit);
-		grabReferences(parser.compilationUnit);
-		for (String reference : parser.compilationUnit.getReferences()) {
+		parsedUnits.add(executor.submit(() -> {
+			logger.info("parsing: " + f);
+			// This class is automatically generated by CUP (please generate to
+			// compile)
+			return TypescriptDefParser.parseFile(f).compilationUnit;
+		}));
+		List<String> fileReferences = grabReferences(f);
+		references.put(f, fileReferences);
+		for (String reference : fileReferences) {
 			String path = Util.getLibPathFromReference(reference);
 			if (path != null) {
 				File dep = new File(f.getParent(), path);
 				if (!dep.exists()) {
 					context.reportError("dependency '" + dep + "' does not exist", (Token) null);
 				} else {
-					File tsDefFile = parser.compilationUnit.getFile();
-					boolean ignored = isIgnoredReference(tsDefFile, path);
+					boolean ignored = isIgnoredReference(f, path);
 					if (dep.getPath().contains("..")) {
 						try {
 							Path currentPath = new File("").getAbsoluteFile().toPath();
@@ -209,13 +263,30 @@ public class TypescriptDef2Java {
 					if (ignored) {
 						context.getDependenciesDefinitions().add(dep);
 					} else {
-						parse(context, dep);
+						discover(context, dep, discoveredFiles, references, parsedUnits, executor);
 					}
 				}
 			}
 		}
 	}
 
+	/**
+	 * Collects the given definition file and all the existing files it
+	 * references (transitively), which are the files read by
+	 * {@link #parse(Context, List)}.
+	 */
+	private static void collectDefinitions(File f, Set<File> definitions) throws IOException {
+		if (!f.isFile() || !definitions.add(f)) {
+			return;
+		}
+		for (String reference : grabReferences(f)) {
+			String path = Util.getLibPathFromReference(reference);
+			if (path != null) {
+				collectDefinitions(new File(f.getParent(), path), definitions);
+			}
+		}
+	}
+
 	private static boolean isIgnoredReference(File tsDefFile, String path) {
 
 		for (Map.Entry<String, String[]> ignoredReferenceEntry : IGNORED_REFERENCES.entrySet()) {
@@ -267,6 +338,26 @@ public class TypescriptDef2Java {
 			File cacheDir, //
 			boolean fetchJavadoc, //
 			boolean copyTsDefs) throws Throwable {
+		return translate(tsDefFiles, tsDefDependencies, outputDir, cacheDir, fetchJavadoc, copyTsDefs, null);
+	}
+
+	/**
+	 * Translates the given definition files to Java sources.
+	 * 
+	 * <p>
+	 * When a translation cache is given and it already holds the translation
+	 * of the same definitions, the cached sources are copied to the output
+	 * directory and the definitions are not parsed (the returned context then
+	 * holds no compilation units).
+	 */
+	public static Context translate( //
+			List<File> tsDefFiles, //
+			List<File> tsDefDependencies, //
+			File outputDir, //
+			File cacheDir, //
+			boolean fetchJavadoc, //
+			boolean copyTsDefs, //
+			TranslationCache translationCache) throws Throwable {
 
 		// comp.compile(fileObjects);
 		logger.info("input files: " + tsDefFiles);
@@ -281,13 +372,27 @@ public class TypescriptDef2Java {
 
 		logger.info("all definitions: " + context.getAllDefinitions());
 
-		for (File f : context.getAllDefinitions()) {
-			parse(context, f);
+		String cacheKey = null;
+		if (translationCache != null) {
+			Set<File> definitions = new LinkedHashSet<>();
+			for (File f : context.getAllDefinitions()) {
+				collectDefinitions(f, definitions);
+			}
+			cacheKey = translationCache.computeKey(definitions, tsDefFiles, tsDefDependencies, fetchJavadoc,
+					generateMissingTypes);
 		}
 
-		translateAst(context);
+		if (cacheKey == null || !translationCache.restore(cacheKey, outputDir)) {
+			parse(context, context.getAllDefinitions());
+
+			translateAst(context);
 
-		printAst(outputDir, context);
+			printAst(outputDir, context);
+
+			if (cacheKey != null && context.getErrorCount() == 0) {
+				translationCache.store(cacheKey, outputDir);
+			}
+		}
 
 		// copies core built-in srcs
 		// if (context.getLibrariesDefinitions()
@@ -362,98 +467,100 @@ public class TypescriptDef2Java {
 		// context.findDeclarations(TypeDeclaration.class, "*.HTMLAttributes");
 		// System.out.println();
 
-		scan(context.compilationUnits, new NameChecker(context));
+		PassScheduler passes = new PassScheduler().setFusion(context.fusePasses).setParallel(parallel);
+
+		passes.addParallel(() -> new NameChecker(context));
 
-		scan(context.compilationUnits, new FunctionTypeOfReplacer(context));
+		passes.add(new FunctionTypeOfReplacer(context));
 
-		scan(context.compilationUnits, new ImportedAndExportedReferenceExpander(context, false));
-		scan(context.compilationUnits, new ImportedAndExportedReferenceExpander(context, true));
+		passes.add(new ImportedAndExportedReferenceExpander(context, false));
+		passes.add(new ImportedAndExportedReferenceExpander(context, true));
 
-		scan(context.compilationUnits, new EmptyModulesCleaner(context));
+		passes.addParallel(() -> new EmptyModulesCleaner(context));
 
 		// assign module names
-		scan(context.compilationUnits, new PackageOrganizer(context), new TypeKindChooser(context),
-				new DeclarationBinder(context));
+		passes.add(new PackageOrganizer(context), new TypeKindChooser(context), new DeclarationBinder(context));
 
-		context.checkConsistency();
+		passes.addAction(() -> {
+			context.checkConsistency();
 
-		logger.info("dumping initial state");
-		context.dump(logger);
+			logger.info("dumping initial state");
+			context.dump(logger);
 
-		try {
-			Util.createDependencyGraph(context);
-			logger.info("dependency graph: " + context.dependencyGraph);
-		} catch (IOException e) {
-			logger.error("error when contructing dependency graph", e);
-		}
+			try {
+				Util.createDependencyGraph(context);
+				logger.info("dependency graph: " + context.dependencyGraph);
+			} catch (IOException e) {
+				logger.error("error when contructing dependency graph", e);
+			}
+		});
 
-		// scan(context.compilationUnits, new GlobalsCreator(context));
+		// passes.add(new GlobalsCreator(context));
 
-		scan(context.compilationUnits, new ModuleToTypeMerger(context));
-		scan(context.compilationUnits, new ObjectTypeCreator(context), new ObjectTypeDuplicateMerger(context));
-		scan(context.compilationUnits, new ConstructorInterfacesMerger(context));
-		scan(context.compilationUnits, new TypeMerger(context));
+		passes.add(new ModuleToTypeMerger(context));
+		passes.add(new ObjectTypeCreator(context), new ObjectTypeDuplicateMerger(context));
+		passes.add(new ConstructorInterfacesMerger(context));
+		passes.add(new TypeMerger(context));
 
-		scan(context.compilationUnits, new SuperTypesMerger(context));
+		passes.add(new SuperTypesMerger(context));
 		// does not work (prototype clashing)
-		// scan(context.compilationUnits, new
-		// FunctionalParametersExpander(context));
-		
-		logger.info("TypeReferenceExpander");
-		scan(context.compilationUnits, new TypeReferenceExpander(context));
+		// passes.add(new FunctionalParametersExpander(context));
 
-		context.calculateArrayTypes();
+		passes.addAction(() -> logger.info("TypeReferenceExpander"));
+		passes.add(new TypeReferenceExpander(context));
 
-		scan(context.compilationUnits, new TypeMacroReplacer(context));
+		passes.addAction(context::calculateArrayTypes);
 
-		scan(context.compilationUnits, new UnionTypesEraser(context));
+		passes.add(new TypeMacroReplacer(context));
 
-		// scan(context.compilationUnits, new TypeReferenceChecker(context));
+		passes.add(new UnionTypesEraser(context));
 
-		scan(context.compilationUnits, new OptionalParametersExpander(context),
-				new OptionalParametersInFunctionalTypesExpander(context), new UnionTypesExpander(context),
-				new StringTypeCreator(context), new FunctionalInterfacesCreator(context),
-				new TypeParametersSubstitutor(context), new DynamicTypeParametersExpander(context),
-				new TupleTypeCreator(context));
+		// passes.add(new TypeReferenceChecker(context));
+
+		passes.add(new OptionalParametersExpander(context), new OptionalParametersInFunctionalTypesExpander(context),
+				new UnionTypesExpander(context), new StringTypeCreator(context),
+				new FunctionalInterfacesCreator(context), new TypeParametersSubstitutor(context),
+				new DynamicTypeParametersExpander(context), new TupleTypeCreator(context));
 
 		// optional parameters must have been fully expanded in super classes
-		scan(context.compilationUnits, new ParentMethodReturnTypeSusbtitutor(context));
+		passes.add(new ParentMethodReturnTypeSusbtitutor(context));
 
-		scan(context.compilationUnits, new GlobalsCreator(context), new FieldTypeFunctionInjector(context));
+		passes.add(new GlobalsCreator(context), new FieldTypeFunctionInjector(context));
 
 		// binds declarations again to grab newly created inner types
-		scan(context.compilationUnits, new DeclarationBinder(context));
+		passes.add(new DeclarationBinder(context));
 
-		scan(context.compilationUnits, new FactoryMethodsCreator(context));
+		passes.add(new FactoryMethodsCreator(context));
 
 		// run type expansion again for partial names that would reference an
 		// import
-		scan(context.compilationUnits, new TypeReferenceExpander(context));
+		passes.add(new TypeReferenceExpander(context));
 
-		// context.dump(System.out);
-		scan(context.compilationUnits, new NameAdapter(context), new DeclarationBinder(context));
+		passes.add(new NameAdapter(context), new DeclarationBinder(context));
 		// TODO : this should be the last and it should ignore java.util.* and
 		// so on
-		scan(context.compilationUnits, new TypeReferenceChecker(context));
+		passes.add(new TypeReferenceChecker(context));
 
-		scan(context.compilationUnits, new IterableInjector(context));
+		passes.add(new IterableInjector(context));
 
-		scan(context.compilationUnits, new FunctionKindAdapter(context));
+		passes.add(new FunctionKindAdapter(context));
 
-		scan(context.compilationUnits, new UnionInterfacesCreator(context));
+		passes.add(new UnionInterfacesCreator(context));
 
-		scan(context.compilationUnits, new EmptyConstructorAdder(context), new SerializableHandler(context));
+		passes.add(new EmptyConstructorAdder(context), new SerializableHandler(context));
 
-		scan(context.compilationUnits, new ConstructorTypeReferenceReplacer(context));
+		passes.add(new ConstructorTypeReferenceReplacer(context));
 
-		scan(context.compilationUnits, new DuplicateMethodsCleaner(context));
+		passes.add(new DuplicateMethodsCleaner(context));
 
-		scan(context.compilationUnits, new ForEachClashRemover(context));
+		passes.add(new ForEachClashRemover(context));
 
 		if (context.fetchJavadoc) {
-			scan(context.compilationUnits, new DocFiller(context));
+			passes.add(new DocFiller(context));
 		}
 
+		passes.run(context.compilationUnits);
+
 		// l = context.findDeclarations(TypeDeclaration.class,
 		// "*.HTMLAttributes");
 		// System.out.println();
@@ -18,6 +18,8 @@
  */
 package org.jsweet.input.typescriptdef.ast;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Default abstract implementation for any AST node.
  * 
@@ -25,6 +27,26 @@ package org.jsweet.input.typescriptdef.ast;
  */
 public abstract class AbstractAstNode implements AstNode {
 
+	private static final AtomicInteger modificationCount = new AtomicInteger();
+
+	/**
+	 * Gets the number of structural modifications made to the ASTs so far
+	 * (added, removed, renamed or hidden declarations, and replaced types,
+	 * type arguments, type parameters or parameters). It allows the data
+	 * computed from the ASTs, such as the context's declaration index, to know
+	 * when they become stale.
+	 */
+	public static int getModificationCount() {
+		return modificationCount.get();
+	}
+
+	/**
+	 * Records a structural modification of an AST.
+	 */
+	static void notifyModification() {
+		modificationCount.incrementAndGet();
+	}
+
 	private Token token;
 	public int nodeTypeId = -1;
 	private boolean hidden = false;
@@ -63,6 +85,9 @@ public abstract class AbstractAstNode implements AstNode {
 
 	@Override
 	public void setHidden(boolean hidden) {
+		if (this.hidden != hidden) {
+			notifyModification();
+		}
 		this.hidden = hidden;
 	}
 
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.apache.commons.lang3.ArrayUtils;
@@ -70,6 +71,9 @@ public abstract class AbstractDeclaration extends AbstractAstNode implements Dec
 
 	@Override
 	public void setName(String name) {
+		if (!Objects.equals(this.name, name)) {
+			notifyModification();
+		}
 		if (name != null && (name.contains("\"") || name.contains("'"))) {
 			this.name = name.replace("\"", "").replace("'", "");
 			setQuotedName(true);
@@ -51,6 +51,7 @@ public class ArrayTypeReference extends TypeReference {
 	}
 
 	public void setComponentType(TypeReference componentType) {
+		notifyModification();
 		this.componentType = componentType;
 	}
 
@@ -101,6 +102,7 @@ public class ArrayTypeReference extends TypeReference {
 	@Override
 	public boolean substituteTypeReference(TypeReference targetType, TypeReference newType) {
 		if (componentType == targetType) {
+			notifyModification();
 			componentType = newType;
 			return true;
 		}
@@ -61,6 +61,7 @@ public class CompilationUnit implements Visitable, DeclarationContainer {
 	}
 
 	public void setDeclarations(Declaration[] declarations) {
+		AbstractAstNode.notifyModification();
 		this.declarations = declarations;
 	}
 
@@ -96,6 +97,7 @@ public class CompilationUnit implements Visitable, DeclarationContainer {
 
 	@Override
 	public void clearMembers() {
+		AbstractAstNode.notifyModification();
 		declarations = new Declaration[0];
 	}
 
@@ -106,6 +108,9 @@ public class CompilationUnit implements Visitable, DeclarationContainer {
 
 	@Override
 	public void setHidden(boolean hidden) {
+		if (this.hidden != hidden) {
+			AbstractAstNode.notifyModification();
+		}
 		this.hidden = hidden;
 	}
 
@@ -35,6 +35,7 @@ import java.util.regex.Pattern;
 import org.apache.log4j.Logger;
 import org.jsweet.JSweetDefTranslatorConfig;
 import org.jsweet.input.typescriptdef.util.DeclarationFinder;
+import org.jsweet.input.typescriptdef.util.DeclarationIndex;
 import org.jsweet.util.DirectedGraph;
 
 /**
@@ -62,6 +63,12 @@ public class Context {
 
 	public boolean verbose;
 
+	/**
+	 * Tells if the translation passes share AST traversals when possible (see
+	 * {@link org.jsweet.input.typescriptdef.PassScheduler}).
+	 */
+	public boolean fusePasses = true;
+
 	public File cacheDir = new File("cache");
 
 	public List<CompilationUnit> compilationUnits = new ArrayList<CompilationUnit>();
@@ -87,6 +94,15 @@ public class Context {
 
 	private Map<ModuleDeclaration, String> moduleNames = new HashMap<ModuleDeclaration, String>();
 
+	private int typeGeneration = 0;
+	private Map<String, QualifiedDeclaration<TypeDeclaration>> typeLookups = new HashMap<>();
+	private int typeLookupsGeneration;
+	private int typeLookupsModificationCount;
+
+	private DeclarationIndex declarationIndex;
+	private int declarationIndexModificationCount;
+	private List<CompilationUnit> indexedCompilationUnits;
+
 	public Map<DeclarationContainer, List<TypeDeclaration>> generatedObjectTypes = new HashMap<>();
 
 	/**
@@ -146,6 +162,7 @@ public class Context {
 	}
 
 	public void registerType(String name, TypeDeclaration declaration) {
+		typeGeneration++;
 		typeNames.put(declaration, name);
 		// first type wins (duplicate declarations will merge to the first
 		// one, see TypeMerger)
@@ -155,6 +172,7 @@ public class Context {
 	}
 
 	public void unregisterType(TypeDeclaration declaration) {
+		typeGeneration++;
 		String typeName = getTypeName(declaration);
 		if (declaration == types.get(typeName)) {
 			types.remove(typeName);
@@ -177,6 +195,30 @@ public class Context {
 		return types.get(name);
 	}
 
+	/**
+	 * Gets the type generation, which is incremented each time a type is
+	 * registered or unregistered.
+	 */
+	public int getTypeGeneration() {
+		return typeGeneration;
+	}
+
+	/**
+	 * Gets the memoized type lookups of the scanners (a key identifies the
+	 * looked up name and the scope of the lookup). Lookups are forgotten when
+	 * types are registered or unregistered, or when the ASTs are modified
+	 * (since the compilation units' main modules are part of the lookup).
+	 */
+	public Map<String, QualifiedDeclaration<TypeDeclaration>> getTypeLookups() {
+		if (typeLookupsGeneration != typeGeneration
+				|| typeLookupsModificationCount != AbstractAstNode.getModificationCount()) {
+			typeLookups.clear();
+			typeLookupsGeneration = typeGeneration;
+			typeLookupsModificationCount = AbstractAstNode.getModificationCount();
+		}
+		return typeLookups;
+	}
+
 	public boolean setTypeClashingWithModule(String typeName) {
 		return clashingWithModulesTypes.add(typeName);
 	}
@@ -486,6 +528,44 @@ public class Context {
 		moduleNames.put(moduleDeclaration, name);
 	}
 
+	/**
+	 * Gets the index of the declarations of the compilation units, which is
+	 * (re)built if the compilation units or their ASTs were modified since
+	 * the last call (see {@link AbstractAstNode#getModificationCount()}).
+	 * Registering types and modules does not modify the ASTs and thus keeps
+	 * the index.
+	 */
+	private DeclarationIndex getDeclarationIndex() {
+		if (declarationIndex == null || declarationIndexModificationCount != AbstractAstNode.getModificationCount()
+				|| !isIndexed(compilationUnits)) {
+			declarationIndexModificationCount = AbstractAstNode.getModificationCount();
+			indexedCompilationUnits = new ArrayList<>(compilationUnits);
+			declarationIndex = new DeclarationIndex(this, indexedCompilationUnits);
+		}
+		return declarationIndex;
+	}
+
+	private boolean isIndexed(List<CompilationUnit> compilationUnits) {
+		if (indexedCompilationUnits.size() != compilationUnits.size()) {
+			return false;
+		}
+		for (int i = 0; i < compilationUnits.size(); i++) {
+			if (indexedCompilationUnits.get(i) != compilationUnits.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Invalidates the declaration index used by
+	 * {@link #findDeclarations(Class, String, CompilationUnit...)}, so that it
+	 * is rebuilt on the next lookup.
+	 */
+	public void invalidateDeclarationIndex() {
+		declarationIndex = null;
+	}
+
 	/**
 	 * Gets the module that contains the belonging Javascript library definition
 	 * from a fully qualified name. If the given name does not belong to any
@@ -553,6 +633,12 @@ public class Context {
 	public <T extends Declaration> List<QualifiedDeclaration<T>> findDeclarations(Class<T> type, String declFullName,
 			CompilationUnit... compilationUnits) {
 
+		DeclarationIndex index = getDeclarationIndex();
+		if (index.isIndexed(compilationUnits)) {
+			return index.findDeclarations(type, declFullName, compilationUnits);
+		}
+
+		// fallback for compilation units that do not belong to the context
 		final Pattern pattern = declFullName.contains("*")
 				? Pattern.compile(declFullName.replace(".", "\\.").replace("*", ".*")) : null;
 
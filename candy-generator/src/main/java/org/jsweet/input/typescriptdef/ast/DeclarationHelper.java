@@ -110,6 +110,7 @@ public abstract class DeclarationHelper {
 	}
 
 	public static Declaration[] addMember(DeclarationContainer container, Declaration declaration) {
+		AbstractAstNode.notifyModification();
 		return ArrayUtils.add(container.getMembers(), declaration);
 	}
 
@@ -117,6 +118,7 @@ public abstract class DeclarationHelper {
 			Declaration withNewDeclaration) {
 		int index = ArrayUtils.indexOf(container.getMembers(), existingDeclaration);
 		if (index >= 0) {
+			AbstractAstNode.notifyModification();
 			container.getMembers()[index] = withNewDeclaration;
 		}
 		return container.getMembers();
@@ -127,6 +129,7 @@ public abstract class DeclarationHelper {
 		if (index < 0) {
 			return container.getMembers();
 		}
+		AbstractAstNode.notifyModification();
 		return ArrayUtils.remove(container.getMembers(), index);
 	}
 
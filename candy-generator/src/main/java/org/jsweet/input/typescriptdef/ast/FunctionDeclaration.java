@@ -86,6 +86,7 @@ public class FunctionDeclaration extends AbstractTypedDeclaration implements Typ
 	}
 
 	public void setParameters(ParameterDeclaration[] parameters) {
+		notifyModification();
 		this.parameters = parameters;
 	}
 
@@ -96,6 +97,7 @@ public class FunctionDeclaration extends AbstractTypedDeclaration implements Typ
 
 	@Override
 	public void setTypeParameters(TypeParameterDeclaration[] typeParameters) {
+		notifyModification();
 		this.typeParameters = typeParameters;
 	}
 
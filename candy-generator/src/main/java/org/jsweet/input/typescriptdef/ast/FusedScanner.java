@@ -0,0 +1,124 @@
+/* 
+ * TypeScript definitions to Java translator - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.input.typescriptdef.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs several fusable scanners (see {@link Scanner#isFusable()}) in a single
+ * AST traversal.
+ * 
+ * <p>
+ * Each node is visited by all the scanners, in order, before its children.
+ * The scans requested by the scanners' visit methods are recorded instead of
+ * being performed, and each requested child is then visited by the scanners
+ * that asked for it, so that every scanner reaches the same nodes as when
+ * running alone (and keeps its own stack).
+ * 
+ * <p>
+ * As when running alone, a scanner that throws an exception stops scanning the
+ * current compilation unit, while the other scanners go on.
+ * 
+ * @author agent
+ */
+public class FusedScanner {
+
+	private final static Logger logger = Logger.getLogger(FusedScanner.class);
+
+	private static class Request {
+		final Visitable visitable;
+		final List<Scanner> scanners = new ArrayList<>();
+
+		Request(Visitable visitable) {
+			this.visitable = visitable;
+		}
+	}
+
+	private final List<Scanner> scanners;
+	private final Set<Scanner> failedScanners = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	public FusedScanner(List<Scanner> scanners) {
+		this.scanners = scanners;
+	}
+
+	public List<Scanner> getScanners() {
+		return scanners;
+	}
+
+	/**
+	 * Scans the given node with all the fused scanners.
+	 */
+	public void scan(Visitable visitable) {
+		if (visitable != null && !visitable.isHidden()) {
+			failedScanners.clear();
+			dispatch(visitable, scanners);
+		}
+	}
+
+	private void dispatch(Visitable visitable, List<Scanner> scanners) {
+		List<Request> requests = new ArrayList<>();
+		Map<Visitable, Request> lastRequests = new IdentityHashMap<>();
+		int entered = 0;
+		try {
+			for (Scanner scanner : scanners) {
+				scanner.enter(visitable);
+				entered++;
+				scanner.fusedScanRequests = new ArrayList<>();
+				try {
+					visitable.accept(scanner);
+				} catch (Exception e) {
+					scanner.printStackTrace(System.err);
+					logger.error(e.getMessage(), e);
+					failedScanners.add(scanner);
+				} finally {
+					for (Visitable child : scanner.fusedScanRequests) {
+						Request request = lastRequests.get(child);
+						// a node scanned twice by the same scanner is visited
+						// twice
+						if (request == null || request.scanners.contains(scanner)) {
+							request = new Request(child);
+							requests.add(request);
+							lastRequests.put(child, request);
+						}
+						request.scanners.add(scanner);
+					}
+					scanner.fusedScanRequests = null;
+				}
+			}
+			for (Request request : requests) {
+				request.scanners.removeAll(failedScanners);
+				if (!request.scanners.isEmpty() && !request.visitable.isHidden()) {
+					dispatch(request.visitable, request.scanners);
+				}
+			}
+		} finally {
+			for (int i = 0; i < entered; i++) {
+				scanners.get(i).exit();
+			}
+		}
+	}
+
+}
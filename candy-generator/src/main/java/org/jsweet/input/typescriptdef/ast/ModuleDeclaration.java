@@ -81,6 +81,7 @@ public class ModuleDeclaration extends AbstractDeclaration implements Declaratio
 
 	@Override
 	public void clearMembers() {
+		notifyModification();
 		members = new Declaration[0];
 	}
 
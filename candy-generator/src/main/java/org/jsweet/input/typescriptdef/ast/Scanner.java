@@ -20,8 +20,10 @@ package org.jsweet.input.typescriptdef.ast;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.function.BiConsumer;
@@ -43,6 +45,22 @@ public abstract class Scanner implements Visitor {
 
 	private Stack<Visitable> stack = new Stack<Visitable>();
 
+	/**
+	 * For each stack level, the container name (null if no container yet) and
+	 * the scope (the chain of the distinct container names), maintained on
+	 * enter/exit and recomputed when the ASTs are modified (a container may
+	 * have been renamed).
+	 */
+	private List<String> containerNames = new ArrayList<>();
+	private List<String> containerScopes = new ArrayList<>();
+	private int containerNamesModificationCount = AbstractAstNode.getModificationCount();
+
+	/**
+	 * The nodes this scanner asks to scan while it is driven by a
+	 * {@link FusedScanner} (null when the scanner drives its own traversal).
+	 */
+	List<Visitable> fusedScanRequests;
+
 	protected final Logger logger = Logger.getLogger(getClass());
 
 	protected Context context;
@@ -55,6 +73,9 @@ public abstract class Scanner implements Visitor {
 	public Scanner(Scanner parentScanner) {
 		this.context = parentScanner.context;
 		this.stack = (Stack<Visitable>) parentScanner.stack.clone();
+		this.containerNames = new ArrayList<>(parentScanner.containerNames);
+		this.containerScopes = new ArrayList<>(parentScanner.containerScopes);
+		this.containerNamesModificationCount = parentScanner.containerNamesModificationCount;
 	}
 
 	public void onScanStart() {
@@ -63,6 +84,28 @@ public abstract class Scanner implements Visitor {
 	public void onScanEnded() {
 	}
 
+	/**
+	 * Tells if this scanner can share a single AST traversal with other
+	 * fusable scanners (see {@link FusedScanner}). A fusable scanner only does
+	 * pre-order work: it must not rely on the children of a node being scanned
+	 * before its visit method returns. It must not add or remove declarations
+	 * either, since the scanners it is fused with, which may belong to the
+	 * following passes, would miss the added declarations in the parts of the
+	 * ASTs they have already visited.
+	 */
+	public boolean isFusable() {
+		return false;
+	}
+
+	/**
+	 * Gets the scanners that must have completed their traversal of the ASTs
+	 * before this scanner starts (a scanner is never fused with one of its
+	 * dependencies).
+	 */
+	public List<Class<? extends Scanner>> getDependencies() {
+		return Collections.emptyList();
+	}
+
 	protected String getCurrentContainerName() {
 		return getContainerNameAtIndex(0);
 	}
@@ -74,17 +117,49 @@ public abstract class Scanner implements Visitor {
 	 *            the reversed index (0=top of the stack)
 	 */
 	protected String getContainerNameAtIndex(int i) {
-		List<String> modules = new ArrayList<String>();
-		for (int j = 0; j < getStack().size() - i; j++) {
-			Visitable v = getStack().get(j);
-			if (v instanceof ModuleDeclaration) {
-				modules.add(((ModuleDeclaration) v).getName());
-			}
-			if (v instanceof TypeDeclaration && !((TypeDeclaration) v).isAnonymous()) {
-				modules.add(((TypeDeclaration) v).getName());
+		int level = stack.size() - i - 1;
+		if (level < 0) {
+			return "";
+		}
+		updateContainerNames();
+		String containerName = containerNames.get(level);
+		return containerName == null ? "" : containerName;
+	}
+
+	private static String getContainerName(Visitable visitable) {
+		if (visitable instanceof ModuleDeclaration) {
+			return StringUtils.defaultString(((ModuleDeclaration) visitable).getName());
+		}
+		if (visitable instanceof TypeDeclaration && !((TypeDeclaration) visitable).isAnonymous()) {
+			return ((TypeDeclaration) visitable).getName();
+		}
+		return null;
+	}
+
+	private void pushContainerName(Visitable visitable) {
+		int level = containerNames.size();
+		String parentName = level == 0 ? null : containerNames.get(level - 1);
+		String parentScope = level == 0 ? "" : containerScopes.get(level - 1);
+		String name = getContainerName(visitable);
+		if (name == null) {
+			containerNames.add(parentName);
+			containerScopes.add(parentScope);
+		} else {
+			String containerName = parentName == null ? name : parentName + "." + name;
+			containerNames.add(containerName);
+			containerScopes.add(parentScope + "\n" + containerName);
+		}
+	}
+
+	private void updateContainerNames() {
+		if (containerNamesModificationCount != AbstractAstNode.getModificationCount()) {
+			containerNamesModificationCount = AbstractAstNode.getModificationCount();
+			containerNames.clear();
+			containerScopes.clear();
+			for (Visitable visitable : stack) {
+				pushContainerName(visitable);
 			}
 		}
-		return StringUtils.join(modules.iterator(), ".");
 	}
 
 	protected String getCurrentModuleName() {
@@ -137,14 +212,28 @@ public abstract class Scanner implements Visitor {
 		if (name == null) {
 			return null;
 		}
-		// NOTE: it is possible to search using the context find methods... it
-		// would be nicer but it may be slower, so we do it this way... to be
-		// thought of
-		Set<String> possibleNames = new LinkedHashSet<String>();
 		String mainModuleName = "";
 		if (getRoot() instanceof CompilationUnit) {
 			mainModuleName = ((CompilationUnit) getRoot()).getMainModule().getName();
 		}
+		// the result only depends on the scope and on the context's types
+		updateContainerNames();
+		String scope = stack.isEmpty() ? "" : containerScopes.get(stack.size() - 1);
+		String key = scope + "\t" + mainModuleName + "\t" + name;
+		Map<String, QualifiedDeclaration<TypeDeclaration>> typeLookups = context.getTypeLookups();
+		if (typeLookups.containsKey(key)) {
+			return typeLookups.get(key);
+		}
+		QualifiedDeclaration<TypeDeclaration> result = lookupTypeDeclaration(name, mainModuleName);
+		typeLookups.put(key, result);
+		return result;
+	}
+
+	private QualifiedDeclaration<TypeDeclaration> lookupTypeDeclaration(String name, String mainModuleName) {
+		// NOTE: it is possible to search using the context find methods... it
+		// would be nicer but it may be slower, so we do it this way... to be
+		// thought of
+		Set<String> possibleNames = new LinkedHashSet<String>();
 
 		// lookup in current compilation unit
 		for (int i = 0; i < getStack().size(); i++) {
@@ -545,10 +634,17 @@ public abstract class Scanner implements Visitor {
 			throw new RuntimeException("FATAL ERROR: duplicate entry: " + element);
 		}
 		stack.push(element);
+		if (containerNamesModificationCount == AbstractAstNode.getModificationCount()) {
+			pushContainerName(element);
+		}
 	}
 
 	protected void exit() {
 		stack.pop();
+		if (containerNames.size() > stack.size()) {
+			containerNames.remove(containerNames.size() - 1);
+			containerScopes.remove(containerScopes.size() - 1);
+		}
 	}
 
 	public Stack<Visitable> getStack() {
@@ -654,6 +750,10 @@ public abstract class Scanner implements Visitor {
 
 	public void scan(Visitable visitable) {
 		if (visitable != null && !visitable.isHidden()) {
+			if (fusedScanRequests != null) {
+				fusedScanRequests.add(visitable);
+				return;
+			}
 			enter(visitable);
 			try {
 				visitable.accept(this);
@@ -95,6 +95,7 @@ public class TypeDeclaration extends AbstractDeclaration
 
 	@Override
 	public void clearMembers() {
+		notifyModification();
 		members = new Declaration[0];
 	}
 
@@ -103,6 +104,7 @@ public class TypeDeclaration extends AbstractDeclaration
 	}
 
 	public void setSuperTypes(TypeReference[] superTypes) {
+		notifyModification();
 		this.superTypes = superTypes;
 	}
 
@@ -113,6 +115,7 @@ public class TypeDeclaration extends AbstractDeclaration
 
 	@Override
 	public void setTypeParameters(TypeParameterDeclaration[] typeParameters) {
+		notifyModification();
 		this.typeParameters = typeParameters;
 	}
 
@@ -251,10 +254,12 @@ public class TypeDeclaration extends AbstractDeclaration
 	}
 
 	public void setMergedSuperTypes(TypeReference[] mergedSuperTypes) {
+		notifyModification();
 		this.mergedSuperTypes = mergedSuperTypes;
 	}
 
 	public void addMergedSuperType(TypeReference mergedSuperType) {
+		notifyModification();
 		if (this.mergedSuperTypes == null) {
 			this.mergedSuperTypes = new TypeReference[] { mergedSuperType };
 		} else {
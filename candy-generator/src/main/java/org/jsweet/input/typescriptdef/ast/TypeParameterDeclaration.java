@@ -41,6 +41,7 @@ public class TypeParameterDeclaration extends AbstractDeclaration implements Typ
 	}
 
 	public void setUpperBound(TypeReference upperBound) {
+		notifyModification();
 		this.upperBound = upperBound;
 	}
 
@@ -53,6 +54,7 @@ public class TypeParameterDeclaration extends AbstractDeclaration implements Typ
 
 	@Override
 	public void setType(TypeReference type) {
+		notifyModification();
 		upperBound = type;
 	}
 
@@ -96,6 +96,7 @@ public class TypeReference extends AbstractAstNode implements NamedElement {
 	}
 
 	public void setTypeArguments(TypeReference[] typeArguments) {
+		notifyModification();
 		this.typeArguments = typeArguments;
 	}
 
@@ -232,6 +233,7 @@ public class TypeReference extends AbstractAstNode implements NamedElement {
 		if (typeArguments != null) {
 			for (int i = 0; i < typeArguments.length; i++) {
 				if (typeArguments[i] == targetType) {
+					notifyModification();
 					typeArguments[i] = newType;
 					return true;
 				}
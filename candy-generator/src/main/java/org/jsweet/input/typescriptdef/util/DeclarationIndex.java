@@ -0,0 +1,213 @@
+/* 
+ * TypeScript definitions to Java translator - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ * 
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.input.typescriptdef.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.jsweet.input.typescriptdef.ast.CompilationUnit;
+import org.jsweet.input.typescriptdef.ast.Context;
+import org.jsweet.input.typescriptdef.ast.Declaration;
+import org.jsweet.input.typescriptdef.ast.QualifiedDeclaration;
+
+/**
+ * An index of all the declarations of a set of compilation units, by
+ * qualified name, by simple name, and by qualified name segments (in a trie),
+ * so that {@link Context#findDeclarations(Class, String, CompilationUnit...)}
+ * does not need to scan the ASTs.
+ *
+ * <p>
+ * The index holds the same declarations, with the same qualified names and in
+ * the same order, as a {@link DeclarationFinder} would match. It is a snapshot
+ * of the ASTs and must be rebuilt when they are modified.
+ *
+ * @author agent
+ */
+public class DeclarationIndex {
+
+	private static class Entry {
+		final QualifiedDeclaration<Declaration> declaration;
+		final CompilationUnit compilationUnit;
+		final int rank;
+
+		Entry(QualifiedDeclaration<Declaration> declaration, CompilationUnit compilationUnit, int rank) {
+			this.declaration = declaration;
+			this.compilationUnit = compilationUnit;
+			this.rank = rank;
+		}
+	}
+
+	private static class TrieNode {
+		final Map<String, TrieNode> children = new HashMap<>();
+		final List<Entry> entries = new ArrayList<>(1);
+
+		void collect(List<Entry> result) {
+			result.addAll(entries);
+			for (TrieNode child : children.values()) {
+				child.collect(result);
+			}
+		}
+	}
+
+	private static final Comparator<Entry> RANK_COMPARATOR = (e1, e2) -> Integer.compare(e1.rank, e2.rank);
+
+	private final Map<String, List<Entry>> entriesByQualifiedName = new HashMap<>();
+	private final Map<String, List<Entry>> entriesBySimpleName = new HashMap<>();
+	private final TrieNode root = new TrieNode();
+	private final Map<CompilationUnit, Integer> compilationUnitRanks = new IdentityHashMap<>();
+
+	/**
+	 * Indexes all the (non-hidden) declarations of the given compilation units.
+	 */
+	public DeclarationIndex(Context context, List<CompilationUnit> compilationUnits) {
+		int rank = 0;
+		for (CompilationUnit compilationUnit : compilationUnits) {
+			compilationUnitRanks.put(compilationUnit, compilationUnitRanks.size());
+			DeclarationFinder<Declaration> finder = new DeclarationFinder<>(context,
+					(scanner, node) -> scanner.setMatchState(node instanceof Declaration, true));
+			finder.scan(compilationUnit);
+			for (QualifiedDeclaration<Declaration> match : finder.getMatches()) {
+				add(new Entry(match, compilationUnit, rank++));
+			}
+		}
+	}
+
+	private void add(Entry entry) {
+		String name = entry.declaration.getQualifiedDeclarationName();
+		entriesByQualifiedName.computeIfAbsent(name, n -> new ArrayList<>(1)).add(entry);
+		entriesBySimpleName.computeIfAbsent(Util.getSimpleName(name), n -> new ArrayList<>(1)).add(entry);
+		TrieNode node = root;
+		for (String segment : name.split("\\.")) {
+			node = node.children.computeIfAbsent(segment, s -> new TrieNode());
+		}
+		node.entries.add(entry);
+	}
+
+	/**
+	 * Tells if all the given compilation units are indexed.
+	 */
+	public boolean isIndexed(CompilationUnit... compilationUnits) {
+		for (CompilationUnit compilationUnit : compilationUnits) {
+			if (!compilationUnitRanks.containsKey(compilationUnit)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the indexed declarations of the given type and matching the given
+	 * expression (see
+	 * {@link Context#findDeclarations(Class, String, CompilationUnit...)}).
+	 *
+	 * @param type
+	 *            the declarations type
+	 * @param declExpression
+	 *            an expression to match the full name, supporting wildcards
+	 * @param compilationUnits
+	 *            the indexed compilation unit(s) to search in (all indexed
+	 *            compilation units if empty)
+	 * @return the list of all matching declarations by match order
+	 */
+	public <T extends Declaration> List<QualifiedDeclaration<T>> findDeclarations(Class<T> type,
+			String declExpression, CompilationUnit... compilationUnits) {
+		List<Entry> candidates;
+		Pattern pattern = null;
+		if (declExpression.contains("*")) {
+			pattern = Pattern.compile(declExpression.replace(".", "\\.").replace("*", ".*"));
+			candidates = getWildcardCandidates(declExpression);
+		} else {
+			candidates = entriesByQualifiedName.get(declExpression);
+		}
+		if (candidates == null || candidates.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		Map<CompilationUnit, Integer> searchedCompilationUnits = null;
+		if (compilationUnits.length > 0) {
+			searchedCompilationUnits = new IdentityHashMap<>();
+			for (CompilationUnit compilationUnit : compilationUnits) {
+				searchedCompilationUnits.putIfAbsent(compilationUnit, searchedCompilationUnits.size());
+			}
+		}
+
+		List<Entry> matches = new ArrayList<>();
+		for (Entry entry : candidates) {
+			if (!type.isInstance(entry.declaration.getDeclaration())) {
+				continue;
+			}
+			if (searchedCompilationUnits != null && !searchedCompilationUnits.containsKey(entry.compilationUnit)) {
+				continue;
+			}
+			if (pattern != null && !pattern.matcher(entry.declaration.getQualifiedDeclarationName()).matches()) {
+				continue;
+			}
+			matches.add(entry);
+		}
+		if (searchedCompilationUnits != null) {
+			// match order follows the order of the searched compilation units
+			Map<CompilationUnit, Integer> unitOrder = searchedCompilationUnits;
+			Collections.sort(matches, Comparator.<Entry> comparingInt(e -> unitOrder.get(e.compilationUnit))
+					.thenComparing(RANK_COMPARATOR));
+		} else {
+			Collections.sort(matches, RANK_COMPARATOR);
+		}
+
+		List<QualifiedDeclaration<T>> result = new ArrayList<>(matches.size());
+		for (Entry entry : matches) {
+			@SuppressWarnings("unchecked")
+			QualifiedDeclaration<T> declaration = (QualifiedDeclaration<T>) (QualifiedDeclaration<?>) entry.declaration;
+			result.add(declaration);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the entries that may match a wildcard expression: the entries with
+	 * the expression's simple name when it is a literal (as in "*.c"), or else
+	 * all the entries under the expression's literal segments (as in "a.*").
+	 */
+	private List<Entry> getWildcardCandidates(String declExpression) {
+		String simpleName = Util.getSimpleName(declExpression);
+		if (!simpleName.contains("*")) {
+			return entriesBySimpleName.get(simpleName);
+		}
+		TrieNode node = root;
+		String literalPrefix = declExpression.substring(0, declExpression.indexOf('*'));
+		int end = literalPrefix.lastIndexOf('.');
+		if (end > 0) {
+			for (String segment : literalPrefix.substring(0, end).split("\\.")) {
+				node = node.children.get(segment);
+				if (node == null) {
+					return null;
+				}
+			}
+		}
+		List<Entry> candidates = new ArrayList<>();
+		node.collect(candidates);
+		return candidates;
+	}
+
+}
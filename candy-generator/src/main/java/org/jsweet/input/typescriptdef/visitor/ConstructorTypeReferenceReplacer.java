@@ -18,6 +18,9 @@
  */
 package org.jsweet.input.typescriptdef.visitor;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.jsweet.input.typescriptdef.ast.Context;
 import org.jsweet.input.typescriptdef.ast.Scanner;
 import org.jsweet.input.typescriptdef.ast.TypeReference;
@@ -31,6 +34,16 @@ public class ConstructorTypeReferenceReplacer extends Scanner {
 		super(context);
 	}
 
+	@Override
+	public boolean isFusable() {
+		return true;
+	}
+
+	@Override
+	public List<Class<? extends Scanner>> getDependencies() {
+		return Collections.singletonList(ConstructorInterfacesMerger.class);
+	}
+
 	@Override
 	public void visitTypeReference(TypeReference typeReference) {
 		if (context.mergedContructors.containsKey(typeReference.getDeclaration())) {
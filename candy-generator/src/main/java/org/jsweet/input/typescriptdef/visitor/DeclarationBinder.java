@@ -39,6 +39,11 @@ public class DeclarationBinder extends Scanner {
 		super(parentScanner);
 	}
 
+	@Override
+	public boolean isFusable() {
+		return true;
+	}
+
 	@Override
 	public void visitModuleDeclaration(ModuleDeclaration moduleDeclaration) {
 		context.registerModule(getCurrentContainerName(), moduleDeclaration);
@@ -60,17 +60,17 @@ public class DynamicTypeParametersExpander extends Scanner {
 				if (context.verbose) {
 					logger.debug("expanding dynamic type for: " + functionDeclaration);
 				}
+				ParameterDeclaration[] newParameters = DeclarationHelper.copy(functionDeclaration.getParameters());
+				newParameters[i] = new ParameterDeclaration(null, functionDeclaration.getParameters()[i].getName(),
+						new ArrayTypeReference(null,
+								functionDeclaration.getParameters()[i].getType().getTypeArguments()[0]),
+						functionDeclaration.getParameters()[i].isOptional(),
+						functionDeclaration.getParameters()[i].isVarargs());
 				FunctionDeclaration newFunction = new FunctionDeclaration(functionDeclaration.getToken(),
-						functionDeclaration.getName(), functionDeclaration.getType(),
-						DeclarationHelper.copy(functionDeclaration.getParameters()),
+						functionDeclaration.getName(), functionDeclaration.getType(), newParameters,
 						functionDeclaration.getTypeParameters());
 				newFunction.setDocumentation(functionDeclaration.getDocumentation());
 				newFunction.setModifiers(functionDeclaration.getModifiers());
-				newFunction.getParameters()[i] = new ParameterDeclaration(null,
-						functionDeclaration.getParameters()[i].getName(), new ArrayTypeReference(null,
-								functionDeclaration.getParameters()[i].getType().getTypeArguments()[0]),
-						functionDeclaration.getParameters()[i].isOptional(),
-						functionDeclaration.getParameters()[i].isVarargs());
 				if (!ArrayUtils.contains(container.getMembers(), newFunction)) {
 					container.addMember(newFunction);
 				}
@@ -18,6 +18,9 @@
  */
 package org.jsweet.input.typescriptdef.visitor;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.jsweet.input.typescriptdef.ast.Context;
 import org.jsweet.input.typescriptdef.ast.FunctionDeclaration;
 import org.jsweet.input.typescriptdef.ast.ParameterDeclaration;
@@ -39,6 +42,11 @@ public class EmptyConstructorAdder extends Scanner {
 		super(context);
 	}
 
+	@Override
+	public List<Class<? extends Scanner>> getDependencies() {
+		return Collections.singletonList(OptionalParametersExpander.class);
+	}
+
 	@Override
 	public void visitTypeDeclaration(TypeDeclaration typeDeclaration) {
 		boolean hasEmptyConstructor = false;
@@ -18,6 +18,8 @@
  */
 package org.jsweet.input.typescriptdef.visitor;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 
 import org.jsweet.JSweetDefTranslatorConfig;
@@ -41,6 +43,16 @@ public class ForEachClashRemover extends Scanner {
 		super(context);
 	}
 
+	@Override
+	public boolean isFusable() {
+		return true;
+	}
+
+	@Override
+	public List<Class<? extends Scanner>> getDependencies() {
+		return Collections.singletonList(TypeReferenceChecker.class);
+	}
+
 	@Override
 	public void visitFunctionDeclaration(FunctionDeclaration functionDeclaration) {
 		if ("forEach".equals(functionDeclaration.getName()) && functionDeclaration.getParameters().length == 1) {
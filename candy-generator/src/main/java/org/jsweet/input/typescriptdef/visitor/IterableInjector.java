@@ -18,6 +18,9 @@
  */
 package org.jsweet.input.typescriptdef.visitor;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.commons.lang3.ArrayUtils;
 import org.jsweet.JSweetDefTranslatorConfig;
 import org.jsweet.input.typescriptdef.ast.Context;
@@ -41,6 +44,11 @@ public class IterableInjector extends Scanner {
 		super(context);
 	}
 
+	@Override
+	public List<Class<? extends Scanner>> getDependencies() {
+		return Collections.singletonList(TypeReferenceChecker.class);
+	}
+
 	@Override
 	public void visitTypeDeclaration(TypeDeclaration typeDeclaration) {
 		for (FunctionDeclaration getFunction : typeDeclaration
@@ -18,6 +18,9 @@
  */
 package org.jsweet.input.typescriptdef.visitor;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.jsweet.JSweetDefTranslatorConfig;
 import org.jsweet.input.typescriptdef.ast.Context;
 import org.jsweet.input.typescriptdef.ast.FunctionDeclaration;
@@ -38,6 +41,16 @@ public class SerializableHandler extends Scanner {
 		super(context);
 	}
 
+	@Override
+	public boolean isFusable() {
+		return true;
+	}
+
+	@Override
+	public List<Class<? extends Scanner>> getDependencies() {
+		return Collections.singletonList(DeclarationBinder.class);
+	}
+
 	@Override
 	public void visitTypeDeclaration(TypeDeclaration typeDeclaration) {
 		if (typeDeclaration.isSubtypeOf(context.getTypeDeclaration(JSweetDefTranslatorConfig.LANG_PACKAGE + "."
@@ -37,6 +37,11 @@ public class TypeKindChooser extends Scanner {
 		super(context);
 	}
 
+	@Override
+	public boolean isFusable() {
+		return true;
+	}
+
 	@Override
 	public void visitTypeDeclaration(TypeDeclaration typeDeclaration) {
 		if (!typeDeclaration.isAnonymous() && !"enum".equals(typeDeclaration.getKind())
@@ -18,6 +18,7 @@
  */
 package org.jsweet.input.typescriptdef.visitor;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.jsweet.JSweetDefTranslatorConfig;
@@ -48,6 +49,11 @@ public class UnionInterfacesCreator extends Scanner {
 		super(context);
 	}
 
+	@Override
+	public List<Class<? extends Scanner>> getDependencies() {
+		return Collections.singletonList(UnionTypesExpander.class);
+	}
+
 	@Override
 	public void visitUnionTypeReference(UnionTypeReference unionTypeReference) {
 
@@ -4,11 +4,15 @@ import static java.util.Arrays.asList;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.jsweet.input.typescriptdef.TypescriptDef2Java;
 import org.jsweet.input.typescriptdef.ast.CompilationUnit;
@@ -57,17 +61,9 @@ public abstract class AbstractTest {
 		compilationUnits.add(parser.compilationUnit);
 		List<File> dependencies = new ArrayList<>();
 		if (includeCoreLib) {
-			try {
-				URL libCoreURL = getClass().getClassLoader().getResource(TypescriptDef2Java.TS_CORE_LIB_DIR);
-				File libCoreDir = new File(libCoreURL.toURI());
-				for (File lib : libCoreDir.listFiles()) {
-					if (lib.isFile()) {
-						dependencies.add(lib);
-						compilationUnits.add(TypescriptDefParser.parseFile(lib).compilationUnit);
-					}
-				}
-			} catch (Exception e) {
-				throw new RuntimeException(e);
+			dependencies.addAll(getCoreLibFiles());
+			for (File lib : dependencies) {
+				compilationUnits.add(TypescriptDefParser.parseFile(lib).compilationUnit);
 			}
 		}
 		Context context = new Context(asList(testFile), dependencies, false);
@@ -76,6 +72,33 @@ public abstract class AbstractTest {
 		return context;
 	}
 
+	protected List<File> getCoreLibFiles() {
+		List<File> files = new ArrayList<>();
+		try {
+			URL libCoreURL = getClass().getClassLoader().getResource(TypescriptDef2Java.TS_CORE_LIB_DIR);
+			File libCoreDir = new File(libCoreURL.toURI());
+			for (File lib : libCoreDir.listFiles()) {
+				if (lib.isFile()) {
+					files.add(lib);
+				}
+			}
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		return files;
+	}
+
+	/**
+	 * Reads all the files of the given directory, by relative path.
+	 */
+	protected Map<String, String> readFiles(File dir) throws IOException {
+		Map<String, String> files = new TreeMap<>();
+		for (File file : FileUtils.listFiles(dir, null, true)) {
+			files.put(dir.toURI().relativize(file.toURI()).getPath(), FileUtils.readFileToString(file));
+		}
+		return files;
+	}
+
 	protected Context parseAndTranslateTestFile(String testFilePath, Consumer<Context> afterParse,
 			boolean includeCoreLib) throws FileNotFoundException {
 		Context context = parseTestFile(testFilePath, includeCoreLib);
@@ -1,14 +1,22 @@
 package org.jsweet.input.typescriptdef.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.FileNotFoundException;
 
 import org.jsweet.input.typescriptdef.ast.Context;
+import org.jsweet.input.typescriptdef.ast.Declaration;
 import org.jsweet.input.typescriptdef.ast.FunctionDeclaration;
+import org.jsweet.input.typescriptdef.ast.FunctionalTypeReference;
 import org.jsweet.input.typescriptdef.ast.ModuleDeclaration;
+import org.jsweet.input.typescriptdef.ast.ParameterDeclaration;
 import org.jsweet.input.typescriptdef.ast.TypeDeclaration;
+import org.jsweet.input.typescriptdef.ast.TypeParameterDeclaration;
+import org.jsweet.input.typescriptdef.ast.TypeReference;
+import org.jsweet.input.typescriptdef.ast.UnionTypeReference;
 import org.jsweet.input.typescriptdef.ast.VariableDeclaration;
 import org.junit.Test;
 
@@ -44,4 +52,77 @@ public class StructureTest extends AbstractTest {
 		assertEquals(0, context.findDeclarations(VariableDeclaration.class, "def.structure.test.Globals.Math").size());
 	}
 
+	@Test
+	public void declarationIndexTest() throws FileNotFoundException {
+		Context context = parseTestFile("structure/declaration-index-test");
+
+		// replaced type (object type members are matched with a wildcard since
+		// object types are anonymous)
+		assertEquals(1, context.findDeclarations(Declaration.class, "m.I.f.*.a").size());
+		context.findFirstDeclaration(VariableDeclaration.class, "m.I.f").getDeclaration()
+				.setType(new TypeReference(null, "string", null));
+		assertEquals(0, context.findDeclarations(Declaration.class, "m.I.f.*.a").size());
+
+		// replaced type arguments
+		assertEquals(1, context.findDeclarations(Declaration.class, "m.I.h.*.b").size());
+		context.findFirstDeclaration(VariableDeclaration.class, "m.I.h").getDeclaration().getType()
+				.setTypeArguments(new TypeReference[] { new TypeReference(null, "number", null) });
+		assertEquals(0, context.findDeclarations(Declaration.class, "m.I.h.*.b").size());
+
+		// selected union type operand
+		assertEquals(1, context.findDeclarations(Declaration.class, "m.I.u.*.c").size());
+		((UnionTypeReference) context.findFirstDeclaration(VariableDeclaration.class, "m.I.u").getDeclaration()
+				.getType()).setSelected(UnionTypeReference.Selected.RIGHT);
+		assertEquals(0, context.findDeclarations(Declaration.class, "m.I.u.*.c").size());
+
+		// replaced functional type parameters
+		assertEquals(1, context.findDeclarations(ParameterDeclaration.class, "m.I.fn.p").size());
+		((FunctionalTypeReference) context.findFirstDeclaration(VariableDeclaration.class, "m.I.fn")
+				.getDeclaration().getType()).setParameters(new ParameterDeclaration[0]);
+		assertEquals(0, context.findDeclarations(ParameterDeclaration.class, "m.I.fn.p").size());
+
+		// replaced type parameters
+		assertEquals(1, context.findDeclarations(TypeParameterDeclaration.class, "m.I.g.T").size());
+		context.findFirstDeclaration(FunctionDeclaration.class, "m.I.g").getDeclaration()
+				.setTypeParameters(new TypeParameterDeclaration[] { new TypeParameterDeclaration(null, "U") });
+		assertEquals(0, context.findDeclarations(TypeParameterDeclaration.class, "m.I.g.T").size());
+		assertEquals(1, context.findDeclarations(TypeParameterDeclaration.class, "m.I.g.U").size());
+
+		// wildcard lookups see the same declarations
+		assertEquals(1, context.findDeclarations(TypeParameterDeclaration.class, "m.I.*.U").size());
+		assertEquals(0, context.findDeclarations(TypeParameterDeclaration.class, "m.I.*.T").size());
+	}
+
+	@Test
+	public void typeLookupsTest() throws FileNotFoundException {
+		Context context = parseTestFile("structure/declaration-index-test");
+		TypeDeclaration i = context.findFirstDeclaration(TypeDeclaration.class, "m.I").getDeclaration();
+
+		// memoized lookups (including misses) are kept while nothing changes
+		context.getTypeLookups().put("I", null);
+		assertTrue(context.getTypeLookups().containsKey("I"));
+
+		// registering a type forgets the lookups
+		int generation = context.getTypeGeneration();
+		context.registerType("m.I", i);
+		assertEquals(generation + 1, context.getTypeGeneration());
+		assertFalse(context.getTypeLookups().containsKey("I"));
+
+		// and so does unregistering it
+		context.getTypeLookups().put("I", null);
+		context.unregisterType(i);
+		assertFalse(context.getTypeLookups().containsKey("I"));
+
+		// modifying the ASTs forgets the lookups
+		context.getTypeLookups().put("I", null);
+		assertTrue(context.getTypeLookups().containsKey("I"));
+		i.setName("J");
+		assertFalse(context.getTypeLookups().containsKey("I"));
+
+		// setting the same name is not a modification
+		context.getTypeLookups().put("J", null);
+		i.setName("J");
+		assertTrue(context.getTypeLookups().containsKey("J"));
+	}
+
 }
@@ -0,0 +1,96 @@
+package org.jsweet.input.typescriptdef.test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.jsweet.input.typescriptdef.TranslationCache;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TranslationCacheTest extends AbstractTest {
+
+	private File testDir;
+	private File cacheDir;
+
+	@Before
+	public void createDirectories() throws IOException {
+		testDir = new File("target/test-output/translation-cache");
+		FileUtils.deleteQuietly(testDir);
+		cacheDir = new File(testDir, "cache");
+		cacheDir.mkdirs();
+	}
+
+	private File writeFile(File dir, String name, String content) throws IOException {
+		File file = new File(dir, name);
+		FileUtils.writeStringToFile(file, content);
+		return file;
+	}
+
+	@Test
+	public void keyTest() throws IOException {
+		TranslationCache cache = new TranslationCache(cacheDir, TranslationCache.DEFAULT_MAX_SIZE);
+		File definition = writeFile(testDir, "a.d.ts", "declare var a: string;");
+
+		String key = cache.computeKey(asList(definition), false);
+		assertEquals(key, cache.computeKey(asList(definition), false));
+		assertNotEquals(key, cache.computeKey(asList(definition), true));
+
+		writeFile(testDir, "a.d.ts", "declare var a: number;");
+		assertNotEquals(key, cache.computeKey(asList(definition), false));
+
+		assertFalse(TranslationCache.getGeneratorFingerprint().isEmpty());
+		assertEquals(TranslationCache.getGeneratorFingerprint(), TranslationCache.getGeneratorFingerprint());
+	}
+
+	@Test
+	public void storeAndRestoreTest() throws IOException {
+		TranslationCache cache = new TranslationCache(cacheDir, TranslationCache.DEFAULT_MAX_SIZE);
+		File outputDir = new File(testDir, "output");
+		writeFile(new File(outputDir, "def/a"), "A.java", "class A {}");
+
+		assertFalse(cache.restore("k", outputDir));
+		cache.store("k", outputDir);
+
+		File restoredDir = new File(testDir, "restored");
+		writeFile(restoredDir, "Stale.java", "class Stale {}");
+		assertTrue(cache.restore("k", restoredDir));
+		assertEquals(readFiles(outputDir), readFiles(restoredDir));
+
+		// no temporary entry is left
+		assertEquals(1, cacheDir.listFiles().length);
+	}
+
+	@Test
+	public void evictionTest() throws IOException {
+		TranslationCache cache = new TranslationCache(cacheDir, 1024);
+		File outputDir = new File(testDir, "output");
+		writeFile(outputDir, "A.java", new String(new char[600]).replace('\0', 'a'));
+
+		cache.store("k1", outputDir);
+		new File(cacheDir, "k1").setLastModified(System.currentTimeMillis() - 10000);
+		cache.store("k2", outputDir);
+		// least recently used entry is evicted
+		assertFalse(new File(cacheDir, "k1").exists());
+		assertTrue(new File(cacheDir, "k2").exists());
+
+		// temporary entries are deleted once they are too old to belong to a
+		// running generation
+		File oldTmpEntry = new File(cacheDir, "k3.1.tmp");
+		writeFile(oldTmpEntry, "A.java", "class A {}");
+		oldTmpEntry.setLastModified(System.currentTimeMillis() - TranslationCache.TMP_MAX_AGE - 1000);
+		File recentTmpEntry = new File(cacheDir, "k4.2.tmp");
+		writeFile(recentTmpEntry, "A.java", "class A {}");
+		cache.evict();
+		assertFalse(oldTmpEntry.exists());
+		assertTrue(recentTmpEntry.exists());
+		assertTrue(new File(cacheDir, "k2").exists());
+	}
+
+}
@@ -8,10 +8,14 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import org.jsweet.JSweetDefTranslatorConfig;
+import org.jsweet.input.typescriptdef.TypescriptDef2Java;
 import org.jsweet.input.typescriptdef.ast.ArrayTypeReference;
 import org.jsweet.input.typescriptdef.ast.Context;
 import org.jsweet.input.typescriptdef.ast.FunctionDeclaration;
@@ -506,4 +510,52 @@ public class TranslationTest extends AbstractTest {
 
 	}
 
+	@Test
+	public void fusedPassesTest() throws IOException {
+		File fusedDir = new File("target/test-output/fused");
+		File unfusedDir = new File("target/test-output/unfused");
+
+		Context fused = parseAndTranslateTestFile("types/default-test", null, true);
+		TypescriptDef2Java.printAst(fusedDir, fused);
+		Context unfused = parseAndTranslateTestFile("types/default-test", c -> c.fusePasses = false, true);
+		TypescriptDef2Java.printAst(unfusedDir, unfused);
+
+		Map<String, String> fusedFiles = readFiles(fusedDir);
+		Map<String, String> unfusedFiles = readFiles(unfusedDir);
+		assertFalse(fusedFiles.isEmpty());
+		assertEquals(unfusedFiles.keySet(), fusedFiles.keySet());
+		for (String path : fusedFiles.keySet()) {
+			assertEquals(path, unfusedFiles.get(path), fusedFiles.get(path));
+		}
+	}
+
+	@Test
+	public void parallelTranslationTest() throws Throwable {
+		List<File> tsDefFiles = asList(getTestFile("types/default-test"));
+		List<File> dependencies = getCoreLibFiles();
+		File sequentialDir = new File("target/test-output/sequential");
+		File parallelDir = new File("target/test-output/parallel");
+
+		Map<String, String> sequentialFiles;
+		Map<String, String> parallelFiles;
+		try {
+			TypescriptDef2Java.parallel = false;
+			TypescriptDef2Java.translate(tsDefFiles, dependencies, sequentialDir, null, false, false);
+			sequentialFiles = readFiles(sequentialDir);
+		} finally {
+			TypescriptDef2Java.parallel = true;
+		}
+		assertFalse(sequentialFiles.isEmpty());
+
+		// parallel runs must be deterministic and equal to the sequential run
+		for (int i = 0; i < 2; i++) {
+			TypescriptDef2Java.translate(tsDefFiles, dependencies, parallelDir, null, false, false);
+			parallelFiles = readFiles(parallelDir);
+			assertEquals(sequentialFiles.keySet(), parallelFiles.keySet());
+			for (String path : sequentialFiles.keySet()) {
+				assertEquals(path, sequentialFiles.get(path), parallelFiles.get(path));
+			}
+		}
+	}
+
 }
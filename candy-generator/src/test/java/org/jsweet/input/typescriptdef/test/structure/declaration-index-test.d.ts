@@ -0,0 +1,11 @@
+declare namespace m {
+
+    interface I {
+        f: { a: string };
+        h: Array<{ b: number }>;
+        u: { c: string } | number;
+        fn: (p: string) => void;
+        g<T>(x: T): void;
+    }
+
+}
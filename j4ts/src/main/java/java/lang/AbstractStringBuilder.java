@@ -17,30 +17,38 @@ package java.lang;
 
 import static javaemul.internal.InternalPreconditions.checkStringBounds;
 
+import def.js.Array;
+
 /**
  * A base class to share implementation between {@link StringBuffer} and {@link StringBuilder}.
  * <p>
- * Most methods will give expected performance results. Exception is {@link #setCharAt(int, char)},
- * which is O(n), and thus should not be used many times on the same <code>StringBuffer</code>.
+ * The characters are kept as a list of segments (a rope): appending pushes a new segment, and the
+ * segments are only joined when the whole string is needed (for instance by {@link #toString()}).
+ * Modifications in the middle of the string (see {@link #replace0(int, int, String)}) only split
+ * the segments at the bounds of the modified range, so that the rest of the string is not copied.
  */
 abstract class AbstractStringBuilder {
 
-  String string;
+  /**
+   * This field holds a JavaScript array of non-empty strings.
+   */
+  private String[] segments = new String[0];
+
+  private int length;
 
   public AbstractStringBuilder(String string) {
-    this.string = string;
+    appendString(string);
   }
 
   public int length() {
-    return string.length();
+    return length;
   }
 
   public void setLength(int newLength) {
-    int oldLength = length();
-    if (newLength < oldLength) {
-      string = string.substring(0, newLength);
-    } else if (newLength > oldLength) {
-      string += String.valueOf(new char[newLength - oldLength]);
+    if (newLength < length) {
+      replace0(newLength, length, "");
+    } else if (newLength > length) {
+      appendString(String.valueOf(new char[newLength - length]));
     }
   }
 
@@ -59,74 +67,137 @@ abstract class AbstractStringBuilder {
   }
 
   public char charAt(int index) {
-    return string.charAt(index);
+    if (index >= 0) {
+      for (int i = 0; i < segments.length; i++) {
+        String segment = segments[i];
+        if (index < segment.length()) {
+          return segment.charAt(index);
+        }
+        index -= segment.length();
+      }
+    }
+    return toString().charAt(index);
   }
 
   public void getChars(int srcStart, int srcEnd, char[] dst, int dstStart) {
     checkStringBounds(srcStart, srcEnd, length());
     checkStringBounds(dstStart, dstStart + (srcEnd - srcStart), dst.length);
+    String string = toString();
     while (srcStart < srcEnd) {
       dst[dstStart++] = string.charAt(srcStart++);
     }
   }
 
   /**
-   * Warning! This method is <b>much</b> slower than the JRE implementation. If you need to do
-   * character level manipulation, you are strongly advised to use a char[] directly.
+   * Warning! This method is slower than the JRE implementation (it splits the segment holding the
+   * character). If you need to do character level manipulation, you are strongly advised to use a
+   * char[] directly.
    */
   public void setCharAt(int index, char x) {
     replace0(index, index + 1, String.valueOf(x));
   }
 
   public CharSequence subSequence(int start, int end) {
-    return string.substring(start, end);
+    return toString().substring(start, end);
   }
 
   public String substring(int begin) {
-    return string.substring(begin);
+    return toString().substring(begin);
   }
 
   public String substring(int begin, int end) {
-    return string.substring(begin, end);
+    return toString().substring(begin, end);
   }
 
   public int indexOf(String x) {
-    return string.indexOf(x);
+    return toString().indexOf(x);
   }
 
   public int indexOf(String x, int start) {
-    return string.indexOf(x, start);
+    return toString().indexOf(x, start);
   }
 
   public int lastIndexOf(String s) {
-    return string.lastIndexOf(s);
+    return toString().lastIndexOf(s);
   }
 
   public int lastIndexOf(String s, int start) {
-    return string.lastIndexOf(s, start);
+    return toString().lastIndexOf(s, start);
   }
 
+  /**
+   * Joins the segments (the joined string is kept as the only segment until the next
+   * modification).
+   */
   @Override
   public String toString() {
-    return string;
+    if (segments.length > 1) {
+      String string = ((Array<?>) (Object) segments).join("");
+      segments = new String[] { string };
+    }
+    return segments.length == 0 ? "" : segments[0];
+  }
+
+  void appendString(String x) {
+    if (x.length() > 0) {
+      segments[segments.length] = x;
+      length += x.length();
+    }
   }
 
   void append0(CharSequence x, int start, int end) {
     if (x == null) {
       x = "null";
     }
-    string += x.subSequence(start, end);
+    appendString(x.subSequence(start, end).toString());
   }
 
   void appendCodePoint0(int x) {
-    string += String.valueOf(Character.toChars(x));
+    appendString(String.valueOf(Character.toChars(x)));
   }
 
   void replace0(int start, int end, String toInsert) {
-    string = string.substring(0, start) + toInsert + string.substring(end);
+    // out of range indexes are clamped, as String.substring does
+    start = Math.max(0, Math.min(start, length));
+    end = Math.max(start, Math.min(end, length));
+    if (toInsert == null) {
+      toInsert = "null";
+    }
+    String[] result = new String[0];
+    boolean inserted = toInsert.length() == 0;
+    int position = 0;
+    for (int i = 0; i < segments.length; i++) {
+      String segment = segments[i];
+      int segmentEnd = position + segment.length();
+      if (segmentEnd <= start || position >= end) {
+        if (!inserted && position >= end) {
+          result[result.length] = toInsert;
+          inserted = true;
+        }
+        result[result.length] = segment;
+      } else {
+        if (position < start) {
+          result[result.length] = segment.substring(0, start - position);
+        }
+        if (!inserted) {
+          result[result.length] = toInsert;
+          inserted = true;
+        }
+        if (segmentEnd > end) {
+          result[result.length] = segment.substring(end - position);
+        }
+      }
+      position = segmentEnd;
+    }
+    if (!inserted) {
+      result[result.length] = toInsert;
+    }
+    segments = result;
+    length += toInsert.length() - (end - start);
   }
 
   void reverse0() {
+    String string = toString();
     int length = string.length();
 
     if (length <= 1) {
@@ -144,7 +215,7 @@ abstract class AbstractStringBuilder {
       }
     }
 
-    string = new String(buffer);
+    segments = new String[] { new String(buffer) };
   }
 
   private static void swap(char[] buffer, int f, int s) {
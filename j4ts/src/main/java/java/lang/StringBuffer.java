@@ -45,29 +45,29 @@ public final class StringBuffer extends AbstractStringBuilder implements CharSeq
   }
 
   public StringBuffer append(boolean x) {
-    string += x;
+    appendString("" + x);
     return this;
   }
 
   @Override
   public StringBuffer append(char x) {
-    string += x;
+    appendString("" + x);
     return this;
   }
 
   public StringBuffer append(char[] x) {
-    string += String.valueOf(x);
+    appendString(String.valueOf(x));
     return this;
   }
 
   public StringBuffer append(char[] x, int start, int len) {
-    string += String.valueOf(x, start, len);
+    appendString(String.valueOf(x, start, len));
     return this;
   }
 
   @Override
   public StringBuffer append(CharSequence x) {
-    string += x;
+    appendString("" + x);
     return this;
   }
 
@@ -78,37 +78,37 @@ public final class StringBuffer extends AbstractStringBuilder implements CharSeq
   }
 
   public StringBuffer append(double x) {
-    string += x;
+    appendString("" + x);
     return this;
   }
 
   public StringBuffer append(float x) {
-    string += x;
+    appendString("" + x);
     return this;
   }
 
   public StringBuffer append(int x) {
-    string += x;
+    appendString("" + x);
     return this;
   }
 
   public StringBuffer append(long x) {
-    string += x;
+    appendString("" + x);
     return this;
   }
 
   public StringBuffer append(Object x) {
-    string += x;
+    appendString("" + x);
     return this;
   }
 
   public StringBuffer append(String x) {
-    string += x;
+    appendString("" + x);
     return this;
   }
 
   public StringBuffer append(StringBuffer x) {
-    string += x;
+    appendString("" + x);
     return this;
   }
 
@@ -45,29 +45,29 @@ public final class StringBuilder extends AbstractStringBuilder implements CharSe
 	}
 
 	public StringBuilder append(boolean x) {
-		string += x;
+		appendString("" + x);
 		return this;
 	}
 
 	@Override
 	public StringBuilder append(char x) {
-		string += x;
+		appendString("" + x);
 		return this;
 	}
 
 	public StringBuilder append(char[] x) {
-		string += String.valueOf(x);
+		appendString(String.valueOf(x));
 		return this;
 	}
 
 	public StringBuilder append(char[] x, int start, int len) {
-		string += String.valueOf(x, start, len);
+		appendString(String.valueOf(x, start, len));
 		return this;
 	}
 
 	@Override
 	public StringBuilder append(CharSequence x) {
-		string += x;
+		appendString("" + x);
 		return this;
 	}
 
@@ -78,37 +78,37 @@ public final class StringBuilder extends AbstractStringBuilder implements CharSe
 	}
 
 	public StringBuilder append(double x) {
-		string += x;
+		appendString("" + x);
 		return this;
 	}
 
 	public StringBuilder append(float x) {
-		string += x;
+		appendString("" + x);
 		return this;
 	}
 
 	public StringBuilder append(int x) {
-		string += x;
+		appendString("" + x);
 		return this;
 	}
 
 	public StringBuilder append(long x) {
-		string += x;
+		appendString("" + x);
 		return this;
 	}
 
 	public StringBuilder append(Object x) {
-		string += x;
+		appendString("" + x);
 		return this;
 	}
 
 	public StringBuilder append(String x) {
-		string += x;
+		appendString("" + x);
 		return this;
 	}
 
 	public StringBuilder append(StringBuffer x) {
-		string += x;
+		appendString("" + x);
 		return this;
 	}
 
@@ -21,9 +21,11 @@ package org.jsweet;
 import static org.jsweet.transpiler.TranspilationHandler.OUTPUT_LOGGER;
 
 import java.io.File;
+import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -33,6 +35,7 @@ import org.apache.log4j.Logger;
 import org.jsweet.transpiler.JSweetFactory;
 import org.jsweet.transpiler.JSweetProblem;
 import org.jsweet.transpiler.JSweetTranspiler;
+import org.jsweet.transpiler.JsOptimizationLevel;
 import org.jsweet.transpiler.ModuleKind;
 import org.jsweet.transpiler.SourceFile;
 import org.jsweet.transpiler.util.ConsoleTranspilationHandler;
@@ -136,24 +139,8 @@ public class JSweetCommandLineLauncher {
 				logger.info("included: " + includedPatterns);
 				logger.info("excluded: " + excludedPatterns);
 
-				LinkedList<File> files = new LinkedList<File>();
-
-				for (File inputDir : inputDirList) {
-					Util.addFiles(f -> {
-						String path = inputDir.toURI().relativize(f.toURI()).getPath();
-						if (path.endsWith(".java")) {
-							if (includedPatterns == null || includedPatterns.isEmpty() || includedPatterns != null
-									&& includedPatterns.stream().anyMatch(p -> p.matcher(path).matches())) {
-								if (excludedPatterns != null && !excludedPatterns.isEmpty()
-										&& excludedPatterns.stream().anyMatch(p -> p.matcher(path).matches())) {
-									return false;
-								}
-								return true;
-							}
-						}
-						return false;
-					}, inputDir, files);
-				}
+				Supplier<List<File>> sourceFiles = () -> collectSourceFiles(inputDirList, includedPatterns,
+						excludedPatterns);
 
 				JSweetFactory factory = null;
 				String factoryClassName = jsapArgs.getString("factoryClassName");
@@ -199,8 +186,25 @@ public class JSweetCommandLineLauncher {
 				transpiler.setGenerateDefinitions(!jsapArgs.getBoolean("ignoreDefinitions"));
 				transpiler.setDeclarationsOutputDir(dtsOutputDir);
 				transpiler.setHeaderFile(jsapArgs.getFile("header"));
-
-				transpiler.transpile(transpilationHandler, SourceFile.toSourceFiles(files));
+				transpiler.setIncremental(jsapArgs.getBoolean("incremental"));
+				transpiler.setInMemoryTsFiles(jsapArgs.getBoolean("inMemoryTs"));
+				transpiler.setStaticOverloadDispatch(jsapArgs.getBoolean("staticOverloadDispatch"));
+				transpiler.setUseTypedArrays(jsapArgs.getBoolean("typedArrays"));
+				transpiler.setUseRuntimeHelpers(jsapArgs.getBoolean("runtimeHelpers"));
+				transpiler.setUseNativeCollections(jsapArgs.getBoolean("nativeCollections"));
+				transpiler.setSkipTypeScriptChecks(jsapArgs.getBoolean("skipTsChecks"));
+				transpiler.setJsOptimizationLevel(JsOptimizationLevel.valueOf(jsapArgs.getString("optimize")));
+				transpiler.setTreeShaking(jsapArgs.getBoolean("treeShaking"));
+				transpiler.setOutputThreadCount(jsapArgs.getInt("outputThreads"));
+
+				if (jsapArgs.getBoolean("daemon")) {
+					transpiler.setReuseClassPathIndex(true);
+					transpiler.setUseTsCompilerHost(true);
+					PrintStream protocolOut = JSweetDaemon.detachStandardOutput();
+					new JSweetDaemon(transpiler, sourceFiles).run(System.in, protocolOut);
+				} else {
+					transpiler.transpile(transpilationHandler, SourceFile.toSourceFiles(sourceFiles.get()));
+				}
 			} catch (NoClassDefFoundError error) {
 				transpilationHandler.report(JSweetProblem.JAVA_COMPILER_NOT_FOUND, null,
 						JSweetProblem.JAVA_COMPILER_NOT_FOUND.getMessage());
@@ -225,6 +229,29 @@ public class JSweetCommandLineLauncher {
 		System.exit(errorCount > 0 ? 1 : 0);
 	}
 
+	private static List<File> collectSourceFiles(List<File> inputDirList, List<Pattern> includedPatterns,
+			List<Pattern> excludedPatterns) {
+		LinkedList<File> files = new LinkedList<File>();
+
+		for (File inputDir : inputDirList) {
+			Util.addFiles(f -> {
+				String path = inputDir.toURI().relativize(f.toURI()).getPath();
+				if (path.endsWith(".java")) {
+					if (includedPatterns == null || includedPatterns.isEmpty() || includedPatterns != null
+							&& includedPatterns.stream().anyMatch(p -> p.matcher(path).matches())) {
+						if (excludedPatterns != null && !excludedPatterns.isEmpty()
+								&& excludedPatterns.stream().anyMatch(p -> p.matcher(path).matches())) {
+							return false;
+						}
+						return true;
+					}
+				}
+				return false;
+			}, inputDir, files);
+		}
+		return files;
+	}
+
 	private static JSAP defineArgs() throws JSAPException {
 		// Verbose output
 		JSAP jsap = new JSAP();
@@ -433,6 +460,98 @@ public class JSweetCommandLineLauncher {
 		optionArg.setRequired(false);
 		jsap.registerParameter(optionArg);
 
+		// Incremental transpilation
+		switchArg = new Switch("incremental");
+		switchArg.setLongFlag("incremental");
+		switchArg.setHelp(
+				"Only transpile the Java files that changed since the last transpilation, or that depend on files whose API changed. The dependency index is stored in the working directory.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Static overload dispatch
+		switchArg = new Switch("staticOverloadDispatch");
+		switchArg.setLongFlag("staticOverloadDispatch");
+		switchArg.setHelp(
+				"Calls the implementation of an overloaded method directly when the invoked overload is known at compile time, instead of going through the overload dispatcher that tests the argument types at runtime.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Typed arrays
+		switchArg = new Switch("typedArrays");
+		switchArg.setLongFlag("typedArrays");
+		switchArg.setHelp(
+				"Generates the byte, short, int, float and double arrays as JavaScript typed arrays (Int8Array, Int16Array, Int32Array, Float32Array and Float64Array), which use contiguous unboxed storage. Char arrays remain regular arrays since chars are strings in JavaScript.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Runtime helpers
+		switchArg = new Switch("runtimeHelpers");
+		switchArg.setLongFlag("runtimeHelpers");
+		switchArg.setHelp(
+				"Declares the helper functions used by the generated code once per module or bundle, instead of inlining them at each use site. Has no effect on global (non-module) files out of bundle mode.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Native collections
+		switchArg = new Switch("nativeCollections");
+		switchArg.setLongFlag("nativeCollections");
+		switchArg.setHelp(
+				"When no Java runtime is used, generates the Java sets and maps as ES2015 Set and Map objects (map keys are compared by identity, except for strings, numbers, booleans and enums), instead of arrays and plain objects. Requires ES6 or higher as the target version. Sets or maps can also be selected alone with the @NativeCollection global annotation on java.util.Set or java.util.Map in the configuration file.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// In-memory TypeScript
+		switchArg = new Switch("inMemoryTs");
+		switchArg.setLongFlag("inMemoryTs");
+		switchArg.setHelp(
+				"Keeps the generated TypeScript in memory and hands it directly to the TypeScript compiler, so that TypeScript files are not written to the TypeScript output directory (only applies when generating JavaScript).");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Skip TypeScript checks
+		switchArg = new Switch("skipTsChecks");
+		switchArg.setLongFlag("skipTsChecks");
+		switchArg.setHelp(
+				"Emits each JavaScript file with a syntax-only transformation of the generated TypeScript, instead of type checking the whole program with tsc (the Java code is already type checked). Faster, but only syntax errors are reported by the TypeScript compiler. Ignored when generating declarations.");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// JavaScript optimization
+		optionArg = new FlaggedOption("optimize");
+		optionArg.setLongFlag("optimize");
+		optionArg.setDefault("none");
+		optionArg.setHelp(
+				"Optimizes the generated JavaScript files with the Closure Compiler (none, simple or advanced). The advanced level only applies to bundles, which are then expected to be self-contained programs.");
+		optionArg.setStringParser(EnumeratedStringParser.getParser("none;simple;advanced"));
+		optionArg.setRequired(false);
+		jsap.registerParameter(optionArg);
+
+		// Tree shaking
+		switchArg = new Switch("treeShaking");
+		switchArg.setLongFlag("treeShaking");
+		switchArg.setHelp(
+				"Leaves out of the bundle the classes and methods that are not reachable from the main methods and static initializers of the program (bundle mode only, ignored if the bundle has no main method).");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
+		// Output threads
+		optionArg = new FlaggedOption("outputThreads");
+		optionArg.setLongFlag("outputThreads");
+		optionArg.setHelp(
+				"The number of threads used to write the generated files, compose their source maps and optimize them. The Java code is always translated sequentially. Defaults to 1.");
+		optionArg.setStringParser(JSAP.INTEGER_PARSER);
+		optionArg.setDefault("1");
+		optionArg.setRequired(false);
+		jsap.registerParameter(optionArg);
+
+		// Daemon mode
+		switchArg = new Switch("daemon");
+		switchArg.setLongFlag("daemon");
+		switchArg.setHelp(
+				"Runs the transpiler as a long-lived process that reads transpilation requests from the standard input, so that the JVM, the candies, the class path and the TypeScript compiler are kept warm between builds (see JSweetDaemon for the protocol).");
+		switchArg.setDefault("false");
+		jsap.registerParameter(switchArg);
+
 		// Working directory
 		optionArg = new FlaggedOption("workingDir");
 		optionArg.setLongFlag("workingDir");
@@ -0,0 +1,177 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.jsweet.transpiler.JSweetTranspiler;
+import org.jsweet.transpiler.SourceFile;
+import org.jsweet.transpiler.util.ConsoleTranspilationHandler;
+import org.jsweet.transpiler.util.ErrorCountTranspilationHandler;
+
+/**
+ * A long-lived transpilation process, which keeps the same transpiler (and
+ * thus the JVM, the processed candies and the class path index) between
+ * successive builds.
+ *
+ * <p>
+ * The daemon reads one request per line and answers each request with a
+ * single line:
+ *
+ * <ul>
+ * <li><code>transpile</code>: transpiles all the source files of the project
+ * (the input directories are scanned again for each request)</li>
+ * <li><code>transpile file1.java file2.java ...</code>: transpiles the given
+ * source files only</li>
+ * <li><code>clean</code>: clears the incremental transpilation index</li>
+ * <li><code>exit</code>: stops the daemon</li>
+ * </ul>
+ *
+ * <p>
+ * Answers are of the form <code>done &lt;errors&gt; &lt;warnings&gt;
+ * &lt;time in ms&gt;</code> or <code>error &lt;message&gt;</code>. Problems
+ * are reported on the console as in the regular command line mode, but since
+ * the standard output is reserved to the answers, the console output (logs,
+ * javac messages, ...) must first be moved to the standard error with
+ * {@link #detachStandardOutput()}.
+ *
+ * @author agent
+ */
+public class JSweetDaemon {
+
+	private static final Logger logger = Logger.getLogger(JSweetDaemon.class);
+
+	private JSweetTranspiler transpiler;
+	private Supplier<List<File>> sourceFiles;
+
+	/**
+	 * Creates a daemon.
+	 *
+	 * @param transpiler
+	 *            the configured transpiler to be reused for all the requests
+	 * @param sourceFiles
+	 *            a function that returns the project's source files
+	 */
+	public JSweetDaemon(JSweetTranspiler transpiler, Supplier<List<File>> sourceFiles) {
+		this.transpiler = transpiler;
+		this.sourceFiles = sourceFiles;
+	}
+
+	/**
+	 * Moves everything that is written to the standard output (the log4j
+	 * console appenders, and any direct write to {@link System#out}) to the
+	 * standard error, so that the original standard output can be used as the
+	 * daemon's answer channel.
+	 *
+	 * @return the original standard output, to be passed to
+	 *         {@link #run(InputStream, PrintStream)}
+	 */
+	public static PrintStream detachStandardOutput() {
+		PrintStream protocolOut = System.out;
+		System.setOut(System.err);
+		List<Logger> loggers = new ArrayList<>();
+		loggers.add(LogManager.getRootLogger());
+		for (Object logger : Collections.list(LogManager.getCurrentLoggers())) {
+			loggers.add((Logger) logger);
+		}
+		for (Logger logger : loggers) {
+			for (Object appender : Collections.list(logger.getAllAppenders())) {
+				if (appender instanceof ConsoleAppender
+						&& ConsoleAppender.SYSTEM_OUT.equals(((ConsoleAppender) appender).getTarget())) {
+					ConsoleAppender consoleAppender = (ConsoleAppender) appender;
+					consoleAppender.setTarget(ConsoleAppender.SYSTEM_ERR);
+					// follow the current System.err instead of the stream at
+					// activation time
+					consoleAppender.setFollow(true);
+					consoleAppender.activateOptions();
+				}
+			}
+		}
+		return protocolOut;
+	}
+
+	/**
+	 * Processes the requests read from the given input stream until an
+	 * <code>exit</code> request is received or until the end of the stream.
+	 */
+	public void run(InputStream in, PrintStream out) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		out.println("ready");
+		out.flush();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] request = line.split("\\s+");
+			try {
+				switch (request[0]) {
+				case "exit":
+					return;
+				case "clean":
+					transpiler.clearIncrementalIndex();
+					out.println("done 0 0 0");
+					break;
+				case "transpile":
+					out.println(transpile(request));
+					break;
+				default:
+					out.println("error unknown request: " + request[0]);
+				}
+			} catch (Throwable t) {
+				logger.error("request failed: " + line, t);
+				out.println("error " + StringUtils.replaceChars(String.valueOf(t.getMessage()), "\r\n", "  "));
+			}
+			out.flush();
+		}
+	}
+
+	private String transpile(String[] request) throws IOException {
+		long start = System.currentTimeMillis();
+		List<File> files;
+		if (request.length > 1) {
+			files = new ArrayList<>();
+			for (int i = 1; i < request.length; i++) {
+				files.add(new File(request[i]));
+			}
+		} else {
+			files = sourceFiles.get();
+		}
+		ErrorCountTranspilationHandler transpilationHandler = new ErrorCountTranspilationHandler(
+				new ConsoleTranspilationHandler());
+		transpiler.transpile(transpilationHandler, SourceFile.toSourceFiles(files));
+		return "done " + transpilationHandler.getErrorCount() + " " + transpilationHandler.getWarningCount() + " "
+				+ (System.currentTimeMillis() - start);
+	}
+
+}
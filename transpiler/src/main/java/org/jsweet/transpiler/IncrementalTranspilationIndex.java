@@ -0,0 +1,622 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.transpiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.jsweet.transpiler.util.DirectedGraph;
+import org.jsweet.transpiler.util.Position;
+import org.jsweet.transpiler.util.SourceMap;
+import org.jsweet.transpiler.util.Util;
+
+import com.google.gson.Gson;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.code.Symbol.VarSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.model.JavacElements;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.TreeScanner;
+
+/**
+ * A persisted index that keeps track of the dependencies between compilation
+ * units in order to support incremental transpilation.
+ *
+ * <p>
+ * For each compilation unit, the index stores a hash of the source code, a
+ * hash of the API exposed by the declared types, the types declared by the
+ * unit and the types it references. A compilation unit needs to be
+ * re-translated when its source changed, when its previous output is missing,
+ * or when one of the types it references was declared by a unit whose API
+ * changed. Since default methods are generated in the implementing classes,
+ * the bodies of the default methods are part of the API.
+ *
+ * <p>
+ * The index also stores what the translation of a unit contributes to the
+ * context (entry files, exported elements, used modules, package
+ * dependencies and root packages), as well as the unit's source map, so that
+ * these contributions can be replayed when the unit is skipped, including in
+ * a new transpiler process.
+ *
+ * @author agent
+ * @see JSweetTranspiler#setIncremental(boolean)
+ */
+public class IncrementalTranspilationIndex {
+
+	private static final Logger logger = Logger.getLogger(IncrementalTranspilationIndex.class);
+
+	/**
+	 * The name of the file that holds the persisted index (within the
+	 * transpiler's working directory).
+	 */
+	public static final String INDEX_FILE_NAME = "incremental-index.json";
+
+	/**
+	 * The persisted information for a compilation unit.
+	 */
+	private static class UnitEntry {
+		String sourceHash;
+		String apiHash;
+		List<String> declaredTypes = new ArrayList<>();
+		List<String> referencedTypes = new ArrayList<>();
+		String outputFile;
+		ContextContributions contributions;
+		int sourceMapLineOffset;
+		List<int[]> sourceMapEntries;
+	}
+
+	/**
+	 * What the translation of a compilation unit adds to the context (symbols
+	 * are stored by name and resolved again when replayed).
+	 */
+	private static class ContextContributions {
+		boolean entryFile;
+		List<String> usedModules = new ArrayList<>();
+		List<String[]> exportedElements = new ArrayList<>();
+		List<String[]> packageDependencies = new ArrayList<>();
+		List<String> topLevelPackageNames = new ArrayList<>();
+		List<String> rootPackages = new ArrayList<>();
+	}
+
+	/**
+	 * The persisted form of the index.
+	 */
+	private static class IndexData {
+		String fingerprint;
+		Map<String, UnitEntry> units = new HashMap<>();
+	}
+
+	/**
+	 * Grabs the types declared in a compilation unit, as well as all the types
+	 * it references (including the transitive super types of the referenced
+	 * and declared types, which may impact the generated code).
+	 */
+	private static class DependencyGrabber extends TreeScanner {
+		Set<String> declaredTypes = new TreeSet<>();
+		Set<String> referencedTypes = new TreeSet<>();
+		List<ClassSymbol> declaredClasses = new ArrayList<>();
+		List<JCMethodDecl> defaultMethods = new ArrayList<>();
+
+		@Override
+		public void visitClassDef(JCClassDecl classdecl) {
+			if (classdecl.sym != null) {
+				declaredClasses.add(classdecl.sym);
+				declaredTypes.add(classdecl.sym.getQualifiedName().toString());
+				addType(classdecl.sym.type);
+			}
+			super.visitClassDef(classdecl);
+		}
+
+		@Override
+		public void visitMethodDef(JCMethodDecl methodDecl) {
+			if (methodDecl.sym != null && (methodDecl.sym.flags() & Flags.DEFAULT) != 0) {
+				defaultMethods.add(methodDecl);
+			}
+			super.visitMethodDef(methodDecl);
+		}
+
+		@Override
+		public void scan(JCTree tree) {
+			if (tree == null) {
+				return;
+			}
+			if (tree.type != null) {
+				addType(tree.type);
+			}
+			Symbol symbol = Util.getSymbol(tree);
+			if (symbol != null) {
+				addSymbol(symbol);
+			}
+			super.scan(tree);
+		}
+
+		private void addSymbol(Symbol symbol) {
+			while (symbol != null && !(symbol instanceof ClassSymbol)) {
+				symbol = symbol.getEnclosingElement();
+			}
+			if (symbol != null) {
+				addType(symbol.type);
+			}
+		}
+
+		private void addType(Type type) {
+			if (type == null || !(type.tsym instanceof ClassSymbol)) {
+				return;
+			}
+			ClassSymbol clazz = (ClassSymbol) type.tsym;
+			if (!referencedTypes.add(clazz.getQualifiedName().toString())) {
+				return;
+			}
+			for (Type argument : type.getTypeArguments()) {
+				addType(argument);
+			}
+			for (Type superInterface : clazz.getInterfaces()) {
+				addType(superInterface);
+			}
+			addType(clazz.getSuperclass());
+			if (clazz.getEnclosingElement() instanceof ClassSymbol) {
+				addType(clazz.getEnclosingElement().type);
+			}
+		}
+	}
+
+	private final File indexFile;
+
+	private IndexData data = new IndexData();
+
+	private Map<String, UnitEntry> currentUnits = new HashMap<>();
+
+	private Set<String> staleUnits = new HashSet<>();
+
+	private Set<File> translatedFiles = new HashSet<>();
+
+	/**
+	 * Creates an index that will be persisted in the given working directory.
+	 */
+	public IncrementalTranspilationIndex(File workingDir) {
+		this.indexFile = new File(workingDir, INDEX_FILE_NAME);
+	}
+
+	/**
+	 * Loads the persisted index if it exists.
+	 */
+	public void load() {
+		if (!indexFile.exists()) {
+			return;
+		}
+		try {
+			IndexData loaded = new Gson().fromJson(FileUtils.readFileToString(indexFile), IndexData.class);
+			if (loaded != null && loaded.units != null) {
+				data = loaded;
+			}
+		} catch (Exception e) {
+			logger.warn("cannot read incremental index: " + indexFile + " - performing full transpilation", e);
+			data = new IndexData();
+		}
+	}
+
+	/**
+	 * Saves the index in its file.
+	 */
+	public void save() {
+		try {
+			FileUtils.write(indexFile, new Gson().toJson(data), false);
+		} catch (Exception e) {
+			logger.warn("cannot write incremental index: " + indexFile, e);
+		}
+	}
+
+	/**
+	 * Clears this index (next transpilation will be a full one).
+	 */
+	public void clear() {
+		data = new IndexData();
+		currentUnits.clear();
+		staleUnits.clear();
+		translatedFiles.clear();
+		FileUtils.deleteQuietly(indexFile);
+	}
+
+	/**
+	 * Analyzes the given compilation units against the previous state of the
+	 * index and computes the set of units that need to be translated again.
+	 *
+	 * @param fingerprint
+	 *            a string identifying the transpilation options (all the units
+	 *            are considered as stale if the fingerprint changed)
+	 * @param compilationUnits
+	 *            the attributed compilation units of the current transpilation
+	 */
+	public void analyze(String fingerprint, Collection<JCCompilationUnit> compilationUnits) {
+		currentUnits.clear();
+		staleUnits.clear();
+		boolean fullTranspilation = fingerprint == null || !fingerprint.equals(data.fingerprint);
+		if (fullTranspilation) {
+			logger.info("incremental index is empty or transpilation options changed: full transpilation");
+		}
+		Map<String, String> changedApiTypes = new HashMap<>();
+		for (JCCompilationUnit cu : compilationUnits) {
+			String key = getKey(cu);
+			UnitEntry previous = data.units.get(key);
+			UnitEntry entry = createEntry(cu);
+			if (previous != null) {
+				entry.outputFile = previous.outputFile;
+				entry.contributions = previous.contributions;
+				entry.sourceMapLineOffset = previous.sourceMapLineOffset;
+				entry.sourceMapEntries = previous.sourceMapEntries;
+			}
+			currentUnits.put(key, entry);
+			if (fullTranspilation || previous == null || !entry.sourceHash.equals(previous.sourceHash)
+					|| entry.outputFile == null || !new File(entry.outputFile).exists()
+					|| entry.contributions == null) {
+				staleUnits.add(key);
+			}
+			if (previous == null || !entry.apiHash.equals(previous.apiHash)) {
+				for (String type : entry.declaredTypes) {
+					changedApiTypes.put(type, key);
+				}
+				if (previous != null) {
+					// removed types are also API changes
+					for (String type : previous.declaredTypes) {
+						changedApiTypes.put(type, key);
+					}
+				}
+			}
+		}
+		for (Map.Entry<String, UnitEntry> e : currentUnits.entrySet()) {
+			if (staleUnits.contains(e.getKey())) {
+				continue;
+			}
+			for (String referencedType : e.getValue().referencedTypes) {
+				String changedUnit = changedApiTypes.get(referencedType);
+				if (changedUnit != null && !changedUnit.equals(e.getKey())) {
+					logger.debug("API of " + referencedType + " changed: invalidating " + e.getKey());
+					staleUnits.add(e.getKey());
+					break;
+				}
+			}
+		}
+		data.fingerprint = fingerprint;
+		translatedFiles.clear();
+		for (String key : staleUnits) {
+			translatedFiles.add(new File(key));
+		}
+		logger.info("incremental transpilation: " + staleUnits.size() + "/" + compilationUnits.size()
+				+ " compilation unit(s) to be translated");
+	}
+
+	/**
+	 * Tells if the given compilation unit's output is up to date so that the
+	 * unit does not need to be translated again.
+	 *
+	 * @param compilationUnit
+	 *            the compilation unit to be checked
+	 * @param sourceMapRequired
+	 *            true if the source map of the unit is required (in that case,
+	 *            a unit will be stale if its source map is not available)
+	 */
+	public boolean isUpToDate(JCCompilationUnit compilationUnit, boolean sourceMapRequired) {
+		String key = getKey(compilationUnit);
+		if (staleUnits.contains(key) || !currentUnits.containsKey(key)) {
+			return false;
+		}
+		return !sourceMapRequired || currentUnits.get(key).sourceMapEntries != null;
+	}
+
+	/**
+	 * Gets the Java files that were found stale, and thus translated again, by
+	 * the last analysis (see
+	 * {@link #analyze(String, Collection)}).
+	 */
+	public Set<File> getTranslatedFiles() {
+		return translatedFiles;
+	}
+
+	/**
+	 * Gets the output file generated for the given compilation unit by a
+	 * previous transpilation.
+	 */
+	public File getOutputFile(JCCompilationUnit compilationUnit) {
+		UnitEntry entry = currentUnits.get(getKey(compilationUnit));
+		return entry == null || entry.outputFile == null ? null : new File(entry.outputFile);
+	}
+
+	/**
+	 * Gets the source map generated for the given compilation unit by a
+	 * previous transpilation (null if not available).
+	 */
+	public SourceMap getSourceMap(JCCompilationUnit compilationUnit) {
+		UnitEntry entry = currentUnits.get(getKey(compilationUnit));
+		if (entry == null || entry.sourceMapEntries == null) {
+			return null;
+		}
+		SourceMap sourceMap = new SourceMap();
+		for (int[] e : entry.sourceMapEntries) {
+			sourceMap.addEntry(new Position(e[0], e[1], e[2]), new Position(e[3], e[4]));
+		}
+		sourceMap.shiftOutputPositions(entry.sourceMapLineOffset);
+		return sourceMap;
+	}
+
+	/**
+	 * Translates a compilation unit with the given action and records what the
+	 * translation adds to the context, so that it can be replayed if the unit
+	 * is skipped by a later transpilation (see
+	 * {@link #replayContextContributions(JCCompilationUnit, JSweetContext)}).
+	 */
+	public void recordContextContributions(JCCompilationUnit compilationUnit, JSweetContext context,
+			Runnable translation) {
+		UnitEntry entry = currentUnits.get(getKey(compilationUnit));
+		List<File> entryFiles = new ArrayList<>(context.entryFiles);
+		List<String> usedModules = new ArrayList<>(context.getUsedModules());
+		Map<String, List<Symbol>> exportedElements = new LinkedHashMap<>();
+		for (Map.Entry<String, List<Symbol>> e : context.getExportedElements().entrySet()) {
+			exportedElements.put(e.getKey(), new ArrayList<>(e.getValue()));
+		}
+		DirectedGraph<PackageSymbol> packageDependencies = context.packageDependencies;
+		Set<String> topLevelPackageNames = new HashSet<>(context.topLevelPackageNames);
+		Set<PackageSymbol> rootPackages = new HashSet<>(context.rootPackages);
+		context.entryFiles.clear();
+		context.getUsedModules().clear();
+		context.getExportedElements().clear();
+		context.packageDependencies = new DirectedGraph<>();
+		context.topLevelPackageNames.clear();
+		context.rootPackages.clear();
+		try {
+			translation.run();
+		} finally {
+			ContextContributions contributions = new ContextContributions();
+			contributions.entryFile = !context.entryFiles.isEmpty();
+			contributions.usedModules.addAll(context.getUsedModules());
+			for (Map.Entry<String, List<Symbol>> e : context.getExportedElements().entrySet()) {
+				for (Symbol element : e.getValue()) {
+					contributions.exportedElements.add(new String[] { e.getKey(), getSymbolKey(element) });
+				}
+			}
+			for (PackageSymbol source : context.packageDependencies) {
+				for (PackageSymbol destination : context.packageDependencies.getDestinationElements(source)) {
+					contributions.packageDependencies.add(
+							new String[] { getPackageName(source), getPackageName(destination) });
+				}
+			}
+			contributions.topLevelPackageNames.addAll(context.topLevelPackageNames);
+			for (PackageSymbol rootPackage : context.rootPackages) {
+				contributions.rootPackages.add(getPackageName(rootPackage));
+			}
+			if (entry != null) {
+				entry.contributions = contributions;
+			}
+
+			// merge the unit's contributions into the previous context state
+			List<File> unitEntryFiles = new ArrayList<>(context.entryFiles);
+			context.entryFiles.clear();
+			context.entryFiles.addAll(entryFiles);
+			context.entryFiles.addAll(unitEntryFiles);
+			List<String> unitUsedModules = new ArrayList<>(context.getUsedModules());
+			context.getUsedModules().clear();
+			context.getUsedModules().addAll(usedModules);
+			for (String module : unitUsedModules) {
+				context.registerUsedModule(module);
+			}
+			Map<String, List<Symbol>> unitExportedElements = new LinkedHashMap<>(context.getExportedElements());
+			context.getExportedElements().clear();
+			context.getExportedElements().putAll(exportedElements);
+			for (Map.Entry<String, List<Symbol>> e : unitExportedElements.entrySet()) {
+				context.getExportedElements().computeIfAbsent(e.getKey(), m -> new ArrayList<>())
+						.addAll(e.getValue());
+			}
+			DirectedGraph<PackageSymbol> unitPackageDependencies = context.packageDependencies;
+			context.packageDependencies = packageDependencies;
+			addPackageDependencies(context, unitPackageDependencies);
+			context.topLevelPackageNames.addAll(topLevelPackageNames);
+			context.rootPackages.addAll(rootPackages);
+		}
+	}
+
+	private static void addPackageDependencies(JSweetContext context, DirectedGraph<PackageSymbol> dependencies) {
+		for (PackageSymbol source : dependencies) {
+			context.packageDependencies.add(source);
+			for (PackageSymbol destination : dependencies.getDestinationElements(source)) {
+				context.packageDependencies.add(destination);
+				context.packageDependencies.addEdge(source, destination);
+			}
+		}
+	}
+
+	/**
+	 * Adds to the context what the last translation of the given (skipped)
+	 * compilation unit added to it.
+	 */
+	public void replayContextContributions(JCCompilationUnit compilationUnit, JSweetContext context) {
+		UnitEntry entry = currentUnits.get(getKey(compilationUnit));
+		if (entry == null || entry.contributions == null) {
+			return;
+		}
+		ContextContributions contributions = entry.contributions;
+		if (contributions.entryFile) {
+			context.entryFiles.add(new File(compilationUnit.sourcefile.getName()));
+		}
+		for (String module : contributions.usedModules) {
+			context.registerUsedModule(module);
+		}
+		if (!contributions.exportedElements.isEmpty()) {
+			Map<String, Symbol> declaredSymbols = getDeclaredSymbols(compilationUnit);
+			for (String[] exportedElement : contributions.exportedElements) {
+				Symbol element = declaredSymbols.get(exportedElement[1]);
+				if (element != null) {
+					context.addExportedElement(exportedElement[0], element, compilationUnit);
+				} else {
+					logger.warn("cannot replay exported element " + exportedElement[1]);
+				}
+			}
+		}
+		for (String[] dependency : contributions.packageDependencies) {
+			PackageSymbol source = getPackage(context, dependency[0]);
+			PackageSymbol destination = getPackage(context, dependency[1]);
+			if (source != null && destination != null) {
+				context.packageDependencies.add(source);
+				context.packageDependencies.add(destination);
+				context.packageDependencies.addEdge(source, destination);
+			}
+		}
+		context.topLevelPackageNames.addAll(contributions.topLevelPackageNames);
+		for (String rootPackage : contributions.rootPackages) {
+			context.rootPackages.add(rootPackage == null ? null : getPackage(context, rootPackage));
+		}
+	}
+
+	private static String getPackageName(PackageSymbol packageSymbol) {
+		return packageSymbol == null ? null : packageSymbol.getQualifiedName().toString();
+	}
+
+	private static PackageSymbol getPackage(JSweetContext context, String name) {
+		return JavacElements.instance(context).getPackageElement(name);
+	}
+
+	private static String getSymbolKey(Symbol symbol) {
+		if (symbol instanceof PackageSymbol) {
+			return "package " + symbol.getQualifiedName();
+		}
+		Symbol owner = symbol.getEnclosingElement();
+		return symbol.getKind() + " " + (owner == null ? "" : owner.getQualifiedName() + ".") + symbol;
+	}
+
+	private static Map<String, Symbol> getDeclaredSymbols(JCCompilationUnit compilationUnit) {
+		Map<String, Symbol> symbols = new HashMap<>();
+		symbols.put(getSymbolKey(compilationUnit.packge), compilationUnit.packge);
+		new TreeScanner() {
+			@Override
+			public void visitClassDef(JCClassDecl classdecl) {
+				if (classdecl.sym != null) {
+					symbols.put(getSymbolKey(classdecl.sym), classdecl.sym);
+					for (Symbol member : classdecl.sym.getEnclosedElements()) {
+						symbols.put(getSymbolKey(member), member);
+					}
+				}
+				super.visitClassDef(classdecl);
+			}
+		}.scan(compilationUnit);
+		return symbols;
+	}
+
+	/**
+	 * Records the result of the translation of a compilation unit.
+	 *
+	 * @param compilationUnit
+	 *            the translated compilation unit
+	 * @param outputFile
+	 *            the generated file (null if no output was generated)
+	 * @param sourceMap
+	 *            the generated source map (can be null)
+	 */
+	public void unitTranspiled(JCCompilationUnit compilationUnit, File outputFile, SourceMap sourceMap) {
+		String key = getKey(compilationUnit);
+		UnitEntry entry = currentUnits.get(key);
+		if (entry == null) {
+			return;
+		}
+		entry.outputFile = outputFile == null ? null : outputFile.getAbsolutePath();
+		if (sourceMap != null) {
+			entry.sourceMapLineOffset = sourceMap.getOutputLineOffset();
+			entry.sourceMapEntries = new ArrayList<>();
+			for (SourceMap.Entry e : sourceMap.getSortedEntries((e1, e2) -> e1.compareTo(e2))) {
+				entry.sourceMapEntries.add(new int[] { e.getInputPosition().getPosition(),
+						e.getInputPosition().getLine(), e.getInputPosition().getColumn(),
+						e.getOutputPosition().getLine() - entry.sourceMapLineOffset,
+						e.getOutputPosition().getColumn() });
+			}
+		} else {
+			entry.sourceMapEntries = null;
+		}
+		staleUnits.remove(key);
+	}
+
+	/**
+	 * Commits the current state of the index (the units that are not part of
+	 * the current transpilation are kept as is) and saves it.
+	 */
+	public void commit() {
+		data.units.putAll(currentUnits);
+		save();
+	}
+
+	private static String getKey(JCCompilationUnit compilationUnit) {
+		return new File(compilationUnit.getSourceFile().getName()).getAbsolutePath();
+	}
+
+	private UnitEntry createEntry(JCCompilationUnit compilationUnit) {
+		UnitEntry entry = new UnitEntry();
+		DependencyGrabber grabber = new DependencyGrabber();
+		grabber.scan(compilationUnit);
+		entry.declaredTypes.addAll(grabber.declaredTypes);
+		entry.referencedTypes.addAll(grabber.referencedTypes);
+		entry.referencedTypes.removeAll(grabber.declaredTypes);
+		try {
+			entry.sourceHash = Util.getContentHash(compilationUnit.getSourceFile().getCharContent(true).toString());
+		} catch (Exception e) {
+			logger.warn("cannot read source of " + compilationUnit.getSourceFile().getName(), e);
+			entry.sourceHash = "";
+		}
+		StringBuilder api = new StringBuilder();
+		for (ClassSymbol clazz : grabber.declaredClasses) {
+			appendApi(api, clazz);
+		}
+		// default methods are generated in the implementing classes
+		for (JCMethodDecl defaultMethod : grabber.defaultMethods) {
+			api.append(defaultMethod).append('\n');
+		}
+		entry.apiHash = Util.getContentHash(api.toString());
+		return entry;
+	}
+
+	private static void appendApi(StringBuilder api, ClassSymbol clazz) {
+		api.append(clazz.flags()).append(' ').append(clazz.getQualifiedName());
+		api.append(" extends ").append(clazz.getSuperclass());
+		api.append(" implements ").append(clazz.getInterfaces());
+		api.append(' ').append(clazz.getAnnotationMirrors()).append('\n');
+		for (Symbol member : clazz.getEnclosedElements()) {
+			if ((member.flags() & Flags.PRIVATE) != 0 || member instanceof ClassSymbol) {
+				continue;
+			}
+			api.append('\t').append(member.flags()).append(' ').append(member).append(':').append(member.type);
+			api.append(' ').append(member.getAnnotationMirrors());
+			if (member instanceof VarSymbol) {
+				api.append('=').append(((VarSymbol) member).getConstValue());
+			}
+			api.append('\n');
+		}
+	}
+
+}
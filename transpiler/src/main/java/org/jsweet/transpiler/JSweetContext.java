@@ -26,6 +26,7 @@ import java.util.AbstractMap;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -42,6 +43,8 @@ import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -52,6 +55,7 @@ import org.jsweet.transpiler.extension.AnnotationManager;
 import org.jsweet.transpiler.extension.AnnotationManager.Action;
 import org.jsweet.transpiler.model.ExtendedElement;
 import org.jsweet.transpiler.util.DirectedGraph;
+import org.jsweet.transpiler.util.RuntimeHelper;
 
 import com.sun.tools.javac.code.Attribute.Compound;
 import com.sun.tools.javac.code.Symbol;
@@ -106,6 +110,119 @@ public class JSweetContext extends Context {
 			return "FILTER" + (parameter == null ? "" : "('" + parameter + "')") + ": INCLUDES=" + inclusionPatterns
 					+ ", EXCLUDES=" + exclusionPatterns;
 		}
+
+		public boolean isExcluded(String signature) {
+			if (exclusionPatterns != null) {
+				for (Pattern exclude : exclusionPatterns) {
+					if (exclude.matcher(signature).matches()) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A compiled form of the annotation filters. Inclusion patterns are indexed
+	 * in a trie by the literal qualified-name segments they start with, so
+	 * that only the patterns that can match a signature are evaluated.
+	 */
+	private static class AnnotationFilterIndex {
+
+		private static class Filter {
+			final String annotationType;
+			final AnnotationFilterDescriptor descriptor;
+			final Pattern inclusionPattern;
+			final int rank;
+
+			Filter(String annotationType, AnnotationFilterDescriptor descriptor, Pattern inclusionPattern, int rank) {
+				this.annotationType = annotationType;
+				this.descriptor = descriptor;
+				this.inclusionPattern = inclusionPattern;
+				this.rank = rank;
+			}
+		}
+
+		private static class Node {
+			final Map<String, Node> children = new HashMap<>();
+			final List<Filter> filters = new ArrayList<>();
+		}
+
+		private final Node root = new Node();
+
+		AnnotationFilterIndex(Map<String, Collection<AnnotationFilterDescriptor>> annotationFilters) {
+			int rank = 0;
+			for (Entry<String, Collection<AnnotationFilterDescriptor>> e : annotationFilters.entrySet()) {
+				for (AnnotationFilterDescriptor descriptor : e.getValue()) {
+					if (descriptor.inclusionPatterns == null) {
+						continue;
+					}
+					for (Pattern include : descriptor.inclusionPatterns) {
+						Node node = root;
+						for (String segment : getLiteralSegments(include.pattern())) {
+							node = node.children.computeIfAbsent(segment, k -> new Node());
+						}
+						node.filters.add(new Filter(e.getKey(), descriptor, include, rank++));
+					}
+				}
+			}
+		}
+
+		/**
+		 * Gets the literal segments a regular expression (as generated by
+		 * {@link JSweetContext#toRegexp(String)}) starts with.
+		 */
+		private static List<String> getLiteralSegments(String regexp) {
+			List<String> segments = new ArrayList<>();
+			StringBuilder segment = new StringBuilder();
+			for (int i = 0; i < regexp.length(); i++) {
+				char c = regexp.charAt(i);
+				if (c == '\\' && i + 1 < regexp.length() && regexp.charAt(i + 1) == '.') {
+					segments.add(segment.toString());
+					segment.setLength(0);
+					i++;
+				} else if (Character.isLetterOrDigit(c) || c == '_') {
+					segment.append(c);
+				} else {
+					return segments;
+				}
+			}
+			segments.add(segment.toString());
+			return segments;
+		}
+
+		/**
+		 * Resolves the annotation filters that apply to the given signature.
+		 * 
+		 * @return the first matching filter descriptor by annotation type
+		 */
+		Map<String, AnnotationFilterDescriptor> resolve(String signature) {
+			List<Filter> candidates = new ArrayList<>(root.filters);
+			int end = signature.indexOf('(');
+			Node node = root;
+			for (String segment : (end < 0 ? signature : signature.substring(0, end)).split("\\.")) {
+				node = node.children.get(segment);
+				if (node == null) {
+					break;
+				}
+				candidates.addAll(node.filters);
+			}
+			if (candidates.isEmpty()) {
+				return Collections.emptyMap();
+			}
+			// preserve the declaration order of the filters
+			candidates.sort((f1, f2) -> f1.rank - f2.rank);
+			Map<String, AnnotationFilterDescriptor> resolved = new HashMap<>();
+			for (Filter filter : candidates) {
+				if (!resolved.containsKey(filter.annotationType)
+						&& filter.inclusionPattern.matcher(signature).matches()
+						&& !filter.descriptor.isExcluded(signature)) {
+					resolved.put(filter.annotationType, filter.descriptor);
+				}
+			}
+			return resolved.isEmpty() ? Collections.emptyMap() : resolved;
+		}
 	}
 
 	private List<AnnotationManager> annotationManagers = new ArrayList<>();
@@ -126,6 +243,7 @@ public class JSweetContext extends Context {
 	 */
 	public final void addTypeMapping(String sourceTypeName, String targetTypeName) {
 		typesMapping.put(sourceTypeName, targetTypeName);
+		typeMappingsChanged();
 	}
 
 	/**
@@ -135,6 +253,7 @@ public class JSweetContext extends Context {
 	 */
 	public final void addTypeMappings(Map<String, String> nameMappings) {
 		typesMapping.putAll(nameMappings);
+		typeMappingsChanged();
 	}
 
 	/**
@@ -165,6 +284,7 @@ public class JSweetContext extends Context {
 	 */
 	public final void addTypeMapping(BiFunction<ExtendedElement, String, Object> mappingFunction) {
 		complexTypesMapping.add(mappingFunction);
+		typeMappingsChanged();
 	}
 
 	/**
@@ -174,6 +294,132 @@ public class JSweetContext extends Context {
 		return complexTypesMapping;
 	}
 
+	/**
+	 * Gets the JavaScript typed array that implements the arrays of the given
+	 * component type, when typed arrays are enabled (see
+	 * {@link JSweetOptions#isUseTypedArrays()}).
+	 * 
+	 * @param componentType
+	 *            the type of the array elements
+	 * @return the typed array name, or null if arrays of this type are regular
+	 *         JavaScript arrays
+	 */
+	public final String getTypedArrayName(TypeMirror componentType) {
+		if (componentType == null || !options.isUseTypedArrays()) {
+			return null;
+		}
+		switch (componentType.getKind()) {
+		case BYTE:
+			return "Int8Array";
+		case SHORT:
+			return "Int16Array";
+		case INT:
+			return "Int32Array";
+		case FLOAT:
+			return "Float32Array";
+		case DOUBLE:
+			return "Float64Array";
+		default:
+			// chars are strings and longs may exceed 32 bits
+			return null;
+		}
+	}
+
+	private Map<TypeMirror, String> mappedTypes = new HashMap<>();
+	private long mappedTypeCacheHitCount = 0;
+	private long mappedTypeCacheMissCount = 0;
+	private int typeMappingGeneration = 0;
+	private long printedTypeCacheHitCount = 0;
+	private long printedTypeCacheMissCount = 0;
+
+	private void typeMappingsChanged() {
+		mappedTypes.clear();
+		typeMappingGeneration++;
+	}
+
+	/**
+	 * Gets the TypeScript type string that was cached for the given type with
+	 * {@link #cacheMappedType(TypeMirror, String)}. The cache is cleared each
+	 * time a type mapping is added to this context.
+	 * 
+	 * @return the cached type string, null if not cached
+	 */
+	public final String getCachedMappedType(TypeMirror type) {
+		String mappedType = mappedTypes.get(type);
+		if (mappedType == null) {
+			mappedTypeCacheMissCount++;
+		} else {
+			mappedTypeCacheHitCount++;
+		}
+		return mappedType;
+	}
+
+	/**
+	 * Caches the TypeScript type string that corresponds to the given type,
+	 * taking into account all the current type mappings.
+	 */
+	public final void cacheMappedType(TypeMirror type, String mappedType) {
+		mappedTypes.put(type, mappedType);
+	}
+
+	/**
+	 * Gets the number of mapped types that were found in the cache.
+	 * 
+	 * @see #getCachedMappedType(TypeMirror)
+	 */
+	public final long getMappedTypeCacheHitCount() {
+		return mappedTypeCacheHitCount;
+	}
+
+	/**
+	 * Gets the number of mapped types that were not found in the cache.
+	 * 
+	 * @see #getCachedMappedType(TypeMirror)
+	 */
+	public final long getMappedTypeCacheMissCount() {
+		return mappedTypeCacheMissCount;
+	}
+
+	/**
+	 * Gets a number that changes each time a type mapping is added to this
+	 * context, so that the printers can invalidate their caches of printed
+	 * types.
+	 */
+	public final int getTypeMappingGeneration() {
+		return typeMappingGeneration;
+	}
+
+	/**
+	 * Counts a lookup in a cache of printed types (see
+	 * {@link Java2TypeScriptTranslator}).
+	 * 
+	 * @param hit
+	 *            true if the printed type was found in the cache
+	 */
+	public final void countPrintedTypeCacheLookup(boolean hit) {
+		if (hit) {
+			printedTypeCacheHitCount++;
+		} else {
+			printedTypeCacheMissCount++;
+		}
+	}
+
+	/**
+	 * Gets the number of printed types that were found in the printers'
+	 * caches.
+	 */
+	public final long getPrintedTypeCacheHitCount() {
+		return printedTypeCacheHitCount;
+	}
+
+	/**
+	 * Gets the number of printed types that were not found in the printers'
+	 * caches.
+	 */
+	public final long getPrintedTypeCacheMissCount() {
+		return printedTypeCacheMissCount;
+	}
+
 	/**
 	 * Adds an annotation manager that will tune (add or remove) annotations on
 	 * the AST. Lastly added managers have precedence over firstly added ones.
@@ -254,6 +500,63 @@ public class JSweetContext extends Context {
 		return !annotationFilters.isEmpty();
 	}
 
+	/**
+	 * Tells if the given annotation type is added to the element of the given
+	 * signature through global filters (see
+	 * {@link #addAnnotation(String, String...)}). Contrary to
+	 * {@link #hasAnnotationType(Symbol, String...)}, the element does not need
+	 * to be loaded by the compiler.
+	 * 
+	 * @param signature
+	 *            the element signature (the qualified name for a type)
+	 * @param annotationType
+	 *            the annotation type
+	 */
+	public boolean hasGlobalAnnotationType(String signature, String annotationType) {
+		return hasAnnotationFilters() && getAnnotationFilterIndex().resolve(signature).containsKey(annotationType);
+	}
+
+	private AnnotationFilterIndex annotationFilterIndex;
+	private Map<Symbol, Map<String, AnnotationFilterDescriptor>> resolvedAnnotationFilters = new HashMap<>();
+	private Map<Symbol, Map<String, AnnotationFilterDescriptor>> resolvedAnnotationValueFilters = new HashMap<>();
+
+	private AnnotationFilterIndex getAnnotationFilterIndex() {
+		if (annotationFilterIndex == null) {
+			annotationFilterIndex = new AnnotationFilterIndex(annotationFilters);
+		}
+		return annotationFilterIndex;
+	}
+
+	private void clearAnnotationFilterIndex() {
+		annotationFilterIndex = null;
+		resolvedAnnotationFilters.clear();
+		resolvedAnnotationValueFilters.clear();
+	}
+
+	/**
+	 * Gets the annotation filters that apply to the given symbol (memoized per
+	 * symbol).
+	 * 
+	 * @param valueSignature
+	 *            true to match the signature used for annotation values (always
+	 *            qualified with the enclosing element)
+	 */
+	private Map<String, AnnotationFilterDescriptor> getResolvedAnnotationFilters(Symbol symbol,
+			boolean valueSignature) {
+		Map<Symbol, Map<String, AnnotationFilterDescriptor>> cache = valueSignature ? resolvedAnnotationValueFilters
+				: resolvedAnnotationFilters;
+		Map<String, AnnotationFilterDescriptor> resolved = cache.get(symbol);
+		if (resolved == null) {
+			String signature = symbol.toString();
+			if ((valueSignature || !(symbol instanceof TypeSymbol)) && symbol.getEnclosingElement() != null) {
+				signature = symbol.getEnclosingElement().getQualifiedName().toString() + "." + signature;
+			}
+			resolved = getAnnotationFilterIndex().resolve(signature);
+			cache.put(symbol, resolved);
+		}
+		return resolved;
+	}
+
 	/**
 	 * Creates a new JSweet transpilation context.
 	 * 
@@ -443,6 +746,7 @@ public class JSweetContext extends Context {
 				}
 			}
 			filterDescriptors.add(new AnnotationFilterDescriptor(inclusionPatterns, exclusionPatterns, parameter));
+			clearAnnotationFilterIndex();
 
 		} else {
 			switch (entry.getKey()) {
@@ -584,6 +888,13 @@ public class JSweetContext extends Context {
 	 */
 	public Set<VarSymbol> lazyInitializedStatics = new HashSet<>();
 
+	/**
+	 * The methods that are left out of the generated code because they are not
+	 * reachable from the bundle's entry points (see
+	 * {@link ReachabilityAnalyzer}).
+	 */
+	public Set<MethodSymbol> eliminatedMethods = Collections.emptySet();
+
 	private Map<ClassSymbol, Integer> staticInitializerCounts = new HashMap<>();
 
 	/**
@@ -640,20 +951,12 @@ public class JSweetContext extends Context {
 	 *            the target name being imported
 	 */
 	public void registerImportedName(String moduleName, Symbol sourceElement, String targetName) {
-		Set<String> importedNames = importedNamesInModules.get(moduleName);
-		if (importedNames == null) {
-			importedNames = new HashSet<>();
-			importedNamesInModules.put(moduleName, importedNames);
-		}
+		Set<String> importedNames = getImportedNames(moduleName);
 		if (!importedNames.contains(targetName)) {
 			importedNames.add(targetName);
 		}
 		if (sourceElement != null) {
-			Map<Symbol, String> importedElements = importedElementsInModules.get(moduleName);
-			if (importedElements == null) {
-				importedElements = new HashMap<>();
-				importedElementsInModules.put(moduleName, importedElements);
-			}
+			Map<Symbol, String> importedElements = getImportedElements(moduleName);
 			if (!importedElements.containsKey(sourceElement)) {
 				importedElements.put(sourceElement, targetName);
 			}
@@ -665,12 +968,7 @@ public class JSweetContext extends Context {
 	 * The list of names imported by the given module of the transpiled program.
 	 */
 	public Set<String> getImportedNames(String moduleName) {
-		Set<String> importedNames = importedNamesInModules.get(moduleName);
-		if (importedNames == null) {
-			importedNames = new HashSet<>();
-			importedNamesInModules.put(moduleName, importedNames);
-		}
-		return importedNames;
+		return importedNamesInModules.computeIfAbsent(moduleName, m -> new HashSet<>());
 	}
 
 	/**
@@ -678,12 +976,7 @@ public class JSweetContext extends Context {
 	 * program.
 	 */
 	public Map<Symbol, String> getImportedElements(String moduleName) {
-		Map<Symbol, String> importedElements = importedElementsInModules.get(moduleName);
-		if (importedElements == null) {
-			importedElements = new HashMap<>();
-			importedElementsInModules.put(moduleName, importedElements);
-		}
-		return importedElements;
+		return importedElementsInModules.computeIfAbsent(moduleName, m -> new HashMap<>());
 	}
 
 	/**
@@ -786,20 +1079,74 @@ public class JSweetContext extends Context {
 
 	private List<String> footerStatements = new LinkedList<String>();
 
+	/**
+	 * The runtime helpers declared in the current footer statements.
+	 */
+	private Set<RuntimeHelper> declaredRuntimeHelpers = new HashSet<>();
+
+	/**
+	 * The declarations of the runtime helpers, which come first in the footer
+	 * statements.
+	 */
+	private List<String> runtimeHelperDeclarations = new LinkedList<String>();
+
 	/**
 	 * Gets and clears the footer statements.
 	 */
 	public String poolFooterStatements() {
 		StringBuilder sb = new StringBuilder();
+		for (String footerStatement : runtimeHelperDeclarations) {
+			sb.append("\n");
+			sb.append(footerStatement);
+			sb.append("\n");
+		}
 		for (String footerStatement : footerStatements) {
 			sb.append("\n");
 			sb.append(footerStatement);
 			sb.append("\n");
 		}
 		footerStatements.clear();
+		runtimeHelperDeclarations.clear();
+		declaredRuntimeHelpers.clear();
 		return sb.toString();
 	}
 
+	/**
+	 * Tells if the given runtime helper should be called by name, and if so,
+	 * declares it in the footer statements (once per generated file or
+	 * bundle). Runtime helpers are used only when enabled in the options and
+	 * when generating modules or bundles, since helpers declared in global
+	 * files would clash, except for the helpers that have a global
+	 * declaration, which are always used.
+	 * 
+	 * @see JSweetOptions#isUseRuntimeHelpers()
+	 * @see RuntimeHelper#getGlobalDeclaration()
+	 */
+	public boolean useRuntimeHelper(RuntimeHelper helper) {
+		boolean global = !(useModules || options.isBundle());
+		if (helper.getGlobalDeclaration() == null && (!options.isUseRuntimeHelpers() || global)) {
+			return false;
+		}
+		if (declaredRuntimeHelpers.add(helper)) {
+			// function declarations are hoisted, so helpers can be declared
+			// after the code that uses them, and global declarations come
+			// before the static initializations and main invocations
+			runtimeHelperDeclarations.add(global ? helper.getGlobalDeclaration() : helper.getDeclaration());
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the function expression to be invoked for the given runtime
+	 * helper: the helper's name when runtime helpers are used, or the inlined
+	 * function otherwise.
+	 * 
+	 * @see #useRuntimeHelper(RuntimeHelper)
+	 */
+	public String getRuntimeHelperFunction(RuntimeHelper helper) {
+		return useRuntimeHelper(helper) ? helper.getName() : helper.getInlineFunction();
+	}
+
 	/**
 	 * Adds a footer statement.
 	 */
@@ -979,31 +1326,11 @@ public class JSweetContext extends Context {
 		}
 
 		if (hasAnnotationFilters()) {
-			String signature = symbol.toString();
-			if (!(symbol instanceof TypeSymbol) && symbol.getEnclosingElement() != null) {
-				signature = symbol.getEnclosingElement().getQualifiedName().toString() + "." + signature;
-			}
-			for (String annotationType : annotationTypes) {
-				Collection<AnnotationFilterDescriptor> filterDescriptors = annotationFilters.get(annotationType);
-				if (filterDescriptors != null) {
-					for (AnnotationFilterDescriptor filterDescriptor : filterDescriptors) {
-						for (Pattern include : filterDescriptor.inclusionPatterns) {
-							if (include.matcher(signature).matches()) {
-								boolean excluded = false;
-								Collection<Pattern> excludePatterns = filterDescriptor.exclusionPatterns;
-								if (excludePatterns != null) {
-									for (Pattern exclude : excludePatterns) {
-										if (exclude.matcher(signature).matches()) {
-											excluded = true;
-											break;
-										}
-									}
-								}
-								if (!excluded) {
-									return true;
-								}
-							}
-						}
+			Map<String, AnnotationFilterDescriptor> resolved = getResolvedAnnotationFilters(symbol, false);
+			if (!resolved.isEmpty()) {
+				for (String annotationType : annotationTypes) {
+					if (resolved.containsKey(annotationType)) {
+						return true;
 					}
 				}
 			}
@@ -1180,40 +1507,17 @@ public class JSweetContext extends Context {
 			}
 		}
 		if (hasAnnotationFilters()) {
-			String signature = symbol.toString();
-			if (symbol.getEnclosingElement() != null) {
-				signature = symbol.getEnclosingElement().getQualifiedName().toString() + "." + signature;
-			}
-			Collection<AnnotationFilterDescriptor> filterDescriptors = annotationFilters.get(annotationType);
-			if (filterDescriptors != null) {
-				for (AnnotationFilterDescriptor filterDescriptor : filterDescriptors) {
-					for (Pattern include : filterDescriptor.inclusionPatterns) {
-						if (include.matcher(signature).matches()) {
-							boolean excluded = false;
-							Collection<Pattern> excludePatterns = filterDescriptor.exclusionPatterns;
-							if (excludePatterns != null) {
-								for (Pattern exclude : excludePatterns) {
-									if (exclude.matcher(signature).matches()) {
-										excluded = true;
-										break;
-									}
-								}
-							}
-							if (!excluded) {
-								if (filterDescriptor.parameter == null) {
-									return defaultValue;
-								} else if (filterDescriptor.parameter.startsWith("'")) {
-									return filterDescriptor.parameter.substring(1,
-											filterDescriptor.parameter.length() - 1);
-								} else if (filterDescriptor.parameter.endsWith(".class")) {
-									return filterDescriptor.parameter.substring(0,
-											filterDescriptor.parameter.length() - 6);
-								} else {
-									return filterDescriptor.parameter;
-								}
-							}
-						}
-					}
+			AnnotationFilterDescriptor filterDescriptor = getResolvedAnnotationFilters(symbol, true)
+					.get(annotationType);
+			if (filterDescriptor != null) {
+				if (filterDescriptor.parameter == null) {
+					return defaultValue;
+				} else if (filterDescriptor.parameter.startsWith("'")) {
+					return filterDescriptor.parameter.substring(1, filterDescriptor.parameter.length() - 1);
+				} else if (filterDescriptor.parameter.endsWith(".class")) {
+					return filterDescriptor.parameter.substring(0, filterDescriptor.parameter.length() - 6);
+				} else {
+					return filterDescriptor.parameter;
 				}
 			}
 		}
@@ -176,4 +176,52 @@ public interface JSweetOptions {
 	 * JavaScript.
 	 */
 	boolean isDebugMode();
-}
\ No newline at end of file
+
+	/**
+	 * If true, the transpiler only translates the compilation units that
+	 * changed since the last transpilation (or that depend on units which API
+	 * changed).
+	 */
+	boolean isIncremental();
+
+	/**
+	 * If true, the invocations of overloaded methods that are resolved at
+	 * compile time call the corresponding overload implementation directly
+	 * whenever possible, rather than going through the overload dispatcher
+	 * function (which tests the types of the arguments at runtime). The
+	 * dispatcher is still generated for dynamic and external callers.
+	 */
+	boolean isStaticOverloadDispatch();
+
+	/**
+	 * If true, the arrays of <code>byte</code>, <code>short</code>,
+	 * <code>int</code>, <code>float</code> and <code>double</code> are
+	 * generated as JavaScript typed arrays (<code>Int8Array</code>,
+	 * <code>Int16Array</code>, <code>Int32Array</code>,
+	 * <code>Float32Array</code> and <code>Float64Array</code>) instead of
+	 * regular JavaScript arrays.
+	 */
+	boolean isUseTypedArrays();
+
+	/**
+	 * If true, the helper functions needed by the generated code (see
+	 * {@link org.jsweet.transpiler.util.RuntimeHelper}) are declared once per
+	 * generated module or bundle and called by name, instead of being inlined
+	 * as function expressions at each use site. This option has no effect
+	 * when generating global (non-module) files out of bundle mode. Helpers
+	 * that are too large to be inlined, such as the string builder, are
+	 * always declared.
+	 */
+	boolean isUseRuntimeHelpers();
+
+	/**
+	 * If true, and when Java APIs are translated to JavaScript APIs (no Java
+	 * runtime), the Java sets and maps are generated as native ES2015
+	 * <code>Set</code> and <code>Map</code> objects, instead of arrays and
+	 * plain objects. Native maps compare the keys by identity, except for
+	 * strings, numbers, booleans and enums, so that keys relying on
+	 * <code>equals</code> and <code>hashCode</code> are not supported. This
+	 * option requires ES6 or higher as the target version.
+	 */
+	boolean isUseNativeCollections();
+}
@@ -294,7 +294,12 @@ public enum JSweetProblem {
 	/**
 	 * Raised when a cycle is detected in static initializers.
 	 */
-	CYCLE_IN_STATIC_INITIALIZER_DEPENDENCIES(Severity.ERROR);
+	CYCLE_IN_STATIC_INITIALIZER_DEPENDENCIES(Severity.ERROR),
+	/**
+	 * Raised when the Closure Compiler reports an error while optimizing the
+	 * generated JavaScript.
+	 */
+	JS_OPTIMIZATION_ERROR(Severity.ERROR);
 
 	private Severity severity;
 
@@ -438,6 +443,8 @@ public enum JSweetProblem {
 			return String.format("wrong key: method '$object' expects a list of key/value pairs as parameters, where keys are string literals", params);
 		case CYCLE_IN_STATIC_INITIALIZER_DEPENDENCIES:
 			return String.format("a cycle was detected in static intializers involving '%s'", params);
+		case JS_OPTIMIZATION_ERROR:
+			return String.format("JavaScript optimization error: %s", params);
 		case INTERNAL_TRANSPILER_ERROR:
 			return String.format("internal transpiler error");
 		}
@@ -23,25 +23,30 @@ import static java.util.stream.Collectors.toList;
 import static org.jsweet.transpiler.util.Util.toJavaFileObjects;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -57,24 +62,23 @@ import org.jsweet.JSweetConfig;
 import org.jsweet.transpiler.candy.CandyProcessor;
 import org.jsweet.transpiler.extension.PrinterAdapter;
 import org.jsweet.transpiler.util.AbstractTreePrinter;
-import org.jsweet.transpiler.util.DirectedGraph;
+import org.jsweet.transpiler.util.ClosureOptimizer;
 import org.jsweet.transpiler.util.DirectedGraph.Node;
 import org.jsweet.transpiler.util.ErrorCountTranspilationHandler;
 import org.jsweet.transpiler.util.EvaluationResult;
-import org.jsweet.transpiler.util.Position;
+import org.jsweet.transpiler.util.ExternsGenerator;
 import org.jsweet.transpiler.util.ProcessUtil;
 import org.jsweet.transpiler.util.SourceMap;
 import org.jsweet.transpiler.util.SourceMap.Entry;
+import org.jsweet.transpiler.util.SourceMapComposer;
+import org.jsweet.transpiler.util.TypeScriptCompilerHost;
 import org.jsweet.transpiler.util.Util;
 
 import com.google.debugging.sourcemap.FilePosition;
-import com.google.debugging.sourcemap.SourceMapConsumerFactory;
 import com.google.debugging.sourcemap.SourceMapFormat;
 import com.google.debugging.sourcemap.SourceMapGenerator;
 import com.google.debugging.sourcemap.SourceMapGeneratorFactory;
 import com.google.debugging.sourcemap.SourceMapGeneratorV3;
-import com.google.debugging.sourcemap.SourceMapping;
-import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import com.google.gson.Gson;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
@@ -180,6 +184,25 @@ public class JSweetTranspiler implements JSweetOptions {
 	private boolean isUsingJavaRuntime = false;
 	private File headerFile = null;
 	private boolean debugMode = false;
+	private boolean incremental = false;
+	private boolean staticOverloadDispatch = false;
+	private boolean useTypedArrays = false;
+	private boolean useRuntimeHelpers = false;
+	private boolean useNativeCollections = false;
+	private boolean reuseClassPathIndex = false;
+	private String classPathFingerprint;
+	private boolean useTsCompilerHost = false;
+	private TypeScriptCompilerHost tsCompilerHost;
+	private boolean inMemoryTsFiles = false;
+	private boolean skipTypeScriptChecks = false;
+	private JsOptimizationLevel jsOptimizationLevel = JsOptimizationLevel.none;
+	private String jsExterns;
+	private boolean treeShaking = false;
+	private int outputThreadCount = 1;
+	private Map<String, String> optimizedJsFileHashes = new ConcurrentHashMap<>();
+	private Map<String, CharSequence> tsFileContents = new ConcurrentHashMap<>();
+	private Map<File, String> javaFileTsPaths = new HashMap<>();
+	private IncrementalTranspilationIndex incrementalIndex;
 
 	/**
 	 * Manually sets the transpiler to use (or not use) a Java runtime.
@@ -205,7 +228,11 @@ public class JSweetTranspiler implements JSweetOptions {
 				+ generateDeclarations + "\ndeclarationsOutputDir=" + declarationsOutputDir + "\ninterfaceTracking="
 				+ interfaceTracking + "\nsupportGetClass=" + supportGetClass + "\nsupportSaticLazyInitialization="
 				+ supportSaticLazyInitialization + "\ngenerateDefinitions=" + generateDefinitions + "\njsLibFiles="
-				+ jsLibFiles;
+				+ jsLibFiles + "\nincremental=" + incremental
+				+ "\nstaticOverloadDispatch=" + staticOverloadDispatch + "\nuseTypedArrays=" + useTypedArrays
+				+ "\nuseRuntimeHelpers=" + useRuntimeHelpers + "\nuseNativeCollections=" + useNativeCollections
+				+ "\nskipTypeScriptChecks=" + skipTypeScriptChecks + "\njsOptimizationLevel=" + jsOptimizationLevel
+				+ "\ntreeShaking=" + treeShaking;
 	}
 
 	/**
@@ -398,6 +425,10 @@ public class JSweetTranspiler implements JSweetOptions {
 		context.setUsingJavaRuntime(forceJavaRuntime ? isUsingJavaRuntime
 				: (candiesProcessor == null ? false : candiesProcessor.isUsingJavaRuntime()));
 		adapter = factory.createAdapter(context);
+		if (useNativeCollections && !ecmaTargetVersion.higherThan(EcmaScriptComplianceLevel.ES5)) {
+			logger.warn("native collections require ES6 or higher as the target version (current target is "
+					+ ecmaTargetVersion + ")");
+		}
 		options = Options.instance(context);
 		if (classPath != null) {
 			options.put(Option.CLASSPATH, classPath);
@@ -417,8 +448,19 @@ public class JSweetTranspiler implements JSweetOptions {
 		logger.debug("bootclasspath: " + options.get(Option.BOOTCLASSPATH));
 		logger.debug("strict mode: " + context.strictMode);
 		options.put(Option.XLINT, "path");
-		JavacFileManager.preRegister(context);
-		fileManager = context.get(JavaFileManager.class);
+		String newClassPathFingerprint = reuseClassPathIndex ? getClassPathFingerprint() : null;
+		if (fileManager instanceof JavacFileManager && newClassPathFingerprint != null
+				&& newClassPathFingerprint.equals(classPathFingerprint)) {
+			// the class path did not change: the file manager and its archive
+			// indexes are kept warm in the new context
+			logger.debug("reusing class path index");
+			context.put(JavaFileManager.class, fileManager);
+			((JavacFileManager) fileManager).setContext(context);
+		} else {
+			JavacFileManager.preRegister(context);
+			fileManager = context.get(JavaFileManager.class);
+		}
+		classPathFingerprint = newClassPathFingerprint;
 		compiler = JavaCompiler.instance(context);
 		compiler.attrParseOnly = true;
 		compiler.verbose = false;
@@ -435,6 +477,19 @@ public class JSweetTranspiler implements JSweetOptions {
 		log.setDiagnosticFormatter(factory.createDiagnosticHandler(transpilationHandler, context));
 	}
 
+	private String getClassPathFingerprint() {
+		StringBuilder fingerprint = new StringBuilder();
+		fingerprint.append(options.get(Option.CLASSPATH)).append(';').append(options.get(Option.BOOTCLASSPATH))
+				.append(';').append(encoding);
+		if (classPath != null) {
+			for (String s : classPath.split(File.pathSeparator)) {
+				File f = new File(s);
+				fingerprint.append(';').append(f.lastModified()).append(':').append(f.length());
+			}
+		}
+		return fingerprint.toString();
+	}
+
 	private boolean areAllTranspiled(SourceFile... sourceFiles) {
 		for (SourceFile file : sourceFiles) {
 			if (file.getJsFile() == null) {
@@ -737,6 +792,9 @@ public class JSweetTranspiler implements JSweetOptions {
 					JSweetProblem.BUNDLE_WITH_MODULE.getMessage());
 			return null;
 		}
+		if (useRuntimeHelpers && !context.useModules && !bundle) {
+			logger.warn("runtime helpers only apply to modules and bundles: helpers are inlined in global files");
+		}
 		return compilationUnits;
 	}
 
@@ -819,6 +877,9 @@ public class JSweetTranspiler implements JSweetOptions {
 		} else {
 			if (bundle) {
 				generateTsBundle(transpilationHandler, files, compilationUnits);
+				if (jsOptimizationLevel == JsOptimizationLevel.advanced) {
+					jsExterns = new ExternsGenerator(context).generate(compilationUnits);
+				}
 			} else {
 				generateTsFiles(transpilationHandler, files, compilationUnits);
 			}
@@ -842,6 +903,10 @@ public class JSweetTranspiler implements JSweetOptions {
 		// regular file-to-file generation
 		new OverloadScanner(transpilationHandler, context).process(compilationUnits);
 		String[] headerLines = getHeaderLines();
+		if (incremental) {
+			getIncrementalIndex().analyze(getIncrementalFingerprint(headerLines), compilationUnits);
+		}
+		java.util.List<TsOutput> outputs = new ArrayList<>();
 		for (int i = 0; i < compilationUnits.length(); i++) {
 			JCCompilationUnit cu = compilationUnits.get(i);
 			if (isModuleDefsFile(cu)) {
@@ -850,51 +915,218 @@ public class JSweetTranspiler implements JSweetOptions {
 				}
 				continue;
 			}
+			if (isUpToDate(cu)) {
+				logger.info("skipping up-to-date " + cu.sourcefile.getName());
+				initSourceFileJavaPaths(files[i], cu);
+				files[i].tsFile = incrementalIndex.getOutputFile(cu);
+				files[i].javaFileLastTranspiled = files[i].getJavaFile().lastModified();
+				files[i].setSourceMap(incrementalIndex.getSourceMap(cu));
+				incrementalIndex.replayContextContributions(cu, context);
+				continue;
+			}
 			logger.info("scanning " + cu.sourcefile.getName() + "...");
 			AbstractTreePrinter printer = factory.createTranslator(adapter, transpilationHandler, context, cu,
 					generateSourceMap);
-			printer.print(cu);
+			if (incremental) {
+				incrementalIndex.recordContextContributions(cu, context, () -> printer.print(cu));
+			} else {
+				printer.print(cu);
+			}
 			if (StringUtils.isWhitespace(printer.getResult())) {
 				continue;
 			}
-			String[] s = cu.getSourceFile().getName().split(File.separator.equals("\\") ? "\\\\" : File.separator);
-			String cuName = s[s.length - 1];
-			s = cuName.split("\\.");
-			cuName = s[0];
-			String javaSourceFileRelativeFullName = (cu.packge.getQualifiedName().toString().replace(".",
-					File.separator) + File.separator + cuName + ".java");
-			files[i].javaSourceDirRelativeFile = new File(javaSourceFileRelativeFullName);
-			files[i].javaSourceDir = new File(cu.getSourceFile().getName().substring(0,
-					cu.getSourceFile().getName().length() - javaSourceFileRelativeFullName.length()));
-			String packageName = isNoRootDirectories() ? context.getRootRelativeJavaName(cu.packge)
-					: cu.packge.getQualifiedName().toString();
-			String outputFileRelativePathNoExt = packageName.replace(".", File.separator) + File.separator + cuName;
-			String outputFileRelativePath = outputFileRelativePathNoExt
-					+ (cu.packge.fullname.toString().startsWith("def.") ? ".d.ts" : ".ts");
-			logger.info("output file: " + outputFileRelativePath);
-			File outputFile = new File(tsOutputDir, outputFileRelativePath);
-			outputFile.getParentFile().mkdirs();
-			String outputFilePath = outputFile.getPath();
-			PrintWriter out = new PrintWriter(outputFilePath);
-			try {
-				for (String line : headerLines) {
-					out.println(line);
+			outputs.add(createTsOutput(files[i], cu, printer, headerLines, context.poolFooterStatements()));
+		}
+		// the translation goes through javac and is sequential, but the
+		// outputs are independent from each other
+		runOutputTasks(outputs, output -> writeTsFile(output, headerLines));
+		if (incremental) {
+			for (TsOutput output : outputs) {
+				incrementalIndex.unitTranspiled(output.cu, output.outputFile,
+						generateSourceMap ? output.sourceMap : null);
+			}
+			incrementalIndex.commit();
+		}
+		logger.debug("mapped type cache: " + context.getMappedTypeCacheHitCount() + " hits, "
+				+ context.getMappedTypeCacheMissCount() + " misses");
+		logger.debug("printed type cache: " + context.getPrintedTypeCacheHitCount() + " hits, "
+				+ context.getPrintedTypeCacheMissCount() + " misses");
+	}
+
+	private boolean isUpToDate(JCCompilationUnit cu) {
+		if (!incremental || !incrementalIndex.isUpToDate(cu, generateSourceMap)) {
+			return false;
+		}
+		// in-memory outputs of previous transpilations are lost when the
+		// transpiler is recreated
+		return !isKeepingTsFilesInMemory() || (incrementalIndex.getOutputFile(cu) != null
+				&& tsFileContents.containsKey(incrementalIndex.getOutputFile(cu).getAbsolutePath()));
+	}
+
+	/**
+	 * A generated TypeScript file, waiting to be written.
+	 */
+	private static class TsOutput {
+		SourceFile file;
+		JCCompilationUnit cu;
+		File outputFile;
+		String content;
+		SourceMap sourceMap;
+	}
+
+	/**
+	 * A task applied to each output of a transpilation (see
+	 * {@link #runOutputTasks(java.util.List, OutputTask)}).
+	 */
+	private interface OutputTask<T> {
+		void run(T output) throws IOException;
+	}
+
+	/**
+	 * Runs the given task on the given outputs, using the configured number
+	 * of threads (see {@link #setOutputThreadCount(int)}). All the tasks are
+	 * completed before this method returns, and the first failure in the order
+	 * of the outputs is then rethrown.
+	 */
+	private <T> void runOutputTasks(java.util.List<T> outputs, OutputTask<T> task) throws IOException {
+		if (outputThreadCount <= 1 || outputs.size() <= 1) {
+			for (T output : outputs) {
+				task.run(output);
+			}
+			return;
+		}
+		ForkJoinPool pool = new ForkJoinPool(Math.min(outputThreadCount, outputs.size()));
+		try {
+			java.util.List<Future<?>> futures = new ArrayList<>();
+			for (T output : outputs) {
+				futures.add(pool.submit(() -> {
+					task.run(output);
+					return null;
+				}));
+			}
+			Throwable failure = null;
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("interrupted while writing outputs", e);
 				}
-				out.println(printer.getResult());
-				out.print(context.getGlobalsMappingString());
-				out.print(context.poolFooterStatements());
-			} finally {
-				out.close();
 			}
-			files[i].tsFile = outputFile;
-			files[i].javaFileLastTranspiled = files[i].getJavaFile().lastModified();
-			printer.sourceMap.shiftOutputPositions(headerLines.length);
-			files[i].setSourceMap(printer.sourceMap);
-			if (generateSourceMap && !generateJsFiles) {
-				generateTypeScriptSourceMapFile(files[i]);
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private TsOutput createTsOutput(SourceFile file, JCCompilationUnit cu, AbstractTreePrinter printer,
+			String[] headerLines, String footerStatements) {
+		initSourceFileJavaPaths(file, cu);
+		String[] s = cu.getSourceFile().getName().split(File.separator.equals("\\") ? "\\\\" : File.separator);
+		String cuName = s[s.length - 1];
+		s = cuName.split("\\.");
+		cuName = s[0];
+		String packageName = isNoRootDirectories() ? context.getRootRelativeJavaName(cu.packge)
+				: cu.packge.getQualifiedName().toString();
+		String outputFileRelativePathNoExt = packageName.replace(".", File.separator) + File.separator + cuName;
+		String outputFileRelativePath = outputFileRelativePathNoExt
+				+ (cu.packge.fullname.toString().startsWith("def.") ? ".d.ts" : ".ts");
+		logger.info("output file: " + outputFileRelativePath);
+		StringWriter content = new StringWriter();
+		PrintWriter out = new PrintWriter(content);
+		try {
+			for (String line : headerLines) {
+				out.println(line);
 			}
-			logger.info("created " + outputFilePath);
+			out.println(printer.getResult());
+			out.print(context.getGlobalsMappingString());
+			out.print(footerStatements);
+		} finally {
+			out.close();
+		}
+		TsOutput output = new TsOutput();
+		output.file = file;
+		output.cu = cu;
+		output.outputFile = new File(tsOutputDir, outputFileRelativePath);
+		output.content = content.toString();
+		output.sourceMap = printer.sourceMap;
+		return output;
+	}
+
+	private void writeTsFile(TsOutput output, String[] headerLines) throws IOException {
+		SourceFile file = output.file;
+		output.outputFile.getParentFile().mkdirs();
+		writeTsOutput(output.outputFile, output.content);
+		file.tsFile = output.outputFile;
+		file.javaFileLastTranspiled = file.getJavaFile().lastModified();
+		output.sourceMap.shiftOutputPositions(headerLines.length);
+		file.setSourceMap(output.sourceMap);
+		if (generateSourceMap && !generateJsFiles) {
+			generateTypeScriptSourceMapFile(file);
+		}
+	}
+
+	private void writeTsOutput(File outputFile, String content) throws IOException {
+		if (isKeepingTsFilesInMemory()) {
+			tsFileContents.put(outputFile.getAbsolutePath(), content);
+			logger.info("created (in memory) " + outputFile.getPath());
+		} else if (incremental && isSameContent(outputFile, content)) {
+			logger.info("output is unchanged: " + outputFile.getPath());
+		} else {
+			FileUtils.write(outputFile, content, false);
+			logger.info("created " + outputFile.getPath());
+		}
+	}
+
+	/**
+	 * Tells if the generated TypeScript is actually kept in memory for this
+	 * transpilation (see {@link #setInMemoryTsFiles(boolean)}).
+	 */
+	private boolean isKeepingTsFilesInMemory() {
+		return inMemoryTsFiles && generateJsFiles && !isTscWatchMode();
+	}
+
+	private static boolean isSameContent(File file, String content) {
+		if (!file.exists()) {
+			return false;
+		}
+		try {
+			return content.equals(FileUtils.readFileToString(file));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the index used in incremental mode (see
+	 * {@link #setIncremental(boolean)}).
+	 */
+	public IncrementalTranspilationIndex getIncrementalIndex() {
+		if (incrementalIndex == null) {
+			incrementalIndex = new IncrementalTranspilationIndex(workingDir);
+			incrementalIndex.load();
 		}
+		return incrementalIndex;
+	}
+
+	/**
+	 * A string that identifies the options that have an impact on the
+	 * generated code, so that the incremental index can be invalidated when
+	 * these options change.
+	 */
+	private String getIncrementalFingerprint(String[] headerLines) {
+		return JSweetConfig.getVersionNumber() + "|" + factory.getClass().getName() + "|"
+				+ context.isUsingJavaRuntime() + "|" + String.join("\n", headerLines) + "|" + toString();
 	}
 
 	private void generateTypeScriptSourceMapFile(SourceFile sourceFile) throws IOException {
@@ -946,13 +1178,33 @@ public class JSweetTranspiler implements JSweetOptions {
 					JSweetProblem.CYCLE_IN_STATIC_INITIALIZER_DEPENDENCIES.getMessage(sourcesInCycle.stream()
 							.map(n -> n.element.sourcefile.getName()).collect(Collectors.toList())));
 
-			DirectedGraph.dumpCycles(sourcesInCycle, u -> u.sourcefile.getName());
+			for (java.util.List<JCCompilationUnit> cycle : analizer.globalStaticInitializersDependencies.findCycles()) {
+				logger.error("static initializers cycle: "
+						+ cycle.stream().map(u -> u.sourcefile.getName()).collect(Collectors.toList()));
+			}
 
 			return;
 		}
 
 		new OverloadScanner(transpilationHandler, context).process(orderedCompilationUnits);
 
+		Set<JCCompilationUnit> eliminatedCompilationUnits = new HashSet<>();
+		if (treeShaking) {
+			ReachabilityAnalyzer reachabilityAnalyzer = new ReachabilityAnalyzer(context);
+			if (reachabilityAnalyzer.process(orderedCompilationUnits)) {
+				for (JCCompilationUnit cu : orderedCompilationUnits) {
+					if (!reachabilityAnalyzer.isReachable(cu)) {
+						eliminatedCompilationUnits.add(cu);
+					}
+				}
+				context.eliminatedMethods = reachabilityAnalyzer.getUnreachableMethods();
+				logger.info("tree shaking: " + eliminatedCompilationUnits.size() + " unreachable compilation unit(s), "
+						+ context.eliminatedMethods.size() + " unreachable method(s)");
+			} else {
+				logger.warn("tree shaking is ignored: no main method found in bundle");
+			}
+		}
+
 		logger.debug("ordered compilation units: " + orderedCompilationUnits.stream().map(cu -> {
 			return cu.sourcefile.getName();
 		}).collect(Collectors.toList()));
@@ -965,9 +1217,15 @@ public class JSweetTranspiler implements JSweetOptions {
 			permutationString.append("" + i + "=" + permutation[i] + ";");
 		}
 		logger.debug("permutation: " + permutationString.toString());
-		createBundle(transpilationHandler, files, permutation, orderedCompilationUnits, false);
+		try {
+			createBundle(transpilationHandler, files, permutation, orderedCompilationUnits,
+					eliminatedCompilationUnits, false);
+		} finally {
+			context.eliminatedMethods = Collections.emptySet();
+		}
 		if (isGenerateDefinitions()) {
-			createBundle(transpilationHandler, files, permutation, orderedCompilationUnits, true);
+			createBundle(transpilationHandler, files, permutation, orderedCompilationUnits,
+					Collections.emptySet(), true);
 		}
 	}
 
@@ -985,8 +1243,8 @@ public class JSweetTranspiler implements JSweetOptions {
 	}
 
 	private void createBundle(ErrorCountTranspilationHandler transpilationHandler, SourceFile[] files,
-			int[] permutation, java.util.List<JCCompilationUnit> orderedCompilationUnits, boolean definitionBundle)
-			throws FileNotFoundException {
+			int[] permutation, java.util.List<JCCompilationUnit> orderedCompilationUnits,
+			Set<JCCompilationUnit> eliminatedCompilationUnits, boolean definitionBundle) throws IOException {
 		context.bundleMode = true;
 		StringBuilder sb = new StringBuilder();
 		int lineCount = 0;
@@ -1008,6 +1266,11 @@ public class JSweetTranspiler implements JSweetOptions {
 					continue;
 				}
 			}
+			if (eliminatedCompilationUnits.contains(cu)) {
+				// the source file is still associated to the bundle
+				logger.info("skipping unreachable " + cu.sourcefile.getName());
+				continue;
+			}
 			logger.info("scanning " + cu.sourcefile.getName() + "...");
 			AbstractTreePrinter printer = factory.createTranslator(adapter, transpilationHandler, context, cu,
 					generateSourceMap);
@@ -1033,8 +1296,8 @@ public class JSweetTranspiler implements JSweetOptions {
 
 		logger.info("creating bundle file: " + outputFile);
 		outputFile.getParentFile().mkdirs();
-		String outputFilePath = outputFile.getPath();
-		PrintWriter out = new PrintWriter(outputFilePath);
+		StringWriter content = new StringWriter();
+		PrintWriter out = new PrintWriter(content);
 		try {
 			out.println(sb.toString());
 			out.print(context.getGlobalsMappingString());
@@ -1065,6 +1328,7 @@ public class JSweetTranspiler implements JSweetOptions {
 		} finally {
 			out.close();
 		}
+		writeTsOutput(outputFile, content.toString());
 		for (int i = 0; i < orderedCompilationUnits.size(); i++) {
 			JCCompilationUnit cu = orderedCompilationUnits.get(i);
 			if (cu.packge.fullname.toString().startsWith("def.")) {
@@ -1079,8 +1343,6 @@ public class JSweetTranspiler implements JSweetOptions {
 			files[permutation[i]].tsFile = outputFile;
 			files[permutation[i]].javaFileLastTranspiled = files[permutation[i]].getJavaFile().lastModified();
 		}
-		logger.info("created " + outputFilePath);
-
 	}
 
 	private File getOrCreateTscRootFile() throws IOException {
@@ -1179,6 +1441,9 @@ public class JSweetTranspiler implements JSweetOptions {
 		}
 
 		logger.debug("ts2js: " + Arrays.asList(files));
+		if (isKeepingTsFilesInMemory()) {
+			pruneInMemoryTsFiles(files);
+		}
 		LinkedList<String> args = new LinkedList<>();
 		if (System.getProperty("os.name").startsWith("Windows")) {
 			args.addAll(asList("--target", ecmaTargetVersion.name()));
@@ -1255,17 +1520,40 @@ public class JSweetTranspiler implements JSweetOptions {
 		}
 	}
 
+	/**
+	 * Drops the in-memory TypeScript files that do not correspond to an
+	 * existing Java file anymore (deleted, moved, or renamed source files).
+	 */
+	private void pruneInMemoryTsFiles(SourceFile[] files) {
+		for (SourceFile file : files) {
+			if (file.getJavaFile() != null && file.getTsFile() != null) {
+				javaFileTsPaths.put(file.getJavaFile().getAbsoluteFile(), file.getTsFile().getAbsolutePath());
+			}
+		}
+		javaFileTsPaths.keySet().removeIf(javaFile -> !javaFile.exists());
+		Set<String> tsPaths = new HashSet<>(javaFileTsPaths.values());
+		for (SourceFile file : files) {
+			if (file.getTsFile() != null) {
+				tsPaths.add(file.getTsFile().getAbsolutePath());
+			}
+		}
+		if (tsFileContents.keySet().retainAll(tsPaths)) {
+			logger.info("dropped in-memory TypeScript files of removed sources");
+		}
+	}
+
 	private void runTSC(ErrorCountTranspilationHandler transpilationHandler, SourceFile[] files, String... args) {
 		boolean[] fullPass = { true };
+		SourceFileIndex sourceFileIndex = new SourceFileIndex(files);
 
-		tsCompilationProcess = ProcessUtil.runCommand("tsc", getTsOutputDir(), isTscWatchMode(), line -> {
+		Consumer<String> tscOutputConsumer = line -> {
 			logger.info(line);
 			TscOutput output = parseTscOutput(line);
 			if (output.position != null) {
 				if (isIgnoreTypeScriptErrors()) {
 					return;
 				}
-				SourcePosition position = SourceFile.findOriginPosition(output.position, Arrays.asList(files));
+				SourcePosition position = sourceFileIndex.findOriginPosition(output.position);
 				if (position == null) {
 					transpilationHandler.report(JSweetProblem.INTERNAL_TSC_ERROR, output.position, output.message);
 				} else {
@@ -1283,15 +1571,40 @@ public class JSweetTranspiler implements JSweetOptions {
 					// targeting 'ES6' or higher.
 				}
 			}
-		}, process -> {
-			tsCompilationProcess = null;
-			onTsTranspilationCompleted(fullPass[0], transpilationHandler, files);
-			fullPass[0] = false;
-		}, () -> {
-			if (!ignoreTypeScriptErrors && transpilationHandler.getProblemCount() == 0) {
-				transpilationHandler.report(JSweetProblem.INTERNAL_TSC_ERROR, null, "Unknown tsc error");
+		};
+
+		if ((useTsCompilerHost || isKeepingTsFilesInMemory() || isSkippingTypeScriptChecks())
+				&& !isTscWatchMode()) {
+			if (tsCompilerHost == null) {
+				tsCompilerHost = new TypeScriptCompilerHost(workingDir);
+			}
+			try {
+				int errorCount = tsCompilerHost.compile(getTsOutputDir(), asList(args),
+						isKeepingTsFilesInMemory() ? tsFileContents : null, isSkippingTypeScriptChecks(),
+						tscOutputConsumer);
+				if (errorCount > 0 && !ignoreTypeScriptErrors && transpilationHandler.getProblemCount() == 0) {
+					transpilationHandler.report(JSweetProblem.INTERNAL_TSC_ERROR, null, "Unknown tsc error");
+				}
+			} catch (IOException e) {
+				logger.error(e.getMessage(), e);
+				transpilationHandler.report(JSweetProblem.TSC_CANNOT_START, null,
+						JSweetProblem.TSC_CANNOT_START.getMessage());
+				return;
 			}
-		}, args);
+			onTsTranspilationCompleted(true, transpilationHandler, files);
+			return;
+		}
+
+		tsCompilationProcess = ProcessUtil.runCommand("tsc", getTsOutputDir(), isTscWatchMode(), tscOutputConsumer,
+				process -> {
+					tsCompilationProcess = null;
+					onTsTranspilationCompleted(fullPass[0], transpilationHandler, files);
+					fullPass[0] = false;
+				}, () -> {
+					if (!ignoreTypeScriptErrors && transpilationHandler.getProblemCount() == 0) {
+						transpilationHandler.report(JSweetProblem.INTERNAL_TSC_ERROR, null, "Unknown tsc error");
+					}
+				}, args);
 
 		// tsCompilationProcess.waitFor();
 		// if (tsCompilationProcess != null &&
@@ -1327,7 +1640,9 @@ public class JSweetTranspiler implements JSweetOptions {
 				}
 			}
 			if (handler.getErrorCount() == 0) {
-				Set<File> handledFiles = new HashSet<>();
+				Set<File> handledFiles = new LinkedHashSet<>();
+				SourceFileIndex sourceFileIndex = new SourceFileIndex(files);
+				java.util.List<SourceFile> mappedFiles = new ArrayList<>();
 				for (SourceFile sourceFile : files) {
 					if (!sourceFile.getTsFile().getAbsolutePath().startsWith(tsOutputDir.getAbsolutePath())) {
 						throw new RuntimeException("ts directory isn't configured properly, please use setTsDir: "
@@ -1347,62 +1662,15 @@ public class JSweetTranspiler implements JSweetOptions {
 						File mapFile = new File(outputFile.getAbsolutePath() + ".map");
 
 						if (mapFile.exists() && generateSourceMap) {
-
-							SourceMapGeneratorV3 generator = (SourceMapGeneratorV3) SourceMapGeneratorFactory
-									.getInstance(SourceMapFormat.V3);
-							Path javaSourcePath = sourceFile.javaSourceDir.getCanonicalFile().toPath();
-							String sourceRoot = getSourceRoot() != null ? getSourceRoot().toString()
-									: sourceFile.getJsFile().getParentFile().getCanonicalFile().toPath()
-											.relativize(javaSourcePath) + "/";
-							generator.setSourceRoot(sourceRoot);
-
 							sourceFile.jsMapFile = mapFile;
-							logger.info("redirecting map file: " + mapFile);
-							String contents = FileUtils.readFileToString(mapFile);
-							SourceMapping mapping = SourceMapConsumerFactory.parse(contents);
-
-							int line = 1;
-							int columnIndex = 0;
-							for (String lineContent : FileUtils.readLines(outputFile, (Charset) null)) {
-								columnIndex = 0;
-								while (columnIndex < lineContent.length() && (lineContent.charAt(columnIndex) == ' '
-										|| lineContent.charAt(columnIndex) == '\t')) {
-									columnIndex++;
-								}
-
-								OriginalMapping originalMapping = mapping.getMappingForLine(line, columnIndex + 1);
-								if (originalMapping != null) {
-									// TODO: this is quite slow and should be
-									// optimized
-									SourcePosition originPosition = SourceFile.findOriginPosition(new SourcePosition(
-											sourceFile.tsFile, null, new Position(originalMapping.getLineNumber(),
-													originalMapping.getColumnPosition())),
-											files);
-									if (originPosition != null) {
-										// as a first approximation, we only map
-										// line numbers (ignore columns)
-										generator.addMapping(
-												javaSourcePath
-														.relativize(
-																originPosition.getFile().getCanonicalFile().toPath())
-														.toString(),
-												null, new FilePosition(originPosition.getStartLine() - 1, 0),
-												new FilePosition(line - 1, 0),
-												new FilePosition(line - 1, lineContent.length() - 1));
-									}
-								}
-
-								line++;
-							}
-
-							try (FileWriter writer = new FileWriter(mapFile, false)) {
-								generator.appendTo(writer, outputFile.getName());
-							} catch (Exception ex) {
-								ex.printStackTrace();
-							}
+							mappedFiles.add(sourceFile);
 						}
 					}
 				}
+				runOutputTasks(mappedFiles, sourceFile -> composeSourceMap(sourceFile, sourceFileIndex));
+				if (jsOptimizationLevel != JsOptimizationLevel.none) {
+					optimizeJsFiles(handler, handledFiles);
+				}
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -1411,6 +1679,68 @@ public class JSweetTranspiler implements JSweetOptions {
 		}
 	}
 
+	private void composeSourceMap(SourceFile sourceFile, SourceFileIndex sourceFileIndex) throws IOException {
+		File mapFile = sourceFile.jsMapFile;
+		Path javaSourcePath = sourceFile.javaSourceDir.getCanonicalFile().toPath();
+		String sourceRoot = getSourceRoot() != null ? getSourceRoot().toString()
+				: sourceFile.getJsFile().getParentFile().getCanonicalFile().toPath().relativize(javaSourcePath)
+						+ "/";
+
+		logger.info("redirecting map file: " + mapFile);
+		SourceMapGeneratorV3 generator = new SourceMapComposer(javaSourcePath,
+				sourceFileIndex.getSourceFiles(sourceFile.getTsFile()))
+						.compose(FileUtils.readFileToString(mapFile), sourceRoot);
+
+		try (FileWriter writer = new FileWriter(mapFile, false)) {
+			generator.appendTo(writer, sourceFile.getJsFile().getName());
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	private void optimizeJsFiles(ErrorCountTranspilationHandler handler, Collection<File> jsFiles)
+			throws IOException {
+		JsOptimizationLevel level = jsOptimizationLevel;
+		if (level == JsOptimizationLevel.advanced && (!bundle || isUsingModules())) {
+			logger.warn("advanced JavaScript optimizations only apply to bundles: using simple optimizations");
+			level = JsOptimizationLevel.simple;
+		}
+		ClosureOptimizer optimizer = new ClosureOptimizer(level, ecmaTargetVersion);
+		if (level == JsOptimizationLevel.advanced) {
+			optimizer.setExterns(jsExterns);
+		}
+		// files are optimized independently, and the errors are reported in
+		// the order of the files
+		Map<File, java.util.List<String>> errors = new ConcurrentHashMap<>();
+		java.util.List<File> files = new ArrayList<>(jsFiles);
+		runOutputTasks(files, jsFile -> {
+			try {
+				// in watch mode, tsc reports all the files at each pass, so
+				// that files that were not generated again are skipped (file
+				// timestamps are not precise enough to tell)
+				String path = jsFile.getAbsolutePath();
+				String hash = Util.getContentHash(FileUtils.readFileToString(jsFile));
+				if (hash.equals(optimizedJsFileHashes.get(path))) {
+					logger.info("already optimized: " + jsFile);
+					return;
+				}
+				java.util.List<String> fileErrors = optimizer.optimize(jsFile);
+				errors.put(jsFile, fileErrors);
+				if (fileErrors.isEmpty()) {
+					optimizedJsFileHashes.put(path, Util.getContentHash(FileUtils.readFileToString(jsFile)));
+				}
+			} catch (IOException e) {
+				logger.error(e.getMessage(), e);
+			}
+		});
+		for (File jsFile : files) {
+			for (String error : errors.getOrDefault(jsFile, Collections.emptyList())) {
+				handler.report(JSweetProblem.JS_OPTIMIZATION_ERROR, null,
+						JSweetProblem.JS_OPTIMIZATION_ERROR.getMessage(error));
+			}
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -1851,4 +2181,289 @@ public class JSweetTranspiler implements JSweetOptions {
 	public void setDebugMode(boolean debugMode) {
 		this.debugMode = debugMode;
 	}
+
+	@Override
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Sets the transpiler in incremental mode. In incremental mode, the
+	 * transpiler keeps a persisted index of the dependencies between the
+	 * compilation units (see {@link IncrementalTranspilationIndex}) and only
+	 * translates the units that changed or that depend on units whose API
+	 * changed. Unchanged TypeScript output is not rewritten.
+	 * 
+	 * <p>
+	 * Incremental mode only applies to file-to-file generation (it is ignored
+	 * in bundle mode).
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	@Override
+	public boolean isStaticOverloadDispatch() {
+		return staticOverloadDispatch;
+	}
+
+	/**
+	 * Sets the transpiler to call overload implementations directly when the
+	 * invoked overload is known at compile time.
+	 * 
+	 * @see JSweetOptions#isStaticOverloadDispatch()
+	 */
+	public void setStaticOverloadDispatch(boolean staticOverloadDispatch) {
+		this.staticOverloadDispatch = staticOverloadDispatch;
+	}
+
+	@Override
+	public boolean isUseTypedArrays() {
+		return useTypedArrays;
+	}
+
+	/**
+	 * Sets the transpiler to generate the numeric primitive arrays as
+	 * JavaScript typed arrays.
+	 * 
+	 * @see JSweetOptions#isUseTypedArrays()
+	 */
+	public void setUseTypedArrays(boolean useTypedArrays) {
+		this.useTypedArrays = useTypedArrays;
+	}
+
+	@Override
+	public boolean isUseRuntimeHelpers() {
+		return useRuntimeHelpers;
+	}
+
+	/**
+	 * Sets the transpiler to declare shared helper functions rather than
+	 * inlining them at each use site. This only applies to modules and
+	 * bundles: in the default global mode, a warning is logged and the
+	 * helpers are inlined as usual.
+	 * 
+	 * @see JSweetOptions#isUseRuntimeHelpers()
+	 */
+	public void setUseRuntimeHelpers(boolean useRuntimeHelpers) {
+		this.useRuntimeHelpers = useRuntimeHelpers;
+	}
+
+	@Override
+	public boolean isUseNativeCollections() {
+		return useNativeCollections;
+	}
+
+	/**
+	 * Sets the transpiler to generate the Java sets and maps as native ES2015
+	 * sets and maps when the Java APIs are translated to JavaScript APIs.
+	 * 
+	 * @see JSweetOptions#isUseNativeCollections()
+	 */
+	public void setUseNativeCollections(boolean useNativeCollections) {
+		this.useNativeCollections = useNativeCollections;
+	}
+
+	/**
+	 * Clears the incremental index so that the next transpilation is a full
+	 * one.
+	 * 
+	 * @see #setIncremental(boolean)
+	 */
+	public void clearIncrementalIndex() {
+		getIncrementalIndex().clear();
+	}
+
+	/**
+	 * Tells if the class path index is reused between transpilations (see
+	 * {@link #setReuseClassPathIndex(boolean)}).
+	 */
+	public boolean isReuseClassPathIndex() {
+		return reuseClassPathIndex;
+	}
+
+	/**
+	 * Sets the transpiler to reuse the Java file manager (and the indexes of
+	 * the class path archives) from one transpilation to another, as long as
+	 * the class path entries are not modified. This is meant for long-lived
+	 * transpilers (for instance in daemon mode), so that the class path (which
+	 * can contain large candies) is not reloaded for each transpilation.
+	 */
+	public void setReuseClassPathIndex(boolean reuseClassPathIndex) {
+		this.reuseClassPathIndex = reuseClassPathIndex;
+		if (!reuseClassPathIndex) {
+			classPathFingerprint = null;
+		}
+	}
+
+	/**
+	 * Tells if the TypeScript files are compiled with a long-lived compiler
+	 * host (see {@link #setUseTsCompilerHost(boolean)}).
+	 */
+	public boolean isUseTsCompilerHost() {
+		return useTsCompilerHost;
+	}
+
+	/**
+	 * Sets the transpiler to compile the generated TypeScript files with a
+	 * long-lived TypeScript compiler host rather than with a new
+	 * <code>tsc</code> process for each transpilation. The host keeps the
+	 * parsed TypeScript files (including the lib and candies definitions) in
+	 * memory between transpilations. This mode is ignored in tsc watch mode.
+	 * 
+	 * @see TypeScriptCompilerHost
+	 */
+	public void setUseTsCompilerHost(boolean useTsCompilerHost) {
+		this.useTsCompilerHost = useTsCompilerHost;
+		if (!useTsCompilerHost && tsCompilerHost != null) {
+			tsCompilerHost.close();
+			tsCompilerHost = null;
+		}
+	}
+
+	/**
+	 * Tells if the generated TypeScript files are kept in memory (see
+	 * {@link #setInMemoryTsFiles(boolean)}).
+	 */
+	public boolean isInMemoryTsFiles() {
+		return inMemoryTsFiles;
+	}
+
+	/**
+	 * Sets the transpiler to keep the generated TypeScript files in memory
+	 * rather than writing them to the TypeScript output directory. The
+	 * generated TypeScript is then directly handed to the TypeScript compiler
+	 * host (see {@link #setUseTsCompilerHost(boolean)}), which is used
+	 * regardless of its own setting.
+	 * 
+	 * <p>
+	 * This option only applies when generating JavaScript files and is ignored
+	 * in tsc watch mode (TypeScript files are then written as usual). The
+	 * in-memory files generated from source files that do not exist anymore
+	 * are dropped at each transpilation.
+	 */
+	public void setInMemoryTsFiles(boolean inMemoryTsFiles) {
+		this.inMemoryTsFiles = inMemoryTsFiles;
+		if (!inMemoryTsFiles) {
+			tsFileContents.clear();
+			javaFileTsPaths.clear();
+		}
+	}
+
+	/**
+	 * Tells if the generated TypeScript files are transpiled to JavaScript
+	 * without being type checked (see
+	 * {@link #setSkipTypeScriptChecks(boolean)}).
+	 */
+	public boolean isSkipTypeScriptChecks() {
+		return skipTypeScriptChecks;
+	}
+
+	/**
+	 * Sets the transpiler to emit the JavaScript files with a syntax-only
+	 * transformation of each generated TypeScript file (as with the
+	 * <code>isolatedModules</code> TypeScript option), rather than with a
+	 * type-checked <code>tsc</code> compilation of the whole program. The lib
+	 * and candies definitions are then never parsed, and only syntax errors
+	 * are reported. The compiler host (see
+	 * {@link #setUseTsCompilerHost(boolean)}) is used regardless of its own
+	 * setting.
+	 * 
+	 * <p>
+	 * Since the Java code is already type checked by javac, this is safe as
+	 * long as the generated code is correct. This option is ignored in tsc
+	 * watch mode and when generating declarations (which require type
+	 * information).
+	 */
+	public void setSkipTypeScriptChecks(boolean skipTypeScriptChecks) {
+		this.skipTypeScriptChecks = skipTypeScriptChecks;
+	}
+
+	private boolean isSkippingTypeScriptChecks() {
+		return skipTypeScriptChecks && !isGenerateDeclarations();
+	}
+
+	/**
+	 * Gets the optimization level of the generated JavaScript files (see
+	 * {@link #setJsOptimizationLevel(JsOptimizationLevel)}).
+	 */
+	public JsOptimizationLevel getJsOptimizationLevel() {
+		return jsOptimizationLevel;
+	}
+
+	/**
+	 * Sets the transpiler to optimize the generated JavaScript files with the
+	 * Closure Compiler, once they have been generated by tsc. Source maps, if
+	 * any, are composed so that the optimized files still map to the Java
+	 * sources.
+	 * 
+	 * <p>
+	 * The advanced level only applies to bundles. The externs of the bundle
+	 * (the globals and members used from the candies and the Java runtime) are
+	 * then generated from the Java program.
+	 * 
+	 * @see JsOptimizationLevel
+	 */
+	public void setJsOptimizationLevel(JsOptimizationLevel jsOptimizationLevel) {
+		this.jsOptimizationLevel = jsOptimizationLevel;
+	}
+
+	/**
+	 * Tells if the unreachable classes and methods are left out of the bundle
+	 * (see {@link #setTreeShaking(boolean)}).
+	 */
+	public boolean isTreeShaking() {
+		return treeShaking;
+	}
+
+	/**
+	 * Sets the transpiler to leave out of the bundle the classes and methods
+	 * that are not reachable from the main methods and the static initializers
+	 * of the program. This option only applies in bundle mode, and it is
+	 * ignored when the bundle has no main method.
+	 * 
+	 * <p>
+	 * Methods are kept or removed by name, so that all the overloads and
+	 * overriding methods of a reachable method are kept. Reflective accesses
+	 * are only taken into account when the accessed names appear in string
+	 * literals.
+	 * 
+	 * @see ReachabilityAnalyzer
+	 */
+	public void setTreeShaking(boolean treeShaking) {
+		this.treeShaking = treeShaking;
+	}
+
+	/**
+	 * Gets the number of threads used to handle the outputs of a transpilation
+	 * (see {@link #setOutputThreadCount(int)}).
+	 */
+	public int getOutputThreadCount() {
+		return outputThreadCount;
+	}
+
+	/**
+	 * Sets the number of threads used to handle the outputs of a
+	 * transpilation (default is 1): writing the generated TypeScript files,
+	 * composing the JavaScript source maps and optimizing the JavaScript
+	 * files.
+	 * 
+	 * <p>
+	 * The translation of the Java code itself goes through the Java compiler,
+	 * which is not thread-safe, so that it remains sequential. The generated
+	 * files and the reported problems do not depend on this option.
+	 */
+	public void setOutputThreadCount(int outputThreadCount) {
+		this.outputThreadCount = outputThreadCount;
+	}
+
+	/**
+	 * Gets the TypeScript code generated in memory for the given TypeScript
+	 * file (see {@link #setInMemoryTsFiles(boolean)}).
+	 * 
+	 * @return the generated code, null if not generated in memory
+	 */
+	public CharSequence getInMemoryTsFile(File tsFile) {
+		return tsFileContents.get(tsFile.getAbsolutePath());
+	}
 }
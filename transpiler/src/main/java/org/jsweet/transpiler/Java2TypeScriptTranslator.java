@@ -67,6 +67,7 @@ import org.jsweet.transpiler.model.support.ImportElementSupport;
 import org.jsweet.transpiler.model.support.MethodInvocationElementSupport;
 import org.jsweet.transpiler.model.support.NewClassElementSupport;
 import org.jsweet.transpiler.util.AbstractTreePrinter;
+import org.jsweet.transpiler.util.RuntimeHelper;
 import org.jsweet.transpiler.util.Util;
 
 import com.sun.source.tree.Tree.Kind;
@@ -144,6 +145,15 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 
 	public static final String PARENT_CLASS_FIELD_NAME = "__parent";
 	public static final String INTERFACES_FIELD_NAME = "__interfaces";
+	/**
+	 * The field holding the set of the supported interfaces (as an object
+	 * which keys are the interface names), for constant-time instanceof
+	 * checks on interfaces. It is set on the prototype of each class that
+	 * implements interfaces, and it is only trusted when defined by the
+	 * object's class itself (a subclass generated without interface sets
+	 * inherits an incomplete set).
+	 */
+	public static final String INTERFACE_SET_FIELD_NAME = "__interfaceSet";
 	public static final String STATIC_INITIALIZATION_SUFFIX = "_$LI$";
 	public static final String CLASS_NAME_IN_CONSTRUCTOR = "__class";
 	public static final String ANONYMOUS_PREFIX = "$";
@@ -158,6 +168,12 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 	public static final String METHOD_NAME_MARKER = "#METHODNAME#";
 	public static final String CLASS_NAME_MARKER = "#CLASSNAME#";
 	public static final String GENERATOR_PREFIX = "__generator_";
+	/**
+	 * The prefix of the rest parameters that are copied to a typed array at
+	 * the beginning of the method's body (varargs of numeric primitive types
+	 * when typed arrays are enabled).
+	 */
+	public static final String TYPED_VARARGS_PREFIX = "__rest_";
 
 	protected static Logger logger = Logger.getLogger(Java2TypeScriptTranslator.class);
 
@@ -797,8 +813,64 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		return this;
 	}
 
+	/**
+	 * The printed types of this compilation unit, by enclosing class and by
+	 * type key (see {@link #getPrintedTypeKey(JCTree, boolean, boolean, boolean, boolean)}).
+	 */
+	private Map<Symbol, Map<String, String>> printedTypes = new HashMap<>();
+
+	private int printedTypesGeneration = -1;
+
+	/**
+	 * Returns the key of the given type tree in the printed types cache, or
+	 * null if the way the type is printed may depend on more than the type,
+	 * the tree, and the enclosing class (wildcards are named after their
+	 * declaration, type variables may be erased, and default methods are
+	 * printed in the scope of another compilation unit).
+	 */
+	private String getPrintedTypeKey(JCTree typeTree, boolean arrayComponent, boolean inTypeParameters,
+			boolean completeRawTypes, boolean disableSubstitution) {
+		if (typeTree.type == null || !getAdapter().typeVariablesToErase.isEmpty()
+				|| (!scope.isEmpty() && getScope().defaultMethodScope)) {
+			return null;
+		}
+		String typeString = typeTree.type.toString();
+		if (typeString.indexOf('?') >= 0) {
+			return null;
+		}
+		StringBuilder key = new StringBuilder();
+		key.append(arrayComponent ? '1' : '0').append(inTypeParameters ? '1' : '0')
+				.append(completeRawTypes ? '1' : '0').append(disableSubstitution ? '1' : '0');
+		return key.append(typeString).append('|').append(typeTree.toString()).toString();
+	}
+
 	private AbstractTreePrinter substituteAndPrintType(JCTree typeTree, boolean arrayComponent,
 			boolean inTypeParameters, boolean completeRawTypes, boolean disableSubstitution) {
+		String key = getPrintedTypeKey(typeTree, arrayComponent, inTypeParameters, completeRawTypes,
+				disableSubstitution);
+		if (key == null) {
+			return printType(typeTree, arrayComponent, inTypeParameters, completeRawTypes, disableSubstitution);
+		}
+		if (printedTypesGeneration != context.getTypeMappingGeneration()) {
+			printedTypes.clear();
+			printedTypesGeneration = context.getTypeMappingGeneration();
+		}
+		JCClassDecl parent = getParent(JCClassDecl.class);
+		Map<String, String> classPrintedTypes = printedTypes.computeIfAbsent(parent == null ? null : parent.sym,
+				s -> new HashMap<>());
+		String printedType = classPrintedTypes.get(key);
+		context.countPrintedTypeCacheLookup(printedType != null);
+		if (printedType != null) {
+			return print(printedType);
+		}
+		int start = getCurrentPosition();
+		printType(typeTree, arrayComponent, inTypeParameters, completeRawTypes, disableSubstitution);
+		classPrintedTypes.put(key, getOutput(start));
+		return this;
+	}
+
+	private AbstractTreePrinter printType(JCTree typeTree, boolean arrayComponent, boolean inTypeParameters,
+			boolean completeRawTypes, boolean disableSubstitution) {
 		if (typeTree.type.tsym instanceof TypeVariableSymbol) {
 			if (getAdapter().typeVariablesToErase.contains(typeTree.type.tsym)) {
 				return print("any");
@@ -1015,6 +1087,10 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			}
 		} else {
 			if (typeTree instanceof JCArrayTypeTree) {
+				String typedArrayName = context.getTypedArrayName(((JCArrayTypeTree) typeTree).elemtype.type);
+				if (typedArrayName != null) {
+					return print(typedArrayName);
+				}
 				return substituteAndPrintType(((JCArrayTypeTree) typeTree).elemtype, true, inTypeParameters,
 						completeRawTypes, disableSubstitution).print("[]");
 			}
@@ -1456,6 +1532,10 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 					}
 					removeLastChar();
 					print("];").println();
+					printIndent().print(classdecl.sym.getSimpleName().toString())
+							.print(".prototype[\"" + INTERFACE_SET_FIELD_NAME + "\"] = ");
+					printInterfaceSet(interfaces);
+					print(";").println();
 				}
 				if (!getScope().enumWrapperClassScope) {
 					println();
@@ -1671,6 +1751,10 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			// erased elements are ignored
 			return;
 		}
+		if (context.eliminatedMethods.contains(methodDecl.sym)) {
+			// unreachable methods are left out of the bundle
+			return;
+		}
 		JCClassDecl parent = (JCClassDecl) getParent();
 
 		if (parent != null && methodDecl.pos == parent.pos && !getScope().enumWrapperClassScope) {
@@ -1932,6 +2016,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				print(", ");
 			}
 		}
+		typedVarargs = inCoreWrongOverload ? null : getTypedVarargs(methodDecl);
 		int i = 0;
 		for (JCVariableDecl param : methodDecl.getParameters()) {
 			print(param);
@@ -1945,6 +2030,8 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		if (inCoreWrongOverload) {
 			getScope().eraseVariableTypes = false;
 		}
+		JCVariableDecl copiedTypedVarargs = typedVarargs;
+		typedVarargs = null;
 		if (paramPrinted) {
 			removeLastChars(2);
 		}
@@ -2094,11 +2181,13 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 						if (!methodDecl.getBody().stats.isEmpty()
 								&& methodDecl.getBody().stats.head.toString().startsWith("super(")) {
 							printBlockStatement(methodDecl.getBody().stats.head);
+							printTypedVarargsCopy(copiedTypedVarargs);
 							if (parent != null) {
 								printInstanceInitialization(parent, methodDecl.sym);
 							}
 							printBlockStatements(methodDecl.getBody().stats.tail);
 						} else {
+							printTypedVarargsCopy(copiedTypedVarargs);
 							if (parent != null) {
 								printInstanceInitialization(parent, methodDecl.sym);
 							}
@@ -2217,6 +2306,60 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				.replaceAll("@[^:]*::\\n?([a-zA-Z_$][a-zA-Z\\d_$]*)", "$1");
 	}
 
+	/**
+	 * The varargs parameter being printed as a renamed rest parameter, if any
+	 * (see {@link #getTypedVarargs(JCMethodDecl)}).
+	 */
+	private JCVariableDecl typedVarargs;
+
+	/**
+	 * Returns the varargs parameter of the given method if it is a numeric
+	 * primitive array that is implemented as a typed array. Since rest
+	 * parameters must be regular arrays, such a parameter is printed as a rest
+	 * parameter prefixed with {@link #TYPED_VARARGS_PREFIX}, which is copied
+	 * to a typed array of the original name at the beginning of the body, so
+	 * that the parameter has the same type as any other array of that type.
+	 * 
+	 * @return the varargs parameter, or null if the method has no such
+	 *         parameter or if its body is not printed as is
+	 */
+	private JCVariableDecl getTypedVarargs(JCMethodDecl methodDecl) {
+		if (methodDecl.getParameters().isEmpty() || methodDecl.getBody() == null || !scope.isEmpty()
+				&& (getScope().declareClassScope || getScope().eraseVariableTypes
+						|| (methodDecl.mods.getFlags().contains(Modifier.DEFAULT) && !getScope().defaultMethodScope))
+				|| context.hasAnnotationType(methodDecl.sym, JSweetConfig.ANNOTATION_REPLACE)) {
+			return null;
+		}
+		JCVariableDecl param = methodDecl.getParameters().last();
+		if (Util.isVarargs(param) && param.vartype instanceof JCArrayTypeTree
+				&& context.getTypedArrayName(((JCArrayTypeTree) param.vartype).elemtype.type) != null) {
+			return param;
+		}
+		return null;
+	}
+
+	private void printTypedVarargsCopy(JCVariableDecl param) {
+		if (param == null) {
+			return;
+		}
+		String name = getAdapter().getIdentifier(param.sym);
+		String typedArrayName = context.getTypedArrayName(((JCArrayTypeTree) param.vartype).elemtype.type);
+		printIndent().print(VAR_DECL_KEYWORD + " " + name + " : " + typedArrayName + " = new " + typedArrayName
+				+ "(" + TYPED_VARARGS_PREFIX + name + ");").println();
+	}
+
+	/**
+	 * Prints the array passed to a varargs parameter, as an argument of
+	 * <code>concat</code> (typed arrays are not spread by concat).
+	 */
+	private void printConcatenatedVarargs(JCExpression array) {
+		if (array.type instanceof ArrayType && context.getTypedArrayName(((ArrayType) array.type).elemtype) != null) {
+			print("Array.prototype.slice.call(").print(array).print(")");
+		} else {
+			print(array);
+		}
+	}
+
 	private void printInlinedMethod(Overload overload, JCMethodDecl method, List<? extends JCTree> args) {
 		print("{").println().startIndent();
 		printIndent().print(VAR_DECL_KEYWORD + " __args = Array.prototype.slice.call(arguments);").println();
@@ -2451,6 +2594,26 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		return sb.toString();
 	}
 
+	/**
+	 * Tells if an invocation of the given method can directly call the
+	 * implementation of the overload, thus bypassing the overload dispatcher.
+	 */
+	private boolean isStaticallyDispatchedOverload(MethodSymbol method) {
+		if (!context.isInvalidOverload(method) || Util.hasTypeParameters(method) || Util.hasVarargs(method)) {
+			return false;
+		}
+		JCMethodDecl parentMethod = getParent(JCMethodDecl.class);
+		if (parentMethod != null && parentMethod.sym.isDefault()) {
+			return false;
+		}
+		if (context.options.isStaticOverloadDispatch()) {
+			// also applies to methods without parameters and to the
+			// invocations outside of method bodies (initializers)
+			return true;
+		}
+		return !method.getParameters().isEmpty() && parentMethod != null;
+	}
+
 	private void printMethodParamsTest(Overload overload, JCMethodDecl m) {
 		int i = 0;
 		for (; i < m.getParameters().size(); i++) {
@@ -2656,7 +2819,9 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				print("...");
 			}
 
-			if (doesMemberNameRequireQuotes(name)) {
+			if (varDecl == typedVarargs) {
+				print(TYPED_VARARGS_PREFIX + name);
+			} else if (doesMemberNameRequireQuotes(name)) {
 				print("'" + name + "'");
 			} else {
 				print(name);
@@ -2683,6 +2848,11 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 								print(context.getAnnotationValue(varDecl.vartype.type.tsym, ANNOTATION_STRING_TYPE,
 										varDecl.vartype.type.tsym.name.toString()).toString());
 								print("\"");
+							} else if (Util.isVarargs(varDecl) && varDecl.vartype instanceof JCArrayTypeTree
+									&& context.getTypedArrayName(
+											((JCArrayTypeTree) varDecl.vartype).elemtype.type) != null) {
+								// rest parameters are always regular arrays
+								substituteAndPrintType(((JCArrayTypeTree) varDecl.vartype).elemtype).print("[]");
 							} else {
 								substituteAndPrintType(varDecl.vartype);
 							}
@@ -3189,10 +3359,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 							}
 						}
 						if (methSym != null) {
-							if (context.isInvalidOverload(methSym) && !methSym.getParameters().isEmpty()
-									&& !Util.hasTypeParameters(methSym) && !Util.hasVarargs(methSym)
-									&& getParent(JCMethodDecl.class) != null
-									&& !getParent(JCMethodDecl.class).sym.isDefault()) {
+							if (isStaticallyDispatchedOverload(methSym)) {
 								if (methSym.getEnclosingElement().isInterface()) {
 									removeLastChar('.');
 									print("['" + getOverloadMethodName(methSym) + "']");
@@ -3294,12 +3461,10 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 					// different
 					// types
 					print("].concat(<any[]>");
-				}
-
-				print(inv.args.last());
-
-				if (inv.args.size() > 1) {
+					printConcatenatedVarargs(inv.args.last());
 					print(")");
+				} else {
+					print(inv.args.last());
 				}
 			}
 
@@ -3513,7 +3678,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				if (getContext().options.isInterfaceTracking()) {
 					context.grabSupportedInterfaceNames(interfaces, clazz);
 					if (!interfaces.isEmpty()) {
-						print("Object.defineProperty(");
+						print("Object.defineProperty(Object.defineProperty(");
 					}
 				}
 				print("{").println().startIndent();
@@ -3607,6 +3772,9 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 						removeLastChar();
 						print("]");
 						print(" })");
+						print(", '" + INTERFACE_SET_FIELD_NAME + "', { configurable: true, value: ");
+						printInterfaceSet(interfaces);
+						print(" })");
 					}
 				}
 			} else {
@@ -3702,7 +3870,9 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 							for (int i = 0; i < newClass.args.length() - 1; i++) {
 								print(", ").print(newClass.args.get(i));
 							}
-							print("].concat(<any[]>").print(newClass.args.last()).print(")))");
+							print("].concat(<any[]>");
+							printConcatenatedVarargs(newClass.args.last());
+							print(")))");
 						} else {
 							if (newClass.clazz instanceof JCTypeApply) {
 								JCTypeApply typeApply = (JCTypeApply) newClass.clazz;
@@ -3894,7 +4064,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			if (binary.lhs instanceof JCLiteral) {
 				print(binary.lhs).print(".charCodeAt(0)");
 			} else {
-				print("(c => c.charCodeAt==null?<any>c:c.charCodeAt(0))(").print(binary.lhs).print(")");
+				print(context.getRuntimeHelperFunction(RuntimeHelper.CHAR_CODE)).print("(").print(binary.lhs).print(")");
 			}
 		} else {
 			print(binary.lhs);
@@ -3927,7 +4097,7 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			if (binary.rhs instanceof JCLiteral) {
 				print(binary.rhs).print(".charCodeAt(0)");
 			} else {
-				print("(c => c.charCodeAt==null?<any>c:c.charCodeAt(0))(").print(binary.rhs).print(")");
+				print(context.getRuntimeHelperFunction(RuntimeHelper.CHAR_CODE)).print("(").print(binary.rhs).print(")");
 			}
 		} else {
 			print(binary.rhs);
@@ -4085,7 +4255,12 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 
 	@Override
 	public void visitTypeArray(JCArrayTypeTree arrayType) {
-		print(arrayType.elemtype).print("[]");
+		String typedArrayName = context.getTypedArrayName(arrayType.elemtype.type);
+		if (typedArrayName != null) {
+			print(typedArrayName);
+		} else {
+			print(arrayType.elemtype).print("[]");
+		}
 	}
 
 	@Override
@@ -4094,8 +4269,11 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 			typeChecker.checkType(newArray, null, newArray.elemtype);
 		}
 		if (newArray.dims != null && !newArray.dims.isEmpty()) {
+			String typedArrayName = context.getTypedArrayName(newArray.elemtype.type);
 			if (newArray.dims.size() == 1) {
-				if (Util.isNumber(newArray.elemtype.type)) {
+				if (typedArrayName != null) {
+					print("new " + typedArrayName + "(").print(newArray.dims.head).print(")");
+				} else if (Util.isNumber(newArray.elemtype.type)) {
 					if (newArray.dims.head instanceof JCLiteral
 							&& ((int) ((JCLiteral) newArray.dims.head).value) <= 10) {
 						boolean hasElements = false;
@@ -4109,15 +4287,26 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 						}
 						print("]");
 					} else {
-						print("(s => { let a=[]; while(s-->0) a.push(0); return a; })(").print(newArray.dims.head)
-								.print(")");
+						print(context.getRuntimeHelperFunction(RuntimeHelper.NEW_NUMBER_ARRAY)).print("(")
+								.print(newArray.dims.head).print(")");
 					}
 				} else {
 					print("new Array(").print(newArray.dims.head).print(")");
 				}
+			} else if (context.useRuntimeHelper(RuntimeHelper.ALLOCATE_ARRAY)) {
+				print("<any> ").print(RuntimeHelper.ALLOCATE_ARRAY.getName()).print("([");
+				printArgList(null, newArray.dims);
+				print("], " + (Util.isNumber(newArray.elemtype.type) ? "0" : "undefined"));
+				if (typedArrayName != null) {
+					print(", " + typedArrayName);
+				}
+				print(")");
 			} else {
-				print("<any> (function(dims) { " + VAR_DECL_KEYWORD
-						+ " allocate = function(dims) { if(dims.length==0) { return "
+				// typed arrays are allocated at once for the last dimension
+				String typedArrayAllocation = typedArrayName == null ? ""
+						: "if(dims.length==1) { return new " + typedArrayName + "(dims[0]); } else ";
+				print("<any> (function(dims) { " + VAR_DECL_KEYWORD + " allocate = function(dims) { "
+						+ typedArrayAllocation + "if(dims.length==0) { return "
 						+ (Util.isNumber(newArray.elemtype.type) ? "0" : "undefined") + "; } else { " + VAR_DECL_KEYWORD
 						+ " array = []; for(" + VAR_DECL_KEYWORD
 						+ " i = 0; i < dims[0]; i++) { array.push(allocate(dims.slice(1))); } return array; }}; return allocate(dims);})");
@@ -4126,6 +4315,11 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				print("])");
 			}
 		} else {
+			String typedArrayName = newArray.type instanceof ArrayType
+					? context.getTypedArrayName(((ArrayType) newArray.type).elemtype) : null;
+			if (typedArrayName != null) {
+				print("new " + typedArrayName + "(");
+			}
 			print("[");
 			if (newArray.elems != null && !newArray.elems.isEmpty()) {
 				for (JCExpression e : newArray.elems) {
@@ -4144,6 +4338,9 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				}
 			}
 			print("]");
+			if (typedArrayName != null) {
+				print(")");
+			}
 		}
 	}
 
@@ -4499,6 +4696,64 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 		}
 	}
 
+	private void printInterfaceSet(Set<String> interfaces) {
+		print("{ ");
+		for (String itf : interfaces) {
+			print("\"").print(itf).print("\": true, ");
+		}
+		removeLastChars(2);
+		print(" }");
+	}
+
+	private void printInterfaceInstanceOf(String target, JCTree expr, Type type, boolean checkFirstArrayElement) {
+		String name = type.tsym.getQualifiedName().toString();
+		if (checkFirstArrayElement || (target == null && !(expr instanceof JCIdent))) {
+			// evaluates the tested expression only once
+			String variable = getContext().getRuntimeHelperFunction(RuntimeHelper.INSTANCEOF_TARGET);
+			print("(" + variable + " = ");
+			print(target, expr);
+			if (checkFirstArrayElement) {
+				print("[0]");
+			}
+			print(")");
+			target = variable;
+		} else {
+			print(target, expr);
+		}
+		print(" != null && (");
+		boolean charSequence = CharSequence.class.getName().equals(name);
+		if (charSequence) {
+			print("(");
+		}
+		// the interface set is complete when defined by the object's class
+		// itself, and it is inherited from the superclass otherwise
+		print(target, expr);
+		print("[\"" + INTERFACE_SET_FIELD_NAME + "\"] != null && Object.getPrototypeOf(");
+		print(target, expr);
+		print(").hasOwnProperty(\"" + INTERFACE_SET_FIELD_NAME + "\") ? ");
+		print(target, expr);
+		print("[\"" + INTERFACE_SET_FIELD_NAME + "\"][\"" + name + "\"] === true");
+		// objects generated without interface sets
+		print(" : (");
+		print(target, expr);
+		print("[\"" + INTERFACES_FIELD_NAME + "\"] != null && ");
+		print(target, expr);
+		print("[\"" + INTERFACES_FIELD_NAME + "\"].indexOf(\"" + name + "\") >= 0)");
+		print(" || (");
+		print(target, expr);
+		print(".constructor != null && ");
+		print(target, expr);
+		print(".constructor[\"" + INTERFACES_FIELD_NAME + "\"] != null && ");
+		print(target, expr);
+		print(".constructor[\"" + INTERFACES_FIELD_NAME + "\"].indexOf(\"" + name + "\") >= 0)");
+		if (charSequence) {
+			print(") || typeof ");
+			print(target, expr);
+			print(" === \"string\"");
+		}
+		print(")");
+	}
+
 	private void printInstanceOf(String exprStr, JCTree expr, Type type) {
 		printInstanceOf(exprStr, expr, type, false);
 	}
@@ -4521,6 +4776,15 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 				if (checkFirstArrayElement)
 					print("[0]");
 				print(" === 'number'");
+			} else if (type instanceof ArrayType && context.getTypedArrayName(((ArrayType) type).elemtype) != null) {
+				print(exprStr, expr);
+				if (checkFirstArrayElement)
+					print("[0]");
+				print(" != null && ");
+				print(exprStr, expr);
+				if (checkFirstArrayElement)
+					print("[0]");
+				print(" instanceof " + context.getTypedArrayName(((ArrayType) type).elemtype));
 			} else if (type.toString().startsWith(JSweetConfig.FUNCTION_CLASSES_PACKAGE + ".")
 					|| type.toString().startsWith("java.util.function.")
 					|| Runnable.class.getName().equals(type.toString())
@@ -4538,81 +4802,48 @@ public class Java2TypeScriptTranslator extends AbstractTreePrinter {
 						print("[0]");
 					print(").length == " + context.getFunctionalTypeParameterCount(type));
 				}
+			} else if (context.isInterface(type.tsym)) {
+				printInterfaceInstanceOf(exprStr, expr, type, checkFirstArrayElement);
 			} else {
 				print(exprStr, expr);
 				if (checkFirstArrayElement)
 					print("[0]");
-				if (context.isInterface(type.tsym)) {
-					print(" != null && ");
-					print("(");
-					print(exprStr, expr);
-					if (checkFirstArrayElement)
-						print("[0]");
-					print("[\"" + INTERFACES_FIELD_NAME + "\"]").print(" != null && ");
-					print(exprStr, expr);
-					if (checkFirstArrayElement)
-						print("[0]");
-					print("[\"" + INTERFACES_FIELD_NAME + "\"].indexOf(\"")
-							.print(type.tsym.getQualifiedName().toString()).print("\") >= 0");
-					print(" || ");
-					print(exprStr, expr);
-					if (checkFirstArrayElement)
-						print("[0]");
-					print(".constructor != null && ");
-					print(exprStr, expr);
-					if (checkFirstArrayElement)
-						print("[0]");
-					print(".constructor[\"" + INTERFACES_FIELD_NAME + "\"]").print(" != null && ");
-					print(exprStr, expr);
-					if (checkFirstArrayElement)
-						print("[0]");
-					print(".constructor[\"" + INTERFACES_FIELD_NAME + "\"].indexOf(\"")
-							.print(type.tsym.getQualifiedName().toString()).print("\") >= 0");
-					if (CharSequence.class.getName().equals(type.tsym.getQualifiedName().toString())) {
-						print(" || typeof ");
+				if (type.tsym instanceof TypeVariableSymbol
+						|| Object.class.getName().equals(type.tsym.getQualifiedName().toString())) {
+					print(" != null");
+				} else {
+					String qualifiedName = getQualifiedTypeName(type.tsym, false);
+					if (qualifiedName.startsWith("{")) {
+						qualifiedName = "Object";
+					}
+					print(" != null");
+					if (!"any".equals(qualifiedName)) {
+						print(" && ");
 						print(exprStr, expr);
 						if (checkFirstArrayElement)
 							print("[0]");
-						print(" === \"string\"");
-					}
-					print(")");
-				} else {
-					if (type.tsym instanceof TypeVariableSymbol
-							|| Object.class.getName().equals(type.tsym.getQualifiedName().toString())) {
-						print(" != null");
-					} else {
-						String qualifiedName = getQualifiedTypeName(type.tsym, false);
-						if (qualifiedName.startsWith("{")) {
-							qualifiedName = "Object";
+						if (qualifiedName.startsWith(JSweetConfig.LIBS_PACKAGE + ".")) {
+							print(" instanceof ").print(qualifiedName);
+						} else {
+							print(" instanceof <any>").print(qualifiedName);
 						}
-						print(" != null");
-						if (!"any".equals(qualifiedName)) {
-							print(" && ");
+						if (type instanceof ArrayType) {
+							ArrayType t = (ArrayType) type;
+							print(" && (");
 							print(exprStr, expr);
 							if (checkFirstArrayElement)
 								print("[0]");
-							if (qualifiedName.startsWith(JSweetConfig.LIBS_PACKAGE + ".")) {
-								print(" instanceof ").print(qualifiedName);
-							} else {
-								print(" instanceof <any>").print(qualifiedName);
-							}
-							if (type instanceof ArrayType) {
-								ArrayType t = (ArrayType) type;
-								print(" && (");
-								print(exprStr, expr);
-								if (checkFirstArrayElement)
-									print("[0]");
-								print(".length==0 || ");
+							print(".length==0 || ");
+							print(exprStr, expr);
+							print("[0] == null ||");
+							if (t.elemtype instanceof ArrayType
+									&& context.getTypedArrayName(((ArrayType) t.elemtype).elemtype) == null) {
 								print(exprStr, expr);
-								print("[0] == null ||");
-								if (t.elemtype instanceof ArrayType) {
-									print(exprStr, expr);
-									print("[0] instanceof Array");
-								} else {
-									printInstanceOf(exprStr, expr, t.elemtype, true);
-								}
-								print(")");
+								print("[0] instanceof Array");
+							} else {
+								printInstanceOf(exprStr, expr, t.elemtype, true);
 							}
+							print(")");
 						}
 					}
 				}
@@ -0,0 +1,48 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.transpiler;
+
+/**
+ * An enumeration of the optimization levels of the generated JavaScript
+ * files (optimizations are performed by the Closure Compiler).
+ * 
+ * @author agent
+ * @see JSweetTranspiler#setJsOptimizationLevel(JsOptimizationLevel)
+ */
+public enum JsOptimizationLevel {
+	/**
+	 * The generated JavaScript files are not optimized.
+	 */
+	none,
+	/**
+	 * The generated JavaScript files are minified (whitespaces, local variable
+	 * renaming and dead code removal within functions), which is safe for any
+	 * code.
+	 */
+	simple,
+	/**
+	 * The generated JavaScript is aggressively optimized (renaming of all the
+	 * non-extern globals and properties, dead code removal, inlining). This
+	 * level only applies to bundles, which are then expected to be
+	 * self-contained programs: the library globals and members used by the
+	 * program are declared as externs, but the bundle's own API is not
+	 * preserved.
+	 */
+	advanced;
+}
@@ -0,0 +1,356 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.transpiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+
+import org.apache.log4j.Logger;
+import org.jsweet.JSweetConfig;
+import org.jsweet.transpiler.util.ReferenceGrabber;
+import org.jsweet.transpiler.util.Util;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import com.sun.tools.javac.code.Symbol.TypeSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCBlock;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
+import com.sun.tools.javac.tree.JCTree.JCIdent;
+import com.sun.tools.javac.tree.JCTree.JCLiteral;
+import com.sun.tools.javac.tree.JCTree.JCMemberReference;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+
+/**
+ * This analyzer computes the classes and methods that are reachable from the
+ * entry points of a bundle (the main methods and the static initializers), so
+ * that the unreachable ones can be left out of the bundle.
+ *
+ * <p>
+ * Reachability is computed per compilation unit for the classes (all the
+ * classes declared in a reachable compilation unit are reachable), and by name
+ * for the methods (a method is reachable when a method with the same name is
+ * invoked or referenced in the reachable code), so that overriding and
+ * overloaded methods are always kept together. Methods inherited from non-source
+ * types (e.g. <code>toString</code>) and the names found in string literals
+ * are considered reachable. Constructors, fields and initializers of the
+ * reachable classes, as well as local and anonymous classes, are always kept.
+ *
+ * @author agent
+ */
+public class ReachabilityAnalyzer {
+
+	private static final Logger logger = Logger.getLogger(ReachabilityAnalyzer.class);
+
+	private static final Pattern IDENTIFIER = Pattern.compile("[a-zA-Z_$][a-zA-Z_$0-9]*");
+
+	/**
+	 * Grabs the types and the member names referenced within a code tree.
+	 */
+	private static class MemberGrabber extends ReferenceGrabber {
+
+		Set<String> referencedNames = new HashSet<>();
+
+		@Override
+		public void visitIdent(JCIdent ident) {
+			if (ident.sym instanceof ClassSymbol) {
+				referencedTypes.add((ClassSymbol) ident.sym);
+			} else if (ident.sym instanceof MethodSymbol) {
+				referencedNames.add(ident.name.toString());
+			}
+			super.visitIdent(ident);
+		}
+
+		@Override
+		public void visitSelect(JCFieldAccess fieldAccess) {
+			if (fieldAccess.sym instanceof ClassSymbol) {
+				referencedTypes.add((ClassSymbol) fieldAccess.sym);
+			} else {
+				referencedNames.add(fieldAccess.name.toString());
+			}
+			super.visitSelect(fieldAccess);
+		}
+
+		@Override
+		public void visitReference(JCMemberReference memberReference) {
+			referencedNames.add(memberReference.name.toString());
+			super.visitReference(memberReference);
+		}
+
+		@Override
+		public void visitLiteral(JCLiteral literal) {
+			if (literal.getValue() instanceof String) {
+				Matcher matcher = IDENTIFIER.matcher((String) literal.getValue());
+				while (matcher.find()) {
+					referencedNames.add(matcher.group());
+				}
+			}
+			super.visitLiteral(literal);
+		}
+	}
+
+	private JSweetContext context;
+
+	private Map<TypeSymbol, JCCompilationUnit> compilationUnitsByType = new HashMap<>();
+	private Map<JCCompilationUnit, List<JCClassDecl>> classesByCompilationUnit = new HashMap<>();
+	private Map<String, List<ClassSymbol>> typesBySimpleName = new HashMap<>();
+	private Map<String, List<JCMethodDecl>> methodsByName = new HashMap<>();
+	private Map<JCMethodDecl, JCCompilationUnit> methodCompilationUnits = new HashMap<>();
+
+	private Set<JCCompilationUnit> reachableCompilationUnits = new HashSet<>();
+	private Set<String> reachableNames = new HashSet<>();
+	private Set<JCMethodDecl> reachableMethods = new HashSet<>();
+	private Set<TypeSymbol> inheritedTypes = new HashSet<>();
+	private Deque<JCTree> pendingTrees = new ArrayDeque<>();
+
+	/**
+	 * Creates the analyzer.
+	 */
+	public ReachabilityAnalyzer(JSweetContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * Computes the reachable classes and methods of the given compilation
+	 * units.
+	 *
+	 * @return false if no entry point (main method) was found, in which case
+	 *         everything shall be considered as reachable
+	 */
+	public boolean process(Collection<JCCompilationUnit> compilationUnits) {
+		for (JCCompilationUnit compilationUnit : compilationUnits) {
+			if (compilationUnit.packge.getQualifiedName().toString().startsWith(JSweetConfig.LIBS_PACKAGE + ".")) {
+				// skip definitions
+				continue;
+			}
+			List<JCClassDecl> classes = new ArrayList<>();
+			for (JCTree def : compilationUnit.defs) {
+				if (def instanceof JCClassDecl) {
+					index(compilationUnit, (JCClassDecl) def, classes);
+				}
+			}
+			if (!classes.isEmpty()) {
+				classesByCompilationUnit.put(compilationUnit, classes);
+			}
+		}
+
+		List<JCCompilationUnit> roots = new ArrayList<>();
+		boolean mainFound = false;
+		for (Map.Entry<JCCompilationUnit, List<JCClassDecl>> entry : classesByCompilationUnit.entrySet()) {
+			for (JCClassDecl classdecl : entry.getValue()) {
+				if (hasMainMethod(entry.getKey(), classdecl)) {
+					mainFound = true;
+					roots.add(entry.getKey());
+				} else if (hasStaticInitializer(classdecl)) {
+					roots.add(entry.getKey());
+				}
+			}
+		}
+		if (!mainFound) {
+			return false;
+		}
+
+		// names that are invoked by the generated code or by the runtime
+		for (String name : new String[] { JSweetConfig.MAIN_FUNCTION_NAME, JSweetConfig.INDEXED_GET_FUCTION_NAME,
+				JSweetConfig.INDEXED_SET_FUCTION_NAME, JSweetConfig.INDEXED_DELETE_FUCTION_NAME,
+				JSweetConfig.INDEXED_GET_STATIC_FUCTION_NAME, JSweetConfig.INDEXED_SET_STATIC_FUCTION_NAME,
+				JSweetConfig.INDEXED_DELETE_STATIC_FUCTION_NAME, JSweetConfig.NEW_FUNCTION_NAME,
+				JSweetConfig.ANONYMOUS_FUNCTION_NAME, JSweetConfig.ANONYMOUS_STATIC_FUNCTION_NAME }) {
+			addReachableName(name);
+		}
+		for (JCCompilationUnit root : roots) {
+			addReachableCompilationUnit(root);
+		}
+		while (!pendingTrees.isEmpty()) {
+			MemberGrabber grabber = new MemberGrabber();
+			grabber.scan(pendingTrees.pop());
+			for (TypeSymbol type : grabber.referencedTypes) {
+				addReachableType(type);
+			}
+			for (String name : grabber.referencedNames) {
+				addReachableName(name);
+				List<ClassSymbol> types = typesBySimpleName.get(name);
+				if (types != null) {
+					for (ClassSymbol type : types) {
+						addReachableType(type);
+					}
+				}
+			}
+		}
+		logger.debug("reachable compilation units: " + reachableCompilationUnits.size() + "/"
+				+ classesByCompilationUnit.size() + ", reachable methods: " + reachableMethods.size() + "/"
+				+ methodCompilationUnits.size());
+		return true;
+	}
+
+	private void index(JCCompilationUnit compilationUnit, JCClassDecl classdecl, List<JCClassDecl> classes) {
+		if (classdecl.sym == null) {
+			return;
+		}
+		classes.add(classdecl);
+		compilationUnitsByType.put(classdecl.sym, compilationUnit);
+		typesBySimpleName.computeIfAbsent(classdecl.sym.getSimpleName().toString(), n -> new ArrayList<>(1))
+				.add(classdecl.sym);
+		for (JCTree def : classdecl.defs) {
+			if (def instanceof JCClassDecl) {
+				index(compilationUnit, (JCClassDecl) def, classes);
+			} else if (def instanceof JCMethodDecl) {
+				JCMethodDecl methodDecl = (JCMethodDecl) def;
+				if (methodDecl.sym != null && !methodDecl.sym.isConstructor()) {
+					methodsByName.computeIfAbsent(methodDecl.name.toString(), n -> new ArrayList<>(1))
+							.add(methodDecl);
+					methodCompilationUnits.put(methodDecl, compilationUnit);
+				}
+			}
+		}
+	}
+
+	private boolean hasMainMethod(JCCompilationUnit compilationUnit, JCClassDecl classdecl) {
+		if (!compilationUnit.defs.contains(classdecl)) {
+			// main methods in inner classes are ignored
+			return false;
+		}
+		for (JCTree def : classdecl.defs) {
+			if (def instanceof JCMethodDecl) {
+				JCMethodDecl methodDecl = (JCMethodDecl) def;
+				if (JSweetConfig.MAIN_FUNCTION_NAME.equals(methodDecl.name.toString())
+						&& methodDecl.mods.getFlags().contains(Modifier.STATIC)
+						&& !context.hasAnnotationType(methodDecl.sym, JSweetConfig.ANNOTATION_DISABLED)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean hasStaticInitializer(JCClassDecl classdecl) {
+		for (JCTree def : classdecl.defs) {
+			if (def instanceof JCBlock && ((JCBlock) def).isStatic()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addReachableType(TypeSymbol type) {
+		JCCompilationUnit compilationUnit = compilationUnitsByType.get(type);
+		if (compilationUnit != null) {
+			addReachableCompilationUnit(compilationUnit);
+		}
+	}
+
+	private void addReachableCompilationUnit(JCCompilationUnit compilationUnit) {
+		if (!reachableCompilationUnits.add(compilationUnit)) {
+			return;
+		}
+		for (JCClassDecl classdecl : classesByCompilationUnit.get(compilationUnit)) {
+			pendingTrees.push(classdecl.mods);
+			pendingTrees.addAll(classdecl.typarams);
+			if (classdecl.extending != null) {
+				pendingTrees.push(classdecl.extending);
+			}
+			pendingTrees.addAll(classdecl.implementing);
+			for (JCTree def : classdecl.defs) {
+				if (def instanceof JCMethodDecl) {
+					JCMethodDecl methodDecl = (JCMethodDecl) def;
+					if (methodDecl.sym == null || methodDecl.sym.isConstructor()
+							|| reachableNames.contains(methodDecl.name.toString())) {
+						addReachableMethod(methodDecl);
+					}
+				} else if (def instanceof JCVariableDecl || def instanceof JCBlock) {
+					pendingTrees.push(def);
+				}
+			}
+			// methods that can be invoked by the JavaScript runtime or by
+			// non-source code
+			for (Type type : context.types.closure(classdecl.sym.type)) {
+				if (type.tsym instanceof ClassSymbol && !Util.isSourceElement(type.tsym)
+						&& inheritedTypes.add(type.tsym)) {
+					for (Symbol member : type.tsym.getEnclosedElements()) {
+						if (member.getKind() == ElementKind.METHOD) {
+							addReachableName(member.getSimpleName().toString());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void addReachableName(String name) {
+		if (!reachableNames.add(name)) {
+			return;
+		}
+		List<JCMethodDecl> methods = methodsByName.get(name);
+		if (methods != null) {
+			for (JCMethodDecl methodDecl : methods) {
+				if (reachableCompilationUnits.contains(methodCompilationUnits.get(methodDecl))) {
+					addReachableMethod(methodDecl);
+				}
+			}
+		}
+	}
+
+	private void addReachableMethod(JCMethodDecl methodDecl) {
+		if (reachableMethods.add(methodDecl)) {
+			pendingTrees.push(methodDecl);
+		}
+	}
+
+	/**
+	 * Tells if the given compilation unit is reachable. Definitions and
+	 * compilation units that do not declare any class are always considered
+	 * as reachable.
+	 */
+	public boolean isReachable(JCCompilationUnit compilationUnit) {
+		return !classesByCompilationUnit.containsKey(compilationUnit)
+				|| reachableCompilationUnits.contains(compilationUnit);
+	}
+
+	/**
+	 * Gets the unreachable methods declared in the reachable compilation
+	 * units.
+	 */
+	public Set<MethodSymbol> getUnreachableMethods() {
+		Set<MethodSymbol> unreachableMethods = new HashSet<>();
+		for (Map.Entry<JCMethodDecl, JCCompilationUnit> entry : methodCompilationUnits.entrySet()) {
+			if (reachableCompilationUnits.contains(entry.getValue()) && !reachableMethods.contains(entry.getKey())) {
+				unreachableMethods.add(entry.getKey().sym);
+			}
+		}
+		return unreachableMethods;
+	}
+
+}
@@ -135,7 +135,8 @@ public class SourceFile {
 	}
 	
 	/**
-	 * Finds the mapped position in one of the origin Java source file.
+	 * Finds the mapped position in one of the origin Java source file. To map
+	 * many positions, use a {@link SourceFileIndex} instead.
 	 * 
 	 * @param position
 	 *            the position in one of the generated TypeScript file
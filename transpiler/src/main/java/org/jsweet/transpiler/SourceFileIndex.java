@@ -0,0 +1,132 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.transpiler;
+
+import static java.util.Arrays.asList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jsweet.transpiler.util.Position;
+
+/**
+ * An index of the source files of a transpilation, by generated TypeScript
+ * file, in order to efficiently map positions in the generated TypeScript
+ * files back to positions in the Java source files (for instance when mapping
+ * a large number of tsc diagnostics).
+ *
+ * <p>
+ * A TypeScript file is looked up by path: a relative path matches all the
+ * indexed TypeScript files that end with the same path segments (same
+ * behavior as {@link SourceFile#findOriginPosition(SourcePosition, Collection)}
+ * but without scanning the source files).
+ *
+ * <p>
+ * The index is built from the TypeScript files of the source files at
+ * construction time, so it should be created once the TypeScript files are
+ * generated. Source maps are read at lookup time.
+ *
+ * @author agent
+ */
+public class SourceFileIndex {
+
+	private final Map<String, List<SourceFile>> sourceFilesByTsPath = new HashMap<>();
+
+	/**
+	 * Creates an index of the given source files.
+	 */
+	public SourceFileIndex(SourceFile... sourceFiles) {
+		this(asList(sourceFiles));
+	}
+
+	/**
+	 * Creates an index of the given source files.
+	 */
+	public SourceFileIndex(Collection<SourceFile> sourceFiles) {
+		for (SourceFile sourceFile : sourceFiles) {
+			if (sourceFile.getTsFile() == null) {
+				continue;
+			}
+			// index all the path suffixes so that relative paths can be looked
+			// up directly
+			String path = normalize(sourceFile.getTsFile().getAbsolutePath());
+			int index = path.length();
+			while (index > 0) {
+				index = path.lastIndexOf('/', index - 1);
+				String suffix = index < 0 ? path : path.substring(index + 1);
+				if (!suffix.isEmpty()) {
+					List<SourceFile> list = sourceFilesByTsPath.computeIfAbsent(suffix, p -> new ArrayList<>(1));
+					if (!list.contains(sourceFile)) {
+						list.add(sourceFile);
+					}
+				}
+			}
+		}
+	}
+
+	private static String normalize(String path) {
+		path = path.replace('\\', '/');
+		while (path.startsWith("./")) {
+			path = path.substring(2);
+		}
+		if (path.startsWith("/")) {
+			path = path.substring(1);
+		}
+		return path;
+	}
+
+	/**
+	 * Gets the source files that were generated in the given TypeScript file
+	 * (several source files share the same TypeScript file in bundle mode).
+	 *
+	 * @param tsFile
+	 *            an absolute or relative path to a generated TypeScript file
+	 * @return the matching source files (empty list if none)
+	 */
+	public List<SourceFile> getSourceFiles(File tsFile) {
+		List<SourceFile> sourceFiles = sourceFilesByTsPath.get(normalize(tsFile.getPath()));
+		return sourceFiles == null ? Collections.emptyList() : sourceFiles;
+	}
+
+	/**
+	 * Finds the mapped position in one of the origin Java source file.
+	 *
+	 * @param position
+	 *            the position in one of the generated TypeScript file
+	 * @return the origin position (null if not found)
+	 */
+	public SourcePosition findOriginPosition(SourcePosition position) {
+		for (SourceFile sourceFile : getSourceFiles(position.getFile())) {
+			if (sourceFile.getSourceMap() != null) {
+				Position inputPosition = sourceFile.getSourceMap().findInputPosition(position.getStartLine(),
+						position.getStartColumn());
+				if (inputPosition != null) {
+					return new SourcePosition(sourceFile.getJavaFile(), null, inputPosition);
+				}
+			}
+		}
+		return null;
+	}
+
+}
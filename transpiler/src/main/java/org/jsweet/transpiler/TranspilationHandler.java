@@ -54,6 +54,8 @@ public interface TranspilationHandler {
 	 * @param files
 	 *            the files that were transpiled (can be different from
 	 *            <code>transpiler.getWatchedFiles()</code> in a non-full pass)
+	 *            - use a {@link SourceFileIndex} to efficiently map positions
+	 *            in the generated TypeScript files back to these files
 	 */
 	public void onCompleted(JSweetTranspiler transpiler, boolean fullPass, SourceFile[] files);
 
@@ -21,6 +21,7 @@ package org.jsweet.transpiler.candy;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Predicate;
@@ -85,6 +86,12 @@ public class CandyProcessor {
 	private File candiesTsdefsDir;
 	private File candiesJavascriptOutDir;
 	private File workingDir;
+	/**
+	 * Candy descriptors (null for regular jars) indexed by jar path and
+	 * timestamp, so that unmodified jars are not opened again when the
+	 * processor is reused.
+	 */
+	private Map<String, CandyDescriptor> candyDescriptorCache = new HashMap<>();
 
 	/**
 	 * Create a candies processor.
@@ -187,20 +194,28 @@ public class CandyProcessor {
 		for (String classPathEntry : classPath.split("[" + System.getProperty("path.separator") + "]")) {
 			if (classPathEntry.endsWith(".jar")) {
 				File jarFile = new File(classPathEntry);
-				try (JarFile jarFileHandle = new JarFile(jarFile)) {
-					JarEntry candySpecificEntry = jarFileHandle
-							.getJarEntry("META-INF/maven/" + JSweetConfig.MAVEN_CANDIES_GROUP);
-					JarEntry candySpecificEntry2 = jarFileHandle.getJarEntry("META-INF/candy-metadata.json");
-					boolean isCandy = candySpecificEntry != null || candySpecificEntry2 != null;
-					if (isCandy) {
-						CandyDescriptor descriptor = CandyDescriptor.fromCandyJar(jarFileHandle,
-								candiesJavascriptOutDir.getAbsolutePath());
-
-						checkCandyVersion(descriptor, transpilationHandler);
-						jarFilesCollector.put(jarFile, descriptor);
+				String jarKey = jarFile.getAbsolutePath() + ":" + jarFile.lastModified() + ":" + jarFile.length();
+				CandyDescriptor descriptor;
+				if (candyDescriptorCache.containsKey(jarKey)) {
+					descriptor = candyDescriptorCache.get(jarKey);
+				} else {
+					descriptor = null;
+					try (JarFile jarFileHandle = new JarFile(jarFile)) {
+						JarEntry candySpecificEntry = jarFileHandle
+								.getJarEntry("META-INF/maven/" + JSweetConfig.MAVEN_CANDIES_GROUP);
+						JarEntry candySpecificEntry2 = jarFileHandle.getJarEntry("META-INF/candy-metadata.json");
+						boolean isCandy = candySpecificEntry != null || candySpecificEntry2 != null;
+						if (isCandy) {
+							descriptor = CandyDescriptor.fromCandyJar(jarFileHandle,
+									candiesJavascriptOutDir.getAbsolutePath());
+						}
 					}
+					candyDescriptorCache.put(jarKey, descriptor);
+				}
+				if (descriptor != null) {
+					checkCandyVersion(descriptor, transpilationHandler);
+					jarFilesCollector.put(jarFile, descriptor);
 				}
-
 			}
 		}
 		logger.info(jarFilesCollector.keySet().size() + " candies found in classpath");
@@ -188,11 +188,19 @@ public class PrinterAdapter {
 	 * <p>
 	 * Some type mappings are set by default, some are added in the context by
 	 * adapters.
+	 * 
+	 * <p>
+	 * Mapped types are cached in the context until a new type mapping is added.
 	 */
 	public final String getMappedType(TypeMirror type) {
-		StringBuilder stringBuilder = new StringBuilder();
-		buildMappedType(stringBuilder, type);
-		return stringBuilder.toString();
+		String mappedType = context.getCachedMappedType(type);
+		if (mappedType == null) {
+			StringBuilder stringBuilder = new StringBuilder();
+			buildMappedType(stringBuilder, type);
+			mappedType = stringBuilder.toString();
+			context.cacheMappedType(type, mappedType);
+		}
+		return mappedType;
 	}
 
 	private final void buildMappedType(StringBuilder stringBuilder, TypeMirror type) {
@@ -205,21 +213,27 @@ public class PrinterAdapter {
 			if (mapped != null) {
 				stringBuilder.append(mapped);
 			} else {
-				print(element.getSimpleName().toString());
+				stringBuilder.append(element.getSimpleName().toString());
 			}
 			if (!declaredType.getTypeArguments().isEmpty()) {
-				print("<");
+				stringBuilder.append("<");
 				for (TypeMirror arg : declaredType.getTypeArguments()) {
 					buildMappedType(stringBuilder, arg);
-					print(", ");
+					stringBuilder.append(", ");
 				}
-				getPrinter().removeLastChars(2);
-				print(">");
+				stringBuilder.setLength(stringBuilder.length() - 2);
+				stringBuilder.append(">");
 			}
 			break;
 		case ARRAY:
-			buildMappedType(stringBuilder, ((javax.lang.model.type.ArrayType) type).getComponentType());
-			stringBuilder.append("[]");
+			TypeMirror componentType = ((javax.lang.model.type.ArrayType) type).getComponentType();
+			String typedArrayName = context.getTypedArrayName(componentType);
+			if (typedArrayName != null) {
+				stringBuilder.append(typedArrayName);
+			} else {
+				buildMappedType(stringBuilder, componentType);
+				stringBuilder.append("[]");
+			}
 			break;
 		case TYPEVAR:
 		case WILDCARD:
@@ -38,6 +38,7 @@ import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -52,8 +53,12 @@ import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
 
+import org.jsweet.JSweetConfig;
 import org.jsweet.transpiler.JSweetContext;
+import org.jsweet.transpiler.JSweetOptions;
+import org.jsweet.transpiler.JSweetProblem;
 import org.jsweet.transpiler.Java2TypeScriptTranslator;
 import org.jsweet.transpiler.ModuleKind;
 import org.jsweet.transpiler.model.ExtendedElement;
@@ -65,6 +70,7 @@ import org.jsweet.transpiler.model.MethodInvocationElement;
 import org.jsweet.transpiler.model.NewArrayElement;
 import org.jsweet.transpiler.model.NewClassElement;
 import org.jsweet.transpiler.model.VariableAccessElement;
+import org.jsweet.transpiler.util.RuntimeHelper;
 import org.jsweet.transpiler.util.Util;
 
 import com.sun.tools.javac.code.Type;
@@ -79,26 +85,73 @@ import com.sun.tools.javac.tree.JCTree.JCTypeApply;
  */
 public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 
+	/**
+	 * A global annotation that selects native ES2015 collections for
+	 * <code>java.util.Set</code> or <code>java.util.Map</code> (and all their
+	 * implementations), when native collections are not enabled for the whole
+	 * project with {@link JSweetOptions#isUseNativeCollections()}. For
+	 * instance, in the configuration file:
+	 * 
+	 * <pre>
+	 * "@NativeCollection": { "include": [ "java.util.Set" ] }
+	 * </pre>
+	 */
+	public static final String ANNOTATION_NATIVE_COLLECTION = JSweetConfig.LANG_PACKAGE + ".NativeCollection";
+
+	private static final String NATIVE_ITERATOR = "(c => { let i = c[Symbol.iterator](), n = i.next(); "
+			+ "return { next: function() { let v = n.value; n = i.next(); return v; }, hasNext: function() { return !n.done; } }; })";
+
 	protected Map<String, String> extTypesMapping = new HashMap<>();
 
+	/**
+	 * True if the Java sets are generated as native ES2015 sets (instead of
+	 * arrays).
+	 */
+	protected final boolean nativeSets;
+
+	/**
+	 * True if the Java maps are generated as native ES2015 maps (instead of
+	 * objects).
+	 */
+	protected final boolean nativeMaps;
+
 	public RemoveJavaDependenciesAdapter(JSweetContext context) {
 		super(context);
+		nativeSets = isNativeCollectionInterface(Set.class);
+		nativeMaps = isNativeCollectionInterface(Map.class);
 		init();
 	}
 
 	public RemoveJavaDependenciesAdapter(PrinterAdapter parentAdapter) {
 		super(parentAdapter);
+		nativeSets = isNativeCollectionInterface(Set.class);
+		nativeMaps = isNativeCollectionInterface(Map.class);
 		init();
 	}
 
+	/**
+	 * Tells if the given collection interface and its implementations are
+	 * generated as native ES2015 collections, either because it is enabled in
+	 * the options or through the {@link #ANNOTATION_NATIVE_COLLECTION} global
+	 * annotation. Since collection values flow from one declaration to another,
+	 * the choice is made for a whole collection interface.
+	 */
+	protected boolean isNativeCollectionInterface(Class<?> collectionInterface) {
+		return context.options.isUseNativeCollections()
+				|| context.hasGlobalAnnotationType(collectionInterface.getName(), ANNOTATION_NATIVE_COLLECTION);
+	}
+
 	private void init() {
 		extTypesMapping.put(List.class.getName(), "Array");
 		extTypesMapping.put(ArrayList.class.getName(), "Array");
 		extTypesMapping.put(Collection.class.getName(), "Array");
-		extTypesMapping.put(Set.class.getName(), "Array");
+		extTypesMapping.put(Set.class.getName(), nativeSets ? "Set" : "Array");
 		extTypesMapping.put(Stack.class.getName(), "Array");
-		extTypesMapping.put(HashSet.class.getName(), "Array");
-		extTypesMapping.put(TreeSet.class.getName(), "Array");
+		extTypesMapping.put(HashSet.class.getName(), nativeSets ? "Set" : "Array");
+		extTypesMapping.put(TreeSet.class.getName(), nativeSets ? "Set" : "Array");
+		if (nativeSets) {
+			extTypesMapping.put(LinkedHashSet.class.getName(), "Set");
+		}
 		extTypesMapping.put(Vector.class.getName(), "Array");
 		extTypesMapping.put(Enumeration.class.getName(), "any");
 		extTypesMapping.put(Iterator.class.getName(), "any");
@@ -162,6 +215,10 @@ public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 		}
 
 		if (targetClassName != null && targetExpression != null) {
+			if ((nativeSets || nativeMaps)
+					&& substituteNativeCollectionInvocation(invocation, targetClassName, targetMethodName)) {
+				return true;
+			}
 			switch (targetClassName) {
 
 			case "java.lang.Float":
@@ -225,11 +282,13 @@ public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 					printMacroName(targetMethodName);
 					if (invocation.getArgumentCount() == 2) {
 						print("((l1, ndx, l2) => { for(let i=l2.length-1;i>=0;i--) l1.splice(ndx,0,l2[i]); })(")
-								.print(invocation.getTargetExpression()).print(", ")
-								.printArgList(invocation.getArguments()).print(")");
+								.print(invocation.getTargetExpression()).print(", ").print(invocation.getArgument(0))
+								.print(", ");
+						printAsArray(invocation.getArgument(1)).print(")");
 					} else {
 						print("((l1, l2) => l1.push.apply(l1, l2))(").print(invocation.getTargetExpression())
-								.print(", ").printArgList(invocation.getArguments()).print(")");
+								.print(", ");
+						printAsArray(invocation.getArgument(0)).print(")");
 					}
 					return true;
 				case "pop":
@@ -532,11 +591,19 @@ public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 					return true;
 				case "copyOf":
 					printMacroName(targetMethodName);
-					print(invocation.getArgument(0)).print(".slice(0,").print(invocation.getArgument(1)).print(")");
+					if (getTypedArrayName(invocation.getArgument(0)) != null) {
+						// typed arrays are padded with zeros as in Java
+						print("((a, n) => { let c = new " + getTypedArrayName(invocation.getArgument(0))
+								+ "(n); c.set(a.length > n ? a.subarray(0, n) : a); return c; })(")
+										.printArgList(invocation.getArguments()).print(")");
+					} else {
+						print(invocation.getArgument(0)).print(".slice(0,").print(invocation.getArgument(1))
+								.print(")");
+					}
 					return true;
 				case "fill":
 					printMacroName(targetMethodName);
-					print("((a, v) => { for(let i=0;i<a.length;i++) a[i]=v; })(")
+					print(context.getRuntimeHelperFunction(RuntimeHelper.FILL_ARRAY)).print("(")
 							.printArgList(invocation.getArguments()).print(")");
 					// ES6 implementation
 					// print(invocation.getArgument(0)).print(".fill(").printArgList(invocation.getArgumentTail())
@@ -544,7 +611,7 @@ public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 					return true;
 				case "equals":
 					printMacroName(targetMethodName);
-					print("((a1, a2) => { if(a1==null && a2==null) return true; if(a1==null || a2==null) return false; if(a1.length != a2.length) return false; for(let i = 0; i < a1.length; i++) { if(<any>a1[i] != <any>a2[i]) return false; } return true; })(")
+					print(context.getRuntimeHelperFunction(RuntimeHelper.ARRAY_EQUALS)).print("(")
 							.printArgList(invocation.getArguments()).print(")");
 					return true;
 				case "deepEquals":
@@ -554,7 +621,13 @@ public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 					return true;
 				case "sort":
 					printMacroName(targetMethodName);
-					if (invocation.getArgumentCount() > 2) {
+					if (invocation.getArgumentCount() > 2 && getTypedArrayName(invocation.getArgument(0)) != null) {
+						// typed arrays sort numerically and in place
+						print(invocation.getArgument(0)).print(".subarray(").print(invocation.getArgument(1))
+								.print(", ").print(invocation.getArgument(2)).print(").sort(")
+								.printArgList(invocation.getArguments().subList(3, invocation.getArgumentCount()))
+								.print(")");
+					} else if (invocation.getArgumentCount() > 2) {
 						print("((arr, start, end, f?) => ((arr1, arr2) => arr1.splice.apply(arr1, (<any[]>[start, arr2.length]).concat(arr2)))(")
 								.print(invocation.getArgument(0)).print(", ").print(invocation.getArgument(0))
 								.print(".slice(start, end).sort(f)))(").printArgList(invocation.getArguments())
@@ -570,9 +643,8 @@ public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 				switch (targetMethodName) {
 				case "arraycopy":
 					printMacroName(targetMethodName);
-					print("((srcPts, srcOff, dstPts, dstOff, size) => { if(srcPts !== dstPts || dstOff >= srcOff + size) { while (--size >= 0) dstPts[dstOff++] = srcPts[srcOff++];"
-							+ "} else { let tmp = srcPts.slice(srcOff, srcOff + size); for (let i = 0; i < size; i++) dstPts[dstOff++] = tmp[i]; }})(")
-									.printArgList(invocation.getArguments()).print(")");
+					print(context.getRuntimeHelperFunction(RuntimeHelper.ARRAY_COPY)).print("(")
+							.printArgList(invocation.getArguments()).print(")");
 					return true;
 				case "currentTimeMillis":
 					printMacroName(targetMethodName);
@@ -583,26 +655,44 @@ public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 			case "java.lang.StringBuffer":
 			case "java.lang.StringBuilder":
 				switch (targetMethodName) {
+				// the methods are implemented by the string builder prototype
+				// (see RuntimeHelper.NEW_STRING_BUILDER), which is not part
+				// of the string builder type
 				case "append":
-					printMacroName(targetMethodName);
-					if (invocation.getArgumentCount() == 1) {
-						print("(sb => sb.str = sb.str.concat(<any>").printArgList(invocation.getArguments())
-								.print("))(").print(invocation.getTargetExpression()).print(")");
-					} else {
-						print("(sb => sb.str = sb.str.concat((<any>").print(invocation.getArgument(0))
-								.print(").substr(").printArgList(invocation.getArgumentTail()).print(")))(")
-								.print(invocation.getTargetExpression()).print(")");
+				case "insert":
+					// char arrays are arrays of strings
+					int charsIndex = "append".equals(targetMethodName) ? 0 : 1;
+					if (invocation.getArgumentCount() > charsIndex
+							&& invocation.getArgument(charsIndex).getType() instanceof ArrayType) {
+						printMacroName(targetMethodName);
+						print("(<any>").print(invocation.getTargetExpression()).print(")." + targetMethodName + "(");
+						if (charsIndex == 1) {
+							print(invocation.getArgument(0)).print(", ");
+						}
+						print("(<any>").print(invocation.getArgument(charsIndex)).print(")");
+						if (invocation.getArgumentCount() > charsIndex + 1) {
+							print(".slice(").print(invocation.getArgument(charsIndex + 1)).print(").slice(0, ")
+									.print(invocation.getArgument(charsIndex + 2)).print(")");
+						}
+						print(".join(''))");
+						return true;
 					}
-					return true;
-				case "setLength":
-					printMacroName(targetMethodName);
-					print("((sb, length) => sb.str = sb.str.substring(0, length))(")
-							.print(invocation.getTargetExpression()).print(", ").printArgList(invocation.getArguments())
-							.print(")");
-					return true;
+					// fall through
 				case "toString":
+				case "length":
+				case "charAt":
+				case "replace":
+				case "delete":
+				case "deleteCharAt":
+				case "setCharAt":
+				case "setLength":
+				case "reverse":
+				case "indexOf":
+				case "lastIndexOf":
+				case "substring":
 					printMacroName(targetMethodName);
-					print(invocation.getTargetExpression()).print(".str");
+					print("(<any>").print(invocation.getTargetExpression()).print(")." + targetMethodName + "(")
+							.printArgList(invocation.getArguments()).print(")");
 					return true;
 				}
 				break;
@@ -832,6 +922,346 @@ public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 		return super.substituteMethodInvocation(invocation);
 	}
 
+	/**
+	 * Substitutes the invocations on collections when native ES2015 sets or
+	 * maps are used.
+	 */
+	private boolean substituteNativeCollectionInvocation(MethodInvocationElement invocation,
+			String targetClassName, String targetMethodName) {
+		ExtendedElement targetExpression = invocation.getTargetExpression();
+		switch (targetClassName) {
+		case "java.util.Set":
+		case "java.util.HashSet":
+		case "java.util.LinkedHashSet":
+		case "java.util.TreeSet":
+			if (!nativeSets) {
+				return false;
+			}
+			switch (targetMethodName) {
+			case "add":
+				printMacroName(targetMethodName);
+				print("((s, e) => s.has(e) ? false : (s.add(e), true))(").print(targetExpression).print(", ")
+						.print(invocation.getArgument(0)).print(")");
+				return true;
+			case "addAll":
+				printMacroName(targetMethodName);
+				print("((s, c) => { let r = false; for (let e of c) { if (!s.has(e)) { s.add(e); r = true; } } return r; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "remove":
+				printMacroName(targetMethodName);
+				print(targetExpression).print(".delete(").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "removeAll":
+				printMacroName(targetMethodName);
+				print("((s, c) => { let r = false; for (let e of Array.from(c)) { if (s.delete(e)) r = true; } return r; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "retainAll":
+				printMacroName(targetMethodName);
+				print("((s, c) => { let k = c instanceof Set ? c : new Set(c); let r = false; for (let e of Array.from(s)) { if (!k.has(e)) { s.delete(e); r = true; } } return r; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "containsAll":
+				printMacroName(targetMethodName);
+				print("((s, c) => { for (let e of c) { if (!s.has(e)) return false; } return true; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "size":
+				printMacroName(targetMethodName);
+				print(targetExpression).print(".size");
+				return true;
+			case "clear":
+				printMacroName(targetMethodName);
+				print(targetExpression).print(".clear()");
+				return true;
+			case "isEmpty":
+				printMacroName(targetMethodName);
+				print("(").print(targetExpression).print(".size == 0)");
+				return true;
+			case "contains":
+				printMacroName(targetMethodName);
+				print(targetExpression).print(".has(").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "toArray":
+				printMacroName(targetMethodName);
+				print("Array.from(").print(targetExpression).print(")");
+				return true;
+			case "iterator":
+				printMacroName(targetMethodName);
+				print(NATIVE_ITERATOR).print("(").print(targetExpression).print(")");
+				return true;
+			case "forEach":
+				printMacroName(targetMethodName);
+				print("((s, f) => s.forEach(e => f(e)))(").print(targetExpression).print(", ")
+						.print(invocation.getArgument(0)).print(")");
+				return true;
+			}
+			return reportUnsupportedNativeCollectionMethod(invocation);
+		case "java.util.Collection":
+			if (!nativeSets) {
+				return false;
+			}
+			// a collection is either a native set or an array
+			switch (targetMethodName) {
+			case "add":
+				printMacroName(targetMethodName);
+				print("((c, e) => c instanceof Set ? (c.has(e) ? false : (c.add(e), true)) : (c.push(e), true))(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "addAll":
+				printMacroName(targetMethodName);
+				print("((c, a) => { let r = false; for (let e of a) { if (!(c instanceof Set)) { c.push(e); r = true; } else if (!c.has(e)) { c.add(e); r = true; } } return r; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "remove":
+				printMacroName(targetMethodName);
+				print("((c, e) => { if (c instanceof Set) return c.delete(e); let i = c.indexOf(e); if (i < 0) return false; c.splice(i, 1); return true; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "removeAll":
+				printMacroName(targetMethodName);
+				print("((c, a) => { let r = false; for (let e of Array.from(a)) { if (c instanceof Set) { if (c.delete(e)) r = true; } else { for (let i = c.indexOf(e); i >= 0; i = c.indexOf(e)) { c.splice(i, 1); r = true; } } } return r; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "retainAll":
+				printMacroName(targetMethodName);
+				print("((c, a) => { let k = a instanceof Set ? a : new Set(a); let r = false; if (c instanceof Set) { for (let e of Array.from(c)) { if (!k.has(e)) { c.delete(e); r = true; } } } else { for (let i = c.length - 1; i >= 0; i--) { if (!k.has(c[i])) { c.splice(i, 1); r = true; } } } return r; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "containsAll":
+				printMacroName(targetMethodName);
+				print("((c, a) => { for (let e of a) { if (c instanceof Set ? !c.has(e) : c.indexOf(e) < 0) return false; } return true; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "size":
+				printMacroName(targetMethodName);
+				print("(c => c instanceof Set ? c.size : c.length)(").print(targetExpression).print(")");
+				return true;
+			case "clear":
+				printMacroName(targetMethodName);
+				print("(c => { if (c instanceof Set) c.clear(); else c.length = 0; })(").print(targetExpression)
+						.print(")");
+				return true;
+			case "isEmpty":
+				printMacroName(targetMethodName);
+				print("(c => (c instanceof Set ? c.size : c.length) == 0)(").print(targetExpression).print(")");
+				return true;
+			case "contains":
+				printMacroName(targetMethodName);
+				print("((c, e) => c instanceof Set ? c.has(e) : c.indexOf(e) >= 0)(").print(targetExpression)
+						.print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "toArray":
+				printMacroName(targetMethodName);
+				print("Array.from(").print(targetExpression).print(")");
+				return true;
+			case "iterator":
+				printMacroName(targetMethodName);
+				print(NATIVE_ITERATOR).print("(").print(targetExpression).print(")");
+				return true;
+			case "forEach":
+				printMacroName(targetMethodName);
+				print("((c, f) => c.forEach(e => f(e)))(").print(targetExpression).print(", ")
+						.print(invocation.getArgument(0)).print(")");
+				return true;
+			}
+			return reportUnsupportedNativeCollectionMethod(invocation);
+		case "java.util.Map":
+		case "java.util.HashMap":
+		case "java.util.Hashtable":
+		case "java.util.WeakHashMap":
+		case "java.util.LinkedHashMap":
+			if (!isNativeMap(targetExpression.getType())) {
+				return false;
+			}
+			switch (targetMethodName) {
+			case "put":
+				printMacroName(targetMethodName);
+				print("((m, k, v) => { let p = m.get(k); m.set(k, v); return p === undefined ? null : p; })(")
+						.print(targetExpression).print(", ").printArgList(invocation.getArguments()).print(")");
+				return true;
+			case "putAll":
+				printMacroName(targetMethodName);
+				print("((m, o) => o.forEach((v, k) => m.set(k, v)))(").print(targetExpression).print(", ")
+						.print(invocation.getArgument(0)).print(")");
+				return true;
+			case "putIfAbsent":
+				printMacroName(targetMethodName);
+				print("((m, k, v) => { let p = m.get(k); if (p == null) { m.set(k, v); return null; } return p; })(")
+						.print(targetExpression).print(", ").printArgList(invocation.getArguments()).print(")");
+				return true;
+			case "getOrDefault":
+				printMacroName(targetMethodName);
+				print("((m, k, d) => m.has(k) ? m.get(k) : d)(").print(targetExpression).print(", ")
+						.printArgList(invocation.getArguments()).print(")");
+				return true;
+			case "get":
+				printMacroName(targetMethodName);
+				print("(v => v === undefined ? null : v)(").print(targetExpression).print(".get(")
+						.print(invocation.getArgument(0)).print("))");
+				return true;
+			case "containsKey":
+				printMacroName(targetMethodName);
+				print(targetExpression).print(".has(").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "containsValue":
+				printMacroName(targetMethodName);
+				print("((m, v) => { for (let e of m.values()) { if (e === v || e != null && e.equals != null && e.equals(v)) return true; } return false; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "keySet":
+				printMacroName(targetMethodName);
+				print(nativeSets ? "new Set(" : "Array.from(").print(targetExpression).print(".keys())");
+				return true;
+			case "values":
+				printMacroName(targetMethodName);
+				print("Array.from(").print(targetExpression).print(".values())");
+				return true;
+			case "size":
+				printMacroName(targetMethodName);
+				print(targetExpression).print(".size");
+				return true;
+			case "isEmpty":
+				printMacroName(targetMethodName);
+				print("(").print(targetExpression).print(".size == 0)");
+				return true;
+			case "remove":
+				if (invocation.getArgumentCount() != 1) {
+					break;
+				}
+				printMacroName(targetMethodName);
+				print("((m, k) => { let v = m.get(k); m.delete(k); return v === undefined ? null : v; })(")
+						.print(targetExpression).print(", ").print(invocation.getArgument(0)).print(")");
+				return true;
+			case "clear":
+				printMacroName(targetMethodName);
+				print(targetExpression).print(".clear()");
+				return true;
+			case "entrySet":
+				printMacroName(targetMethodName);
+				print(nativeSets ? "new Set(Array.from(" : "Array.from(").print(targetExpression).print(
+						", e => ({ key: e[0], value: e[1], getKey: function() { return this.key }, getValue: function() { return this.value } }))")
+						.print(nativeSets ? ")" : "");
+				return true;
+			case "forEach":
+				printMacroName(targetMethodName);
+				print("((m, f) => m.forEach((v, k) => f(k, v)))(").print(targetExpression).print(", ")
+						.print(invocation.getArgument(0)).print(")");
+				return true;
+			}
+			return reportUnsupportedNativeCollectionMethod(invocation);
+		case "java.util.Collections":
+			switch (targetMethodName) {
+			case "emptySet":
+				if (nativeSets) {
+					printMacroName(targetMethodName);
+					print("new Set()");
+					return true;
+				}
+				break;
+			case "singleton":
+				if (nativeSets) {
+					printMacroName(targetMethodName);
+					print("new Set([").print(invocation.getArgument(0)).print("])");
+					return true;
+				}
+				break;
+			case "unmodifiableSet":
+			case "unmodifiableSortedSet":
+				if (nativeSets) {
+					printMacroName(targetMethodName);
+					print("new Set(").print(invocation.getArgument(0)).print(")");
+					return true;
+				}
+				break;
+			case "unmodifiableCollection":
+				if (nativeSets) {
+					printMacroName(targetMethodName);
+					print("Array.from(").print(invocation.getArgument(0)).print(")");
+					return true;
+				}
+				break;
+			case "emptyMap":
+				if (isNativeMap(invocation.getType())) {
+					printMacroName(targetMethodName);
+					print("new Map()");
+					return true;
+				}
+				break;
+			case "singletonMap":
+				if (isNativeMap(invocation.getType())) {
+					printMacroName(targetMethodName);
+					print("new Map([[").print(invocation.getArgument(0)).print(", ").print(invocation.getArgument(1))
+							.print("]])");
+					return true;
+				}
+				break;
+			}
+			return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Tells if the values of the given map type are native ES2015 maps, which
+	 * is the case of all the maps when native maps are enabled, whatever the
+	 * static key type, since map values flow from one declaration to another.
+	 * Native maps compare keys with the SameValueZero equality: strings,
+	 * numbers, booleans and enums behave as in Java, but other objects are
+	 * compared by identity, regardless of their <code>equals</code> and
+	 * <code>hashCode</code> methods.
+	 */
+	protected boolean isNativeMap(TypeMirror mapType) {
+		return nativeMaps && isSubtypeOf(mapType, Map.class);
+	}
+
+	/**
+	 * Reports the invocation of a collection method that has no native ES2015
+	 * translation and prints it as is. The <code>Object</code> methods are
+	 * left to the default translation.
+	 */
+	private boolean reportUnsupportedNativeCollectionMethod(MethodInvocationElement invocation) {
+		switch (invocation.getMethodName()) {
+		case "equals":
+		case "hashCode":
+		case "toString":
+		case "getClass":
+			return false;
+		}
+		report(invocation, JSweetProblem.JDK_METHOD, invocation.getMethodName());
+		print(invocation.getTargetExpression()).print("." + invocation.getMethodName() + "(")
+				.printArgList(invocation.getArguments()).print(")");
+		return true;
+	}
+
+	/**
+	 * Tells if the values of the given collection type may be native ES2015
+	 * sets, in which case they cannot be used as arrays.
+	 */
+	private boolean isNativeSetOrCollection(TypeMirror type) {
+		return nativeSets && isSubtypeOf(type, Collection.class) && !isSubtypeOf(type, List.class);
+	}
+
+	private PrinterAdapter printAsArray(ExtendedElement collection) {
+		if (isNativeSetOrCollection(collection.getType())) {
+			return print("Array.from(").print(collection).print(")");
+		}
+		return print(collection);
+	}
+
+	private boolean isSubtypeOf(TypeMirror type, Class<?> clazz) {
+		return type instanceof DeclaredType
+				&& types().isSubtype(types().erasure(type), types().erasure(util().getType(clazz)));
+	}
+
+	private String getTypedArrayName(ExtendedElement array) {
+		if (array.getType() instanceof ArrayType) {
+			return context.getTypedArrayName(((ArrayType) array.getType()).getComponentType());
+		}
+		return null;
+	}
+
 	@Override
 	public boolean substituteVariableAccess(VariableAccessElement variableAccess) {
 		String targetClassName = variableAccess.getTargetElement().toString();
@@ -879,25 +1309,46 @@ public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 				if (Util.isNumber(newClass.getArgument(0).getType())
 						|| (newClass.getArgument(0) instanceof LiteralElement)) {
 					print("[]");
+				} else if (isNativeSetOrCollection(newClass.getArgument(0).getType())) {
+					print("Array.from(").print(newClass.getArgument(0)).print(")");
 				} else {
 					print(newClass.getArgument(0)).print(".slice(0)");
 				}
 			}
 			return true;
+		case "java.util.HashSet":
+		case "java.util.LinkedHashSet":
+		case "java.util.TreeSet":
+			if (nativeSets) {
+				if (newClass.getArgumentCount() == 1 && isSubtypeOf(newClass.getArgument(0).getType(), Collection.class)) {
+					print("new Set(").print(newClass.getArgument(0)).print(")");
+				} else {
+					print("new Set()");
+				}
+				return true;
+			}
+			break;
 		case "java.util.HashMap":
 		case "java.util.Hashtable":
 		case "java.util.WeakHashMap":
 		case "java.util.LinkedHashMap":
+			if (isNativeMap(newClass.getType())) {
+				if (newClass.getArgumentCount() == 1 && isSubtypeOf(newClass.getArgument(0).getType(), Map.class)) {
+					print("new Map(").print(newClass.getArgument(0)).print(")");
+				} else {
+					print("new Map()");
+				}
+				return true;
+			}
 			print("{}");
 			return true;
 		case "java.lang.StringBuffer":
 		case "java.lang.StringBuilder":
-			if (newClass.getArgumentCount() == 0 || Util.isNumber(newClass.getArgument(0).getType())) {
-				print("{ str: \"\", toString: function() { return this.str; } }");
-			} else {
-				print("{ str: ").print(newClass.getArgument(0))
-						.print(", toString: function() { return this.str; } } }");
+			print(context.getRuntimeHelperFunction(RuntimeHelper.NEW_STRING_BUILDER)).print("(");
+			if (newClass.getArgumentCount() == 1 && !Util.isNumber(newClass.getArgument(0).getType())) {
+				print(newClass.getArgument(0));
 			}
+			print(")");
 			return true;
 		case "java.lang.ref.WeakReference":
 			print(newClass.getArgument(0));
@@ -950,6 +1401,36 @@ public class RemoveJavaDependenciesAdapter extends Java2TypeScriptAdapter {
 
 	@Override
 	public boolean substituteForEachLoop(ForeachLoopElement foreachLoop, boolean targetHasLength, String indexVarName) {
+		if (nativeSets || nativeMaps) {
+			ExtendedElement iterable = foreachLoop.getIterableExpression();
+			String iterableExpression = null;
+			if (iterable instanceof MethodInvocationElement
+					&& ((MethodInvocationElement) iterable).getTargetExpression() != null
+					&& isNativeMap(((MethodInvocationElement) iterable).getTargetExpression().getType())) {
+				// iterates the map directly rather than a copy of its keys or
+				// values
+				MethodInvocationElement invocation = (MethodInvocationElement) iterable;
+				switch (invocation.getMethodName()) {
+				case "keySet":
+					iterableExpression = ".keys()";
+					break;
+				case "values":
+					iterableExpression = ".values()";
+					break;
+				}
+				if (iterableExpression != null) {
+					iterable = invocation.getTargetExpression();
+				}
+			}
+			if (iterableExpression != null || (nativeSets && isSubtypeOf(iterable.getType(), Collection.class)
+					&& !isSubtypeOf(iterable.getType(), List.class))) {
+				print("for(" + Java2TypeScriptTranslator.VAR_DECL_KEYWORD + " " + foreachLoop.getIterationVariable().getSimpleName() + " of ")
+						.print(iterable).print(iterableExpression == null ? "" : iterableExpression).print(") {")
+						.println().startIndent().printIndent().print(foreachLoop.getBody());
+				endIndent().println().printIndent().print("}");
+				return true;
+			}
+		}
 		return false;
 	}
 
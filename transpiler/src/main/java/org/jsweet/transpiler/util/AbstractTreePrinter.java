@@ -110,6 +110,14 @@ public abstract class AbstractTreePrinter extends AbstractTreeScanner {
 		return out.toString();
 	}
 
+	/**
+	 * Gets the output of this printer from the given position (see
+	 * {@link #getCurrentPosition()}).
+	 */
+	public String getOutput(int start) {
+		return out.substring(start);
+	}
+
 	/**
 	 * Print a given AST.
 	 */
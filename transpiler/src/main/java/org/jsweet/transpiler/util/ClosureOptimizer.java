@@ -0,0 +1,206 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.transpiler.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.jsweet.transpiler.EcmaScriptComplianceLevel;
+import org.jsweet.transpiler.JsOptimizationLevel;
+
+import com.google.debugging.sourcemap.FilePosition;
+import com.google.debugging.sourcemap.SourceMapConsumerV3;
+import com.google.debugging.sourcemap.SourceMapFormat;
+import com.google.debugging.sourcemap.SourceMapGeneratorFactory;
+import com.google.debugging.sourcemap.SourceMapGeneratorV3;
+import com.google.debugging.sourcemap.SourceMapParseException;
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.javascript.jscomp.CommandLineRunner;
+import com.google.javascript.jscomp.CompilationLevel;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
+import com.google.javascript.jscomp.JSError;
+import com.google.javascript.jscomp.Result;
+import com.google.javascript.jscomp.SourceFile;
+import com.google.javascript.jscomp.SourceMap;
+
+/**
+ * Optimizes generated JavaScript files with the Closure Compiler.
+ * 
+ * <p>
+ * When a JavaScript file comes with a (Java-to-JavaScript) source map, the
+ * source map generated by the Closure Compiler is composed with it, so that
+ * the optimized file still maps to the Java sources.
+ * 
+ * @author agent
+ * @see JsOptimizationLevel
+ */
+public class ClosureOptimizer {
+
+	private static final Logger logger = Logger.getLogger(ClosureOptimizer.class);
+
+	private static final String SOURCE_MAPPING_URL = "//# sourceMappingURL=";
+
+	private final JsOptimizationLevel level;
+	private final EcmaScriptComplianceLevel ecmaTargetVersion;
+	private String externs;
+
+	/**
+	 * Creates an optimizer.
+	 * 
+	 * @param level
+	 *            the optimization level (simple or advanced)
+	 * @param ecmaTargetVersion
+	 *            the EcmaScript version of the JavaScript files
+	 */
+	public ClosureOptimizer(JsOptimizationLevel level, EcmaScriptComplianceLevel ecmaTargetVersion) {
+		this.level = level;
+		this.ecmaTargetVersion = ecmaTargetVersion;
+	}
+
+	/**
+	 * Sets the program-specific externs, in addition to the default externs
+	 * of the Closure Compiler (see {@link ExternsGenerator}).
+	 */
+	public void setExterns(String externs) {
+		this.externs = externs;
+	}
+
+	private CompilerOptions createOptions() {
+		CompilerOptions options = new CompilerOptions();
+		(level == JsOptimizationLevel.advanced ? CompilationLevel.ADVANCED_OPTIMIZATIONS
+				: CompilationLevel.SIMPLE_OPTIMIZATIONS).setOptionsForCompilationLevel(options);
+		switch (ecmaTargetVersion) {
+		case ES3:
+			options.setLanguageIn(LanguageMode.ECMASCRIPT3);
+			options.setLanguageOut(LanguageMode.ECMASCRIPT3);
+			break;
+		case ES5:
+			options.setLanguageIn(LanguageMode.ECMASCRIPT5);
+			options.setLanguageOut(LanguageMode.ECMASCRIPT5);
+			break;
+		default:
+			// the Closure Compiler outputs ES6 code as ES5
+			options.setLanguageIn(LanguageMode.ECMASCRIPT6);
+			options.setLanguageOut(LanguageMode.ECMASCRIPT5);
+		}
+		return options;
+	}
+
+	/**
+	 * Optimizes a JavaScript file (and its source map, if any) in place. The
+	 * file is left unchanged if the Closure Compiler reports errors.
+	 * 
+	 * @param jsFile
+	 *            the file to be optimized
+	 * @return the errors reported by the Closure Compiler (empty list if none)
+	 */
+	public List<String> optimize(File jsFile) throws IOException {
+		CompilerOptions options = createOptions();
+		File mapFile = new File(jsFile.getPath() + ".map");
+		boolean sourceMap = mapFile.exists();
+		if (sourceMap) {
+			options.setSourceMapOutputPath(mapFile.getPath());
+			options.setSourceMapFormat(SourceMap.Format.V3);
+		}
+
+		List<SourceFile> externFiles = new ArrayList<>(CommandLineRunner.getDefaultExterns());
+		if (externs != null) {
+			externFiles.add(SourceFile.fromCode("jsweet_externs.js", externs));
+		}
+		String code = FileUtils.readFileToString(jsFile);
+		int sourceMappingUrlIndex = code.lastIndexOf(SOURCE_MAPPING_URL);
+		if (sourceMappingUrlIndex >= 0) {
+			code = code.substring(0, sourceMappingUrlIndex);
+		}
+
+		logger.info("optimizing " + jsFile + " (" + level + ")");
+		Compiler compiler = new Compiler();
+		Result result = compiler.compile(externFiles,
+				Collections.singletonList(SourceFile.fromCode(jsFile.getName(), code)), options);
+		for (JSError warning : result.warnings) {
+			logger.warn(warning.toString());
+		}
+		if (!result.success) {
+			List<String> errors = new ArrayList<>();
+			for (JSError error : result.errors) {
+				errors.add(error.toString());
+			}
+			return errors;
+		}
+
+		StringBuilder output = new StringBuilder(compiler.toSource());
+		if (sourceMap) {
+			StringBuilder closureSourceMap = new StringBuilder();
+			compiler.getSourceMap().appendTo(closureSourceMap, jsFile.getName());
+			try {
+				SourceMapGeneratorV3 generator = compose(closureSourceMap.toString(),
+						FileUtils.readFileToString(mapFile));
+				StringBuilder composedSourceMap = new StringBuilder();
+				generator.appendTo(composedSourceMap, jsFile.getName());
+				FileUtils.write(mapFile, composedSourceMap, false);
+			} catch (SourceMapParseException e) {
+				logger.error(e.getMessage(), e);
+			}
+			output.append("\n").append(SOURCE_MAPPING_URL).append(mapFile.getName());
+		}
+		FileUtils.write(jsFile, output, false);
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Composes the source map generated by the Closure Compiler (optimized to
+	 * original JavaScript) with the original source map (original JavaScript
+	 * to Java).
+	 */
+	private SourceMapGeneratorV3 compose(String closureSourceMap, String originalSourceMap)
+			throws SourceMapParseException {
+		SourceMapConsumerV3 originalConsumer = new SourceMapConsumerV3();
+		originalConsumer.parse(originalSourceMap);
+		SourceMapConsumerV3 closureConsumer = new SourceMapConsumerV3();
+		closureConsumer.parse(closureSourceMap);
+
+		SourceMapGeneratorV3 generator = (SourceMapGeneratorV3) SourceMapGeneratorFactory
+				.getInstance(SourceMapFormat.V3);
+		JsonObject json = new Gson().fromJson(originalSourceMap, JsonObject.class);
+		if (json.has("sourceRoot")) {
+			generator.setSourceRoot(json.get("sourceRoot").getAsString());
+		}
+		closureConsumer.visitMappings((sourceName, symbolName, jsPosition, startPosition, endPosition) -> {
+			// file positions are 0-based, mapping lookups are 1-based
+			OriginalMapping mapping = originalConsumer.getMappingForLine(jsPosition.getLine() + 1,
+					jsPosition.getColumn() + 1);
+			if (mapping != null) {
+				generator.addMapping(mapping.getOriginalFile(), null,
+						new FilePosition(mapping.getLineNumber() - 1, Math.max(0, mapping.getColumnPosition() - 1)),
+						startPosition, endPosition);
+			}
+		});
+		return generator;
+	}
+
+}
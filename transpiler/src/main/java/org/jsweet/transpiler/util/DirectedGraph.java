@@ -19,13 +19,17 @@
 package org.jsweet.transpiler.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -62,6 +66,11 @@ import java.util.stream.Collectors;
  * because of the edge built by the comparator, however, the remainder is in
  * random order).
  * 
+ * <p>
+ * The topological sort and the cycle detection work on an int-indexed
+ * snapshot of the graph's adjacency, and run in O(nodes + edges) without
+ * modifying the graph.
+ * 
  * @author Renaud Pawlak
  * 
  * @param <T>
@@ -168,7 +177,18 @@ public class DirectedGraph<T> implements Collection<T> {
 	 */
 	@Override
 	public boolean remove(Object o) {
-		return nodes.remove(o) != null;
+		Node<T> node = nodes.remove(o);
+		if (node == null) {
+			return false;
+		}
+		for (Edge<T> edge : node.inEdges) {
+			edge.from.outEdges.remove(edge);
+			edge.from.destinations.remove(node);
+		}
+		for (Edge<T> edge : node.outEdges) {
+			edge.to.inEdges.remove(edge);
+		}
+		return true;
 	}
 
 	/**
@@ -254,12 +274,19 @@ public class DirectedGraph<T> implements Collection<T> {
 	 * using the given comparator. If the comparator returns 0, then no edge is
 	 * constructor between the compared nodes.
 	 * 
+	 * <p>
+	 * Note that all the pairs of nodes are compared (O(n<sup>2</sup>)), so
+	 * edges should be added directly when they are known.
+	 * 
 	 * @param nodeComparator
 	 *            a comparator which is used to build the edges
 	 */
 	public <U extends T> void buildEdges(Comparator<U> nodeComparator) {
 		for (T e1 : nodes.keySet()) {
 			for (T e2 : nodes.keySet()) {
+				if (e1 == e2) {
+					continue;
+				}
 				@SuppressWarnings("unchecked")
 				int i = nodeComparator.compare((U) e1, (U) e2);
 				if (i < 0) {
@@ -297,16 +324,12 @@ public class DirectedGraph<T> implements Collection<T> {
 	 * @return true if an edge is found, false otherwise
 	 */
 	public boolean hasEdge(T sourceElement, T destinationElement) {
-		if (nodes.get(sourceElement) == null) {
+		Node<T> source = nodes.get(sourceElement);
+		Node<T> destination = nodes.get(destinationElement);
+		if (source == null || destination == null) {
 			return false;
 		}
-
-		for (Edge<T> edge : nodes.get(sourceElement).outEdges) {
-			if (edge.to.element == destinationElement) {
-				return true;
-			}
-		}
-		return false;
+		return source.destinations.contains(destination);
 	}
 
 	public List<T> getDestinationElements(T sourceElement) {
@@ -353,9 +376,21 @@ public class DirectedGraph<T> implements Collection<T> {
 		private DirectedGraph<T> graph;
 		public final T element;
 		public final LinkedHashSet<Edge<T>> inEdges;
+		/**
+		 * @deprecated the topological sort no longer moves edges to this set
+		 *             (only {@link #useInEdge(Edge)} does)
+		 */
+		@Deprecated
 		public final LinkedHashSet<Edge<T>> usedInEdges;
 		public final LinkedHashSet<Edge<T>> outEdges;
+		/**
+		 * @deprecated the topological sort no longer moves edges to this set
+		 *             (only {@link #useOutEdge(Edge)} does)
+		 */
+		@Deprecated
 		public final LinkedHashSet<Edge<T>> usedOutEdges;
+		private final Set<Node<T>> destinations;
+		private int index;
 
 		public Node(DirectedGraph<T> graph, T element) {
 			this.graph = graph;
@@ -364,6 +399,7 @@ public class DirectedGraph<T> implements Collection<T> {
 			usedInEdges = new LinkedHashSet<Edge<T>>();
 			outEdges = new LinkedHashSet<Edge<T>>();
 			usedOutEdges = new LinkedHashSet<Edge<T>>();
+			destinations = new HashSet<Node<T>>();
 		}
 
 		public void addEdge(T destinationElement) {
@@ -372,6 +408,9 @@ public class DirectedGraph<T> implements Collection<T> {
 				graph.add(destinationElement);
 				node = graph.nodes.get(destinationElement);
 			}
+			if (!destinations.add(node)) {
+				return;
+			}
 			Edge<T> e = new Edge<T>(this, node);
 			outEdges.add(e);
 			node.inEdges.add(e);
@@ -384,18 +423,30 @@ public class DirectedGraph<T> implements Collection<T> {
 			}
 		}
 
+		/**
+		 * @deprecated the topological sort does not modify the graph anymore
+		 */
+		@Deprecated
 		public void useInEdge(Edge<T> edge) {
 			if (inEdges.remove(edge)) {
 				usedInEdges.add(edge);
 			}
 		}
 
+		/**
+		 * @deprecated the topological sort does not modify the graph anymore
+		 */
+		@Deprecated
 		public void useOutEdge(Edge<T> edge) {
 			if (outEdges.remove(edge)) {
 				usedOutEdges.add(edge);
 			}
 		}
 
+		/**
+		 * @deprecated the topological sort does not modify the graph anymore
+		 */
+		@Deprecated
 		public void resetEdges() {
 			inEdges.addAll(usedInEdges);
 			usedInEdges.clear();
@@ -431,73 +482,172 @@ public class DirectedGraph<T> implements Collection<T> {
 		}
 	}
 
-	private List<T> toElements(List<Node<T>> nodes) {
-		List<T> elements = new ArrayList<T>();
-		for (Node<T> node : nodes) {
-			elements.add(node.element);
+	/**
+	 * An int-indexed snapshot of the adjacency of a graph: the successors of
+	 * node <code>i</code> are
+	 * <code>targets[offsets[i]] ... targets[offsets[i + 1] - 1]</code>, in the
+	 * edges insertion order.
+	 */
+	private static class Adjacency<T> {
+		final Node<T>[] nodes;
+		final int[] offsets;
+		final int[] targets;
+
+		@SuppressWarnings("unchecked")
+		Adjacency(Collection<Node<T>> graphNodes) {
+			nodes = graphNodes.toArray(new Node[graphNodes.size()]);
+			offsets = new int[nodes.length + 1];
+			int edgeCount = 0;
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i].index = i;
+				edgeCount += nodes[i].outEdges.size();
+			}
+			targets = new int[edgeCount];
+			int k = 0;
+			for (int i = 0; i < nodes.length; i++) {
+				offsets[i] = k;
+				for (Edge<T> edge : nodes[i].outEdges) {
+					targets[k++] = edge.to.index;
+				}
+			}
+			offsets[nodes.length] = k;
 		}
-		return elements;
 	}
 
 	/**
-	 * Sorts this graph using a topological sort algorithm given in this
-	 * <a href=
+	 * Sorts this graph using Kahn's topological sort algorithm, as given in
+	 * this <a href=
 	 * "http://stackoverflow.com/questions/2739392/sample-directed-graph-and-topological-sort-code"
 	 * >StackOverflow thread</a>.
 	 * 
-	 * @return the list of nodes, sorted according to the topological sort
-	 * @throws CycleFoundException
-	 *             thrown if a cycle is found in the graph (in that case no
-	 *             topological sort is possible)
+	 * @param cycleHandler
+	 *            if not null, is called for each node that cannot be sorted
+	 *            because it is part of a cycle or depends on a cycle (use
+	 *            {@link #findCycles()} to get the actual cycles)
+	 * @return the list of elements, sorted according to the topological sort
+	 *         (the nodes that cannot be sorted are left out)
 	 */
 	public List<T> topologicalSort(Consumer<Node<T>> cycleHandler) {
-		List<Node<T>> allNodes = new ArrayList<Node<T>>(nodes.values());
-		// L <- Empty list that will contain the sorted elements
-		ArrayList<Node<T>> L = new ArrayList<Node<T>>();
-
-		// S <- Set of all nodes with no incoming edges
-		LinkedHashSet<Node<T>> S = new LinkedHashSet<Node<T>>();
-		for (Node<T> n : allNodes) {
-			if (n.inEdges.size() == 0) {
-				S.add(n);
+		Adjacency<T> adjacency = new Adjacency<T>(nodes.values());
+		int n = adjacency.nodes.length;
+		int[] inDegrees = new int[n];
+		for (int target : adjacency.targets) {
+			inDegrees[target]++;
+		}
+
+		// the queue holds the sorted nodes: nodes with no incoming edges are
+		// appended and their edges are removed in turn
+		int[] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		for (int i = 0; i < n; i++) {
+			if (inDegrees[i] == 0) {
+				queue[tail++] = i;
+			}
+		}
+		while (head < tail) {
+			int i = queue[head++];
+			for (int k = adjacency.offsets[i]; k < adjacency.offsets[i + 1]; k++) {
+				if (--inDegrees[adjacency.targets[k]] == 0) {
+					queue[tail++] = adjacency.targets[k];
+				}
 			}
 		}
 
-		// while S is non-empty do
-		while (!S.isEmpty()) {
-			// remove a node n from S
-			Node<T> n = S.iterator().next();
-			S.remove(n);
-
-			// insert n into L
-			L.add(n);
-
-			// for each node m with an edge e from n to m do
-			for (Iterator<Edge<T>> it = new ArrayList<>(n.outEdges).iterator(); it.hasNext();) {
-				// remove edge e from the graph
-				Edge<T> e = it.next();
-				Node<T> m = e.to;
-				n.useOutEdge(e); // Remove edge from n
-				m.useInEdge(e); // Remove edge from m
-
-				// if m has no other incoming edges then insert m into S
-				if (m.inEdges.isEmpty()) {
-					S.add(m);
+		List<T> sorted = new ArrayList<T>(tail);
+		for (int k = 0; k < tail; k++) {
+			sorted.add(adjacency.nodes[queue[k]].element);
+		}
+		// remaining edges mean that there are cycles
+		if (tail < n && cycleHandler != null) {
+			for (int i = 0; i < n; i++) {
+				if (inDegrees[i] > 0) {
+					cycleHandler.accept(adjacency.nodes[i]);
 				}
 			}
 		}
-		// Check to see if all edges are removed
-		for (Node<T> n : allNodes) {
-			if (!n.inEdges.isEmpty()) {
-				if (cycleHandler != null) {
-					cycleHandler.accept(n);
+		return sorted;
+	}
+
+	/**
+	 * Finds the cycles of this graph, using Tarjan's strongly connected
+	 * components algorithm (iterative, in O(nodes + edges)).
+	 * 
+	 * @return the elements of the strongly connected components that contain a
+	 *         cycle (all the elements of a component depend on one another),
+	 *         each component being given in depth-first discovery order
+	 */
+	public List<List<T>> findCycles() {
+		Adjacency<T> adjacency = new Adjacency<T>(nodes.values());
+		int n = adjacency.nodes.length;
+		int[] indices = new int[n];
+		Arrays.fill(indices, -1);
+		int[] lowLinks = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int stackSize = 0;
+		// the depth-first search call stack: current node and next edge
+		int[] frames = new int[n];
+		int[] nextEdges = new int[n];
+		int counter = 0;
+		List<List<T>> cycles = new ArrayList<>();
+
+		for (int root = 0; root < n; root++) {
+			if (indices[root] >= 0) {
+				continue;
+			}
+			int depth = 0;
+			frames[0] = root;
+			nextEdges[0] = adjacency.offsets[root];
+			indices[root] = lowLinks[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			while (depth >= 0) {
+				int v = frames[depth];
+				if (nextEdges[depth] < adjacency.offsets[v + 1]) {
+					int w = adjacency.targets[nextEdges[depth]++];
+					if (indices[w] < 0) {
+						indices[w] = lowLinks[w] = counter++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						depth++;
+						frames[depth] = w;
+						nextEdges[depth] = adjacency.offsets[w];
+					} else if (onStack[w]) {
+						lowLinks[v] = Math.min(lowLinks[v], indices[w]);
+					}
+				} else {
+					if (lowLinks[v] == indices[v]) {
+						List<T> component = new ArrayList<>();
+						int w;
+						do {
+							w = stack[--stackSize];
+							onStack[w] = false;
+							component.add(adjacency.nodes[w].element);
+						} while (w != v);
+						if (component.size() > 1 || hasSelfEdge(adjacency, v)) {
+							Collections.reverse(component);
+							cycles.add(component);
+						}
+					}
+					depth--;
+					if (depth >= 0) {
+						int u = frames[depth];
+						lowLinks[u] = Math.min(lowLinks[u], lowLinks[v]);
+					}
 				}
 			}
 		}
-		for (Node<T> n : allNodes) {
-			n.resetEdges();
+		return cycles;
+	}
+
+	private static <T> boolean hasSelfEdge(Adjacency<T> adjacency, int i) {
+		for (int k = adjacency.offsets[i]; k < adjacency.offsets[i + 1]; k++) {
+			if (adjacency.targets[k] == i) {
+				return true;
+			}
 		}
-		return toElements(L);
+		return false;
 	}
 
 	/**
@@ -507,7 +657,10 @@ public class DirectedGraph<T> implements Collection<T> {
 	 *            the nodes in which to look for cycles
 	 * @param toString
 	 *            the element's toString function
+	 * @deprecated this method prints every path of the cycles, which is
+	 *             exponential in the worst case; use {@link #findCycles()}
 	 */
+	@Deprecated
 	public static <T> void dumpCycles(List<Node<T>> nodes, Function<T, String> toString) {
 		for (Node<T> node : nodes) {
 			Stack<Node<T>> path = new Stack<Node<T>>();
@@ -520,7 +673,8 @@ public class DirectedGraph<T> implements Collection<T> {
 		path.peek().outEdges.stream().map(e -> e.to).forEach(node -> {
 			if (nodes.contains(node)) {
 				if (path.contains(node)) {
-					System.out.println("cycle: " + path.stream().map(n -> toString.apply(n.element)).collect(Collectors.toList()));
+					System.out.println("cycle: "
+							+ path.stream().map(n -> toString.apply(n.element)).collect(Collectors.toList()));
 				} else {
 					path.push(node);
 					dumpCycles(nodes, path, toString);
@@ -528,7 +682,6 @@ public class DirectedGraph<T> implements Collection<T> {
 				}
 			}
 		});
-		;
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,173 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.transpiler.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import javax.lang.model.element.ElementKind;
+
+import org.jsweet.JSweetConfig;
+import org.jsweet.transpiler.JSweetContext;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
+import com.sun.tools.javac.tree.JCTree.JCIdent;
+import com.sun.tools.javac.tree.TreeScanner;
+
+/**
+ * A scanner that generates the Closure Compiler externs of a program, i.e.
+ * the globals and the member names that the program uses from the JavaScript
+ * libraries (candies and Java runtime), and which must therefore not be
+ * renamed by the advanced optimizations.
+ * 
+ * <p>
+ * Library members are collected when they are accessed, and when they are
+ * inherited by a class of the program (so that the overriding members, which
+ * may be called by the libraries, keep their names). The members of the
+ * program's object types (<code>@Interface</code> and <code>@ObjectType</code>)
+ * are also kept, since such objects are often plain JavaScript objects that
+ * come from outside the program (typically parsed from JSON).
+ * 
+ * @author agent
+ */
+public class ExternsGenerator extends TreeScanner {
+
+	private static final Pattern IDENTIFIER = Pattern.compile("[a-zA-Z_$][a-zA-Z_$0-9]*");
+
+	private static final Set<String> RESERVED_WORDS = new HashSet<>(Arrays.asList("arguments", "break", "case",
+			"catch", "class", "const", "continue", "debugger", "default", "delete", "do", "else", "enum", "eval",
+			"export", "extends", "false", "finally", "for", "function", "if", "implements", "import", "in",
+			"instanceof", "interface", "let", "new", "null", "package", "private", "protected", "public", "return",
+			"static", "super", "switch", "this", "throw", "true", "try", "typeof", "undefined", "var", "void",
+			"while", "with", "yield"));
+
+	private final JSweetContext context;
+	private final Set<String> globals = new TreeSet<>();
+	private final Set<String> properties = new TreeSet<>();
+	private final Set<ClassSymbol> inheritedTypes = new HashSet<>();
+
+	/**
+	 * Creates an externs generator.
+	 */
+	public ExternsGenerator(JSweetContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * Generates the externs of the given compilation units.
+	 * 
+	 * @return the externs JavaScript code
+	 */
+	public String generate(Collection<JCCompilationUnit> compilationUnits) {
+		for (JCCompilationUnit compilationUnit : compilationUnits) {
+			scan(compilationUnit);
+		}
+		StringBuilder externs = new StringBuilder();
+		externs.append("// library globals and members used by the program (generated by JSweet)\n");
+		for (String global : globals) {
+			externs.append("var ").append(global).append(";\n");
+		}
+		for (String property : properties) {
+			externs.append("/** @type {?} */\nObject.prototype.").append(property).append(";\n");
+		}
+		return externs.toString();
+	}
+
+	@Override
+	public void visitClassDef(JCClassDecl classdecl) {
+		if (classdecl.sym != null && context.hasAnnotationType(classdecl.sym, JSweetConfig.ANNOTATION_INTERFACE,
+				JSweetConfig.ANNOTATION_OBJECT_TYPE)) {
+			for (Symbol member : classdecl.sym.getEnclosedElements()) {
+				if (member.getKind() == ElementKind.METHOD || member.getKind() == ElementKind.FIELD) {
+					addProperty(context.getActualName(member));
+				}
+			}
+		}
+		if (classdecl.sym != null) {
+			for (Type type : context.types.closure(classdecl.sym.type)) {
+				if (type.tsym instanceof ClassSymbol && !Util.isSourceElement(type.tsym)
+						&& inheritedTypes.add((ClassSymbol) type.tsym)) {
+					for (Symbol member : type.tsym.getEnclosedElements()) {
+						if (member.getKind() == ElementKind.METHOD || member.getKind() == ElementKind.FIELD) {
+							addProperty(context.getActualName(member));
+						}
+					}
+				}
+			}
+		}
+		super.visitClassDef(classdecl);
+	}
+
+	@Override
+	public void visitSelect(JCFieldAccess fieldAccess) {
+		addReference(fieldAccess.sym);
+		super.visitSelect(fieldAccess);
+	}
+
+	@Override
+	public void visitIdent(JCIdent ident) {
+		addReference(ident.sym);
+		super.visitIdent(ident);
+	}
+
+	private void addReference(Symbol symbol) {
+		if (symbol == null) {
+			return;
+		}
+		if (symbol instanceof ClassSymbol) {
+			if (!Util.isSourceElement(symbol)) {
+				String[] names = context.getRootRelativeName(null, symbol).split("\\.");
+				addGlobal(names[0]);
+				for (int i = 1; i < names.length; i++) {
+					addProperty(names[i]);
+				}
+			}
+		} else if ((symbol.getKind() == ElementKind.METHOD || symbol.getKind() == ElementKind.FIELD)
+				&& symbol.owner instanceof ClassSymbol && !Util.isSourceElement(symbol.owner)) {
+			if (Util.isGlobalsClassName(symbol.owner.getQualifiedName().toString())) {
+				addGlobal(context.getActualName(symbol));
+			} else {
+				addProperty(context.getActualName(symbol));
+			}
+		}
+	}
+
+	private void addGlobal(String name) {
+		if (IDENTIFIER.matcher(name).matches() && !RESERVED_WORDS.contains(name)) {
+			globals.add(name);
+		}
+	}
+
+	private void addProperty(String name) {
+		// properties can be reserved words in ES5
+		if (IDENTIFIER.matcher(name).matches()) {
+			properties.add(name);
+		}
+	}
+
+}
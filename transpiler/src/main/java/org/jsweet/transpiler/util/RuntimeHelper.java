@@ -0,0 +1,205 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.transpiler.util;
+
+import org.jsweet.transpiler.JSweetContext;
+
+/**
+ * The helper functions that the generated code may call instead of inlining
+ * a function expression at each use site.
+ *
+ * <p>
+ * When runtime helpers are enabled, a helper is declared once per generated
+ * file (or once per bundle) as a top-level function, and call sites refer to
+ * it by name. Otherwise, the inlined function expression is used (see
+ * {@link JSweetContext#getRuntimeHelperFunction(RuntimeHelper)}). Helpers
+ * that are too large to be inlined have a global declaration and are always
+ * declared, including in global files.
+ *
+ * @author agent
+ */
+public enum RuntimeHelper {
+
+	/**
+	 * Gets the code of a char (chars are generated as strings).
+	 */
+	CHAR_CODE("__jsweet_charCode", //
+			"(c => c.charCodeAt==null?<any>c:c.charCodeAt(0))", //
+			"function __jsweet_charCode(c: any): number { return c.charCodeAt == null ? <any>c : c.charCodeAt(0); }"),
+	/**
+	 * Creates an array of numbers initialized to 0.
+	 */
+	NEW_NUMBER_ARRAY("__jsweet_newNumberArray", //
+			"(s => { let a=[]; while(s-->0) a.push(0); return a; })", //
+			"function __jsweet_newNumberArray(s: number): number[] { let a = []; while (s-- > 0) a.push(0); return a; }"),
+	/**
+	 * Allocates a multi-dimensional array, filled with the given value (a
+	 * typed array constructor can be passed for the last dimension).
+	 */
+	ALLOCATE_ARRAY("__jsweet_allocateArray", //
+			null, //
+			"function __jsweet_allocateArray(dims: number[], value: any, typedArray?: any): any { "
+					+ "if (typedArray != null && dims.length == 1) { return new typedArray(dims[0]); } "
+					+ "if (dims.length == 0) { return value; } let array = []; "
+					+ "for (let i = 0; i < dims[0]; i++) { array.push(__jsweet_allocateArray(dims.slice(1), value, typedArray)); } "
+					+ "return array; }"),
+	/**
+	 * Fills an array with a value.
+	 */
+	FILL_ARRAY("__jsweet_fillArray", //
+			"((a, v) => { for(let i=0;i<a.length;i++) a[i]=v; })", //
+			"function __jsweet_fillArray(a: any, v: any): void { for (let i = 0; i < a.length; i++) a[i] = v; }"),
+	/**
+	 * Compares the elements of two arrays.
+	 */
+	ARRAY_EQUALS("__jsweet_arrayEquals", //
+			"((a1, a2) => { if(a1==null && a2==null) return true; if(a1==null || a2==null) return false; if(a1.length != a2.length) return false; for(let i = 0; i < a1.length; i++) { if(<any>a1[i] != <any>a2[i]) return false; } return true; })", //
+			"function __jsweet_arrayEquals(a1: any, a2: any): boolean { if (a1 == null && a2 == null) return true; "
+					+ "if (a1 == null || a2 == null) return false; if (a1.length != a2.length) return false; "
+					+ "for (let i = 0; i < a1.length; i++) { if (<any>a1[i] != <any>a2[i]) return false; } return true; }"),
+	/**
+	 * Copies a range of elements from an array to another array.
+	 */
+	ARRAY_COPY("__jsweet_arrayCopy", //
+			"((srcPts, srcOff, dstPts, dstOff, size) => { if(srcPts !== dstPts || dstOff >= srcOff + size) { while (--size >= 0) dstPts[dstOff++] = srcPts[srcOff++];"
+					+ "} else { let tmp = srcPts.slice(srcOff, srcOff + size); for (let i = 0; i < size; i++) dstPts[dstOff++] = tmp[i]; }})", //
+			"function __jsweet_arrayCopy(srcPts: any, srcOff: number, dstPts: any, dstOff: number, size: number): void { "
+					+ "if (srcPts !== dstPts || dstOff >= srcOff + size) { while (--size >= 0) dstPts[dstOff++] = srcPts[srcOff++]; } "
+					+ "else { let tmp = srcPts.slice(srcOff, srcOff + size); for (let i = 0; i < size; i++) dstPts[dstOff++] = tmp[i]; } }"),
+	/**
+	 * A variable that holds the tested expression of an instanceof test on an
+	 * interface, so that the expression is evaluated only once. The tests do
+	 * not nest (the expression is evaluated before the variable is assigned),
+	 * so that one variable per file or bundle is enough.
+	 */
+	INSTANCEOF_TARGET("__jsweet_instanceOfTarget", //
+			null, //
+			"var __jsweet_instanceOfTarget: any;", //
+			"var __jsweet_instanceOfTarget: any;"),
+	/**
+	 * Creates a string builder, optionally initialized with a value. The
+	 * builders of a file or bundle share a prototype (see
+	 * {@link #stringBuilderPrototype()}), which is created on the first call
+	 * and kept on the helper function.
+	 */
+	NEW_STRING_BUILDER("__jsweet_newStringBuilder", //
+			null, //
+			"function __jsweet_newStringBuilder(s?: any): any " + newStringBuilderBody(), //
+			"var __jsweet_newStringBuilder: (s?: any) => any = function(s?: any): any " + newStringBuilderBody()
+					+ ";");
+
+	private static String newStringBuilderBody() {
+		return "{ let f = <any>__jsweet_newStringBuilder; if (f.prototypeObject == null) { f.prototypeObject = "
+				+ stringBuilderPrototype() + "; "
+				+ "Object.defineProperty(f.prototypeObject, 'str', { get: function() { return this.toString(); }, "
+				+ "set: function(v: any) { this.segments = [String(v)]; this.count = this.segments[0].length; } }); } "
+				+ "let sb = Object.create(f.prototypeObject); sb.segments = []; sb.count = 0; "
+				+ "if (s != null) sb.append(s); return sb; }";
+	}
+
+	/**
+	 * The prototype of the string builders, implemented as ropes: appends push
+	 * a new segment, the segments are joined lazily (and the joined string is
+	 * kept), and modifications in the middle of the string only split the
+	 * segments at the bounds of the modified range. The joined string can
+	 * also be accessed through the <code>str</code> property.
+	 */
+	private static String stringBuilderPrototype() {
+		return "{ segments: <string[]>null, count: 0, " //
+				+ "append: function(v: any, start?: number, end?: number) { let s = String(v); "
+				+ "if (start != null) s = s.substring(start, end); "
+				+ "if (s.length > 0) { this.segments.push(s); this.count += s.length; } return this; }, "
+				+ "toString: function() { if (this.segments.length > 1) this.segments = [this.segments.join('')]; "
+				+ "return this.segments.length == 0 ? '' : this.segments[0]; }, "
+				+ "length: function() { return this.count; }, "
+				+ "charAt: function(i: number) { for (let j = 0; j < this.segments.length; j++) { "
+				+ "if (i < this.segments[j].length) return this.segments[j].charAt(i); i -= this.segments[j].length; } "
+				+ "return this.toString().charAt(i); }, "
+				+ "replace: function(start: number, end: number, v: any) { let s = String(v); "
+				+ "start = Math.max(0, Math.min(start, this.count)); end = Math.max(start, Math.min(end, this.count)); "
+				+ "let r = []; let done = s.length == 0; let p = 0; "
+				+ "for (let j = 0; j < this.segments.length; j++) { let g = this.segments[j]; let e = p + g.length; "
+				+ "if (e <= start || p >= end) { if (!done && p >= end) { r.push(s); done = true; } r.push(g); } "
+				+ "else { if (p < start) r.push(g.substring(0, start - p)); if (!done) { r.push(s); done = true; } "
+				+ "if (e > end) r.push(g.substring(end - p)); } p = e; } "
+				+ "if (!done) r.push(s); this.segments = r; this.count += s.length - (end - start); return this; }, "
+				+ "insert: function(i: number, v: any, start?: number, end?: number) { let s = String(v); "
+				+ "if (start != null) s = s.substring(start, end); return this.replace(i, i, s); }, "
+				+ "delete: function(start: number, end: number) { return this.replace(start, end, ''); }, "
+				+ "deleteCharAt: function(i: number) { return this.replace(i, i + 1, ''); }, "
+				+ "setCharAt: function(i: number, c: string) { this.replace(i, i + 1, c); }, "
+				+ "setLength: function(n: number) { if (n < this.count) this.replace(n, this.count, ''); "
+				+ "while (this.count < n) this.append(String.fromCharCode(0)); }, "
+				+ "reverse: function() { this.segments = [this.toString().split('').reverse().join('')]; return this; }, "
+				+ "indexOf: function(s: string, from?: number) { return this.toString().indexOf(s, from); }, "
+				+ "lastIndexOf: function(s: string, from?: number) { "
+				+ "return from == null ? this.toString().lastIndexOf(s) : this.toString().lastIndexOf(s, from); }, "
+				+ "substring: function(start: number, end?: number) { return this.toString().substring(start, end); } }";
+	}
+
+	private final String name;
+	private final String inlineFunction;
+	private final String declaration;
+	private final String globalDeclaration;
+
+	private RuntimeHelper(String name, String inlineFunction, String declaration) {
+		this(name, inlineFunction, declaration, null);
+	}
+
+	private RuntimeHelper(String name, String inlineFunction, String declaration, String globalDeclaration) {
+		this.name = name;
+		this.inlineFunction = inlineFunction;
+		this.declaration = declaration;
+		this.globalDeclaration = globalDeclaration;
+	}
+
+	/**
+	 * The name of the helper function.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * The function expression to be used when runtime helpers are disabled
+	 * (null if the use sites generate their own inlined code).
+	 */
+	public String getInlineFunction() {
+		return inlineFunction;
+	}
+
+	/**
+	 * The declaration of the helper function (a top-level TypeScript function
+	 * declaration).
+	 */
+	public String getDeclaration() {
+		return declaration;
+	}
+
+	/**
+	 * The declaration of the helper in global files (a variable that all the
+	 * files can declare without clashing), or null if the helper is declared
+	 * only in modules and bundles, and inlined in global files. Helpers with
+	 * a global declaration are always declared, whatever the options.
+	 */
+	public String getGlobalDeclaration() {
+		return globalDeclaration;
+	}
+
+}
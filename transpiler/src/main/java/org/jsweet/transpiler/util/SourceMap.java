@@ -19,6 +19,8 @@
 package org.jsweet.transpiler.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.SortedSet;
@@ -38,11 +40,13 @@ public class SourceMap {
 	 * @see SourceMap
 	 */
 	public static final class Entry implements Comparable<Entry> {
+		private final SourceMap sourceMap;
 		private final Position inputPosition;
 		private Position outputPosition;
 
-		private Entry(Position inputPosition, Position outputPosition) {
+		private Entry(SourceMap sourceMap, Position inputPosition, Position outputPosition) {
 			super();
+			this.sourceMap = sourceMap;
 			this.inputPosition = inputPosition;
 			this.outputPosition = outputPosition;
 		}
@@ -52,11 +56,15 @@ public class SourceMap {
 		}
 
 		public final Position getOutputPosition() {
-			return outputPosition;
+			if (sourceMap.outputLineOffset == 0) {
+				return outputPosition;
+			}
+			return new Position(outputPosition.getLine() + sourceMap.outputLineOffset, outputPosition.getColumn());
 		}
 
 		public final void setOutputPosition(Position position) {
-			this.outputPosition = position;
+			this.outputPosition = new Position(position.getLine() - sourceMap.outputLineOffset, position.getColumn());
+			sourceMap.index = null;
 		}
 
 		@Override
@@ -70,11 +78,73 @@ public class SourceMap {
 		}
 	}
 
+	/**
+	 * A compact index of the entries, sorted by output positions (not shifted).
+	 */
+	private static final class Index {
+		private final int[] outputLines;
+		private final int[] outputColumns;
+		private final Position[] inputPositions;
+		private final int maxOutputLine;
+
+		private Index(Collection<Entry> entries) {
+			Entry[] sortedEntries = entries.toArray(new Entry[entries.size()]);
+			// stable sort: entries with the same output position keep the
+			// input order
+			Arrays.sort(sortedEntries, (e1, e2) -> e1.outputPosition.compareTo(e2.outputPosition));
+			outputLines = new int[sortedEntries.length];
+			outputColumns = new int[sortedEntries.length];
+			inputPositions = new Position[sortedEntries.length];
+			for (int i = 0; i < sortedEntries.length; i++) {
+				outputLines[i] = sortedEntries[i].outputPosition.getLine();
+				outputColumns[i] = sortedEntries[i].outputPosition.getColumn();
+				inputPositions[i] = sortedEntries[i].inputPosition;
+			}
+			maxOutputLine = sortedEntries.length == 0 ? 0 : outputLines[sortedEntries.length - 1];
+		}
+
+		/**
+		 * Returns the first index in [from, to[ whose value is greater or
+		 * equal to the given key (to if none).
+		 */
+		private static int lowerBound(int[] values, int from, int to, int key) {
+			while (from < to) {
+				int middle = (from + to) >>> 1;
+				if (values[middle] < key) {
+					from = middle + 1;
+				} else {
+					to = middle;
+				}
+			}
+			return from;
+		}
+
+		/**
+		 * Returns the input position of the entry at the given output
+		 * position, or of the closest entry before (null if the index is
+		 * empty).
+		 */
+		private Position find(int outputLine, int outputColumn) {
+			if (inputPositions.length == 0) {
+				return null;
+			}
+			int start = lowerBound(outputLines, 0, outputLines.length, outputLine);
+			if (start == outputLines.length || outputLines[start] != outputLine) {
+				// no entry on that line: take the closest entry before
+				return inputPositions[start == 0 ? 0 : start - 1];
+			}
+			int end = lowerBound(outputLines, start, outputLines.length, outputLine + 1);
+			int i = lowerBound(outputColumns, start, end, outputColumn);
+			return inputPositions[i == end ? end - 1 : i];
+		}
+	}
+
 	private SortedSet<Entry> entries = new TreeSet<>();
 	private List<Entry> insertionOrderEntries = new ArrayList<>();
 
 	private int minOutputLine = 0;
-	private int maxOutputLine = 0;
+	private int outputLineOffset = 0;
+	private Index index;
 
 	/**
 	 * Adds an entry to the source map (entry must be added in order).
@@ -86,13 +156,24 @@ public class SourceMap {
 	 * @return the added entry (null if the entry cannot be added)
 	 */
 	public final Entry addEntry(Position inputPosition, Position outputPosition) {
-		Entry entry = new Entry(inputPosition, outputPosition);
+		Entry entry = new Entry(this, inputPosition,
+				outputLineOffset == 0 ? outputPosition
+						: new Position(outputPosition.getLine() - outputLineOffset, outputPosition.getColumn()));
 		entries.add(entry);
 		insertionOrderEntries.add(entry);
-		maxOutputLine = Math.max(maxOutputLine, outputPosition.getLine());
+		index = null;
 		return entry;
 	}
 
+	private Index getIndex() {
+		Index index = this.index;
+		if (index == null) {
+			index = new Index(entries);
+			this.index = index;
+		}
+		return index;
+	}
+
 	/**
 	 * Finds the input position from an output position.
 	 * 
@@ -105,13 +186,16 @@ public class SourceMap {
 	}
 
 	/**
-	 * Finds the input position from an output position.
+	 * Finds the input position from an output position. The first lookup
+	 * builds an index of the entries sorted by output positions, so that
+	 * lookups are done with a binary search.
 	 * 
 	 * @param outputLine
 	 *            a line in the output source file
 	 * @param outputColumn
 	 *            a column in the output source file
-	 * @return the mapped position in the input source file
+	 * @return the mapped position in the input source file (null if the
+	 *         source map is empty or if no entry maps the given position)
 	 */
 	public final Position findInputPosition(int outputLine, int outputColumn) {
 		if (entries.isEmpty()) {
@@ -120,32 +204,28 @@ public class SourceMap {
 		if (outputLine < minOutputLine) {
 			return null;
 		}
-		if (outputLine > maxOutputLine) {
+		Index index = getIndex();
+		if (outputLine - outputLineOffset > index.maxOutputLine) {
 			return null;
 		}
-		if (entries != null) {
-			Entry[] e = entries.toArray(new Entry[0]);
-			for (int i = 0; i < entries.size(); i++) {
-				if (i == e.length - 1 || (e[i].getOutputPosition().getLine() == outputLine || e[i + 1].getOutputPosition().getLine() > outputLine)) {
-					while (i + 1 < e.length && e[i + 1].getOutputPosition().getLine() == outputLine && e[i].getOutputPosition().getColumn() < outputColumn) {
-						i++;
-					}
-					return e[i].getInputPosition();
-				}
-			}
-		}
-		return null;
+		return index.find(outputLine - outputLineOffset, outputColumn);
 	}
 
 	/**
-	 * Shifts the ouput positions by the given line offset.
+	 * Shifts the ouput positions by the given line offset (entries are not
+	 * modified, the offset is applied when reading the output positions).
 	 */
 	public final void shiftOutputPositions(int lineOffset) {
-		for (Entry entry : entries) {
-			entry.setOutputPosition(new Position(entry.getOutputPosition().getLine() + lineOffset, entry.getOutputPosition().getColumn()));
-		}
+		outputLineOffset += lineOffset;
 		minOutputLine += lineOffset;
-		maxOutputLine += lineOffset;
+	}
+
+	/**
+	 * Gets the line offset applied to the output positions (see
+	 * {@link #shiftOutputPositions(int)}).
+	 */
+	public final int getOutputLineOffset() {
+		return outputLineOffset;
 	}
 
 	@Override
@@ -170,10 +250,7 @@ public class SourceMap {
 		}
 		Entry e = insertionOrderEntries.remove(insertionOrderEntries.size() - 1);
 		entries.remove(e);
-		maxOutputLine = 0;
-		for (Entry entry : entries) {
-			maxOutputLine = Math.max(maxOutputLine, entry.getOutputPosition().getLine());
-		}
+		index = null;
 	}
 
 }
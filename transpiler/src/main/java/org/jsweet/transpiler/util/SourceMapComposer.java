@@ -0,0 +1,116 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.transpiler.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jsweet.transpiler.SourceFile;
+
+import com.google.debugging.sourcemap.FilePosition;
+import com.google.debugging.sourcemap.SourceMapConsumerV3;
+import com.google.debugging.sourcemap.SourceMapFormat;
+import com.google.debugging.sourcemap.SourceMapGeneratorFactory;
+import com.google.debugging.sourcemap.SourceMapGeneratorV3;
+import com.google.debugging.sourcemap.SourceMapParseException;
+
+/**
+ * Composes the Java-to-TypeScript source maps (as filled by the printers) with
+ * a TypeScript-to-JavaScript source map (as generated by tsc), in order to
+ * generate a Java-to-JavaScript source map.
+ *
+ * <p>
+ * The composition is done in a single pass over the mapping segments of the
+ * TypeScript-to-JavaScript source map, without reading the generated
+ * JavaScript file, and keeps the column information of both maps.
+ *
+ * @author agent
+ */
+public class SourceMapComposer {
+
+	private final Path javaSourcePath;
+	private final Collection<SourceFile> sourceFiles;
+	private final Map<File, String> javaSourceNames = new HashMap<>();
+
+	/**
+	 * Creates a new composer.
+	 *
+	 * @param javaSourcePath
+	 *            the (canonical) path the Java source names are relative to
+	 * @param sourceFiles
+	 *            the source files that were generated in the TypeScript file
+	 *            of the composed map (several files in bundle mode)
+	 */
+	public SourceMapComposer(Path javaSourcePath, Collection<SourceFile> sourceFiles) {
+		this.javaSourcePath = javaSourcePath;
+		this.sourceFiles = sourceFiles;
+	}
+
+	/**
+	 * Composes the given TypeScript-to-JavaScript source map with the source
+	 * maps of the source files.
+	 *
+	 * @param tsToJsSourceMap
+	 *            the contents of the source map generated by tsc
+	 * @param sourceRoot
+	 *            the source root of the generated map
+	 * @return a generator that holds the Java-to-JavaScript mappings
+	 */
+	public SourceMapGeneratorV3 compose(String tsToJsSourceMap, String sourceRoot) throws SourceMapParseException {
+		SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+		consumer.parse(tsToJsSourceMap);
+		SourceMapGeneratorV3 generator = (SourceMapGeneratorV3) SourceMapGeneratorFactory
+				.getInstance(SourceMapFormat.V3);
+		generator.setSourceRoot(sourceRoot);
+		consumer.visitMappings((sourceName, symbolName, tsPosition, jsStartPosition, jsEndPosition) -> {
+			// file positions are 0-based, TypeScript positions in source maps
+			// are 1-based for lines and 0-based for columns
+			for (SourceFile sourceFile : sourceFiles) {
+				if (sourceFile.getSourceMap() == null) {
+					continue;
+				}
+				Position javaPosition = sourceFile.getSourceMap().findInputPosition(tsPosition.getLine() + 1,
+						tsPosition.getColumn());
+				if (javaPosition != null) {
+					generator.addMapping(getJavaSourceName(sourceFile.getJavaFile()), null,
+							new FilePosition(javaPosition.getLine() - 1, Math.max(0, javaPosition.getColumn() - 1)),
+							jsStartPosition, jsEndPosition);
+					break;
+				}
+			}
+		});
+		return generator;
+	}
+
+	private String getJavaSourceName(File javaFile) {
+		return javaSourceNames.computeIfAbsent(javaFile, f -> {
+			try {
+				return javaSourcePath.relativize(f.getCanonicalFile().toPath()).toString();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.jsweet.transpiler.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import com.google.gson.Gson;
+
+/**
+ * A long-lived TypeScript compiler, which runs the TypeScript language service
+ * in a node process (see <code>TypeScriptCompilerHost.js</code>).
+ *
+ * <p>
+ * Contrary to running the <code>tsc</code> command, the node process and the
+ * TypeScript compiler are started once, and the parsed files (in particular
+ * the lib and the candies definitions) are kept in memory from one
+ * compilation to another, so that only the modified files are parsed again.
+ *
+ * <p>
+ * The host is driven with the regular <code>tsc</code> command line arguments
+ * and reports the diagnostics in the <code>tsc</code> output format. The
+ * contents of some files can be passed along with the arguments, so that these
+ * files do not need to be written to the disk. The host keeps these contents
+ * between compilations, so that only the added, modified and removed files are
+ * sent to the node process.
+ *
+ * <p>
+ * A compilation can also be transpile-only: each TypeScript file is then
+ * transformed to JavaScript on its own (see <code>ts.transpileModule</code>),
+ * without building a program, nor parsing the definition files, nor type
+ * checking.
+ *
+ * @author agent
+ */
+public class TypeScriptCompilerHost {
+
+	private static final Logger logger = Logger.getLogger(TypeScriptCompilerHost.class);
+
+	private static final String SCRIPT_NAME = TypeScriptCompilerHost.class.getSimpleName() + ".js";
+
+	private static final Gson gson = new Gson();
+
+	private static class Response {
+		String type;
+		String text;
+		int errors;
+	}
+
+	private File workingDir;
+	private Process process;
+	private Writer requests;
+	private BufferedReader responses;
+	private Map<String, String> sentFiles = new HashMap<>();
+
+	/**
+	 * Creates a compiler host (the node process is started on the first
+	 * compilation).
+	 *
+	 * @param workingDir
+	 *            the directory where the host script is extracted
+	 */
+	public TypeScriptCompilerHost(File workingDir) {
+		this.workingDir = workingDir;
+	}
+
+	private void start() throws IOException {
+		File script = new File(workingDir, SCRIPT_NAME);
+		try (InputStream in = TypeScriptCompilerHost.class.getResourceAsStream(SCRIPT_NAME)) {
+			FileUtils.copyInputStreamToFile(in, script);
+		}
+		ProcessUtil.initNode();
+		ProcessBuilder processBuilder = new ProcessBuilder(ProcessUtil.NODE_COMMAND, script.getAbsolutePath());
+		// the typescript module is installed in the JSweet npm directory
+		Map<String, String> environment = processBuilder.environment();
+		environment.put("NODE_PATH", new File(ProcessUtil.NPM_DIR, "lib/node_modules").getPath() + File.pathSeparator
+				+ new File(ProcessUtil.NPM_DIR, "node_modules").getPath());
+		if (!StringUtils.isBlank(ProcessUtil.EXTRA_PATH)) {
+			environment.put("PATH", environment.get("PATH") + File.pathSeparator + ProcessUtil.EXTRA_PATH);
+		}
+		processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		logger.info("starting TypeScript compiler host");
+		process = processBuilder.start();
+		sentFiles.clear();
+		requests = new OutputStreamWriter(process.getOutputStream(), "UTF-8");
+		responses = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+	}
+
+	/**
+	 * Tells if the node process of this host is running.
+	 */
+	public synchronized boolean isAlive() {
+		return process != null && process.isAlive();
+	}
+
+	/**
+	 * Compiles TypeScript files. This method blocks until the compilation
+	 * completes.
+	 *
+	 * @param directory
+	 *            the directory the relative paths of the arguments are
+	 *            relative to
+	 * @param args
+	 *            the <code>tsc</code> command line arguments
+	 * @param inMemoryFiles
+	 *            the contents of the files that are not written to the disk,
+	 *            indexed by absolute paths (can be null) - the files that were
+	 *            passed to the previous compilation and that are not in this
+	 *            map anymore are dropped by the host
+	 * @param transpileOnly
+	 *            true to only transpile the TypeScript files (one by one, with
+	 *            syntax diagnostics only), false for a type-checked compilation
+	 * @param diagnosticConsumer
+	 *            consumes the diagnostics as soon as they are reported (in the
+	 *            <code>tsc</code> output format)
+	 * @return the number of reported errors
+	 */
+	public synchronized int compile(File directory, List<String> args,
+			Map<String, ? extends CharSequence> inMemoryFiles, boolean transpileOnly,
+			Consumer<String> diagnosticConsumer) throws IOException {
+		if (!isAlive()) {
+			start();
+		}
+		Map<String, Object> request = new HashMap<>();
+		request.put("directory", directory.getAbsolutePath());
+		request.put("args", args);
+		request.put("transpileOnly", transpileOnly);
+		Map<String, String> files = new HashMap<>();
+		if (inMemoryFiles != null) {
+			for (Map.Entry<String, ? extends CharSequence> file : inMemoryFiles.entrySet()) {
+				String contents = file.getValue().toString();
+				if (!contents.equals(sentFiles.get(file.getKey()))) {
+					files.put(file.getKey(), contents);
+				}
+			}
+		}
+		List<String> removedFiles = new ArrayList<>();
+		for (String fileName : sentFiles.keySet()) {
+			if (inMemoryFiles == null || !inMemoryFiles.containsKey(fileName)) {
+				removedFiles.add(fileName);
+			}
+		}
+		sentFiles.keySet().removeAll(removedFiles);
+		sentFiles.putAll(files);
+		logger.debug("sending " + files.size() + " in-memory file(s), removing " + removedFiles.size());
+		request.put("files", files);
+		request.put("removedFiles", removedFiles);
+		try {
+			requests.write(gson.toJson(request));
+			requests.write("\n");
+			requests.flush();
+			String line;
+			while ((line = responses.readLine()) != null) {
+				if (!line.startsWith("{")) {
+					logger.info(line);
+					continue;
+				}
+				Response response = gson.fromJson(line, Response.class);
+				if ("completed".equals(response.type)) {
+					return response.errors;
+				}
+				diagnosticConsumer.accept(response.text);
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+		close();
+		throw new IOException("TypeScript compiler host terminated unexpectedly");
+	}
+
+	/**
+	 * Stops the node process of this host.
+	 */
+	public synchronized void close() {
+		if (process != null) {
+			logger.info("stopping TypeScript compiler host");
+			process.destroy();
+			process = null;
+		}
+	}
+
+}
@@ -0,0 +1,254 @@
+/*
+ * JSweet transpiler - http://www.jsweet.org
+ * Copyright (C) 2015 CINCHEO SAS <renaud.pawlak@cincheo.fr>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+// The long-lived TypeScript compiler host used by
+// org.jsweet.transpiler.util.TypeScriptCompilerHost.
+//
+// Requests are read from stdin (one JSON object per line):
+//   {"directory": "...", "args": ["tsc", "command", "line", "arguments"],
+//    "files": {"/absolute/path/to/A.ts": "in-memory contents", ...},
+//    "removedFiles": ["/absolute/path/to/B.ts", ...],
+//    "transpileOnly": false}
+// Responses are written to stdout (one JSON object per line):
+//   {"type": "diagnostic", "text": "file(line,column): error TSxxxx: message"}
+//   {"type": "completed", "errors": n}
+//
+// The language service and its document registry keep the parsed files
+// (including the lib and candies definitions) from one request to another.
+// A file is parsed again only when its modification time (or its in-memory
+// contents) changes. In-memory files are never read from the disk. They are
+// kept from one request to another: a request only carries the added and
+// modified files, and the files to be dropped.
+//
+// In transpile-only mode, each TypeScript file of the command line is
+// transformed on its own with ts.transpileModule (no program is built, the
+// definition files are ignored and only syntax errors are reported). With
+// --outFile (or --out), the outputs are concatenated in the command line
+// order, and source maps are not supported.
+//
+// Diagnostics are sent as soon as they are computed (file by file), so that
+// the client can report them while the rest of the program is checked.
+
+var fs = require('fs');
+var path = require('path');
+var readline = require('readline');
+var ts = require('typescript');
+
+var currentDirectory = process.cwd();
+var currentFileNames = [];
+var currentOptions = {};
+var versions = {};
+var inMemoryFiles = {};
+
+function isInMemory(fileName) {
+	return Object.prototype.hasOwnProperty.call(inMemoryFiles, fileName);
+}
+
+function updateVersion(fileName) {
+	var stamp;
+	if (isInMemory(fileName)) {
+		stamp = inMemoryFiles[fileName];
+	} else {
+		try {
+			stamp = fs.statSync(fileName).mtime.getTime();
+		} catch (e) {
+			stamp = -1;
+		}
+	}
+	var version = versions[fileName];
+	if (!version) {
+		versions[fileName] = { version: 0, stamp: stamp };
+	} else if (version.stamp !== stamp) {
+		version.version++;
+		version.stamp = stamp;
+	}
+}
+
+function fileExists(fileName) {
+	return isInMemory(fileName) || ts.sys.fileExists(fileName);
+}
+
+function readFile(fileName, encoding) {
+	return isInMemory(fileName) ? inMemoryFiles[fileName] : ts.sys.readFile(fileName, encoding);
+}
+
+var service = ts.createLanguageService({
+	getScriptFileNames: function() {
+		return currentFileNames;
+	},
+	getScriptVersion: function(fileName) {
+		if (!versions[fileName]) {
+			updateVersion(fileName);
+		}
+		return String(versions[fileName].version);
+	},
+	getScriptSnapshot: function(fileName) {
+		if (!fileExists(fileName)) {
+			return undefined;
+		}
+		return ts.ScriptSnapshot.fromString(readFile(fileName));
+	},
+	getCurrentDirectory: function() {
+		return currentDirectory;
+	},
+	getCompilationSettings: function() {
+		return currentOptions;
+	},
+	getDefaultLibFileName: function(options) {
+		return ts.getDefaultLibFilePath(options);
+	},
+	fileExists: fileExists,
+	readFile: readFile,
+	readDirectory: ts.sys.readDirectory
+}, ts.createDocumentRegistry());
+
+function send(response) {
+	process.stdout.write(JSON.stringify(response) + '\n');
+}
+
+function format(diagnostic) {
+	var message = ts.flattenDiagnosticMessageText(diagnostic.messageText, '\n');
+	var category = ts.DiagnosticCategory[diagnostic.category].toLowerCase();
+	var text = category + ' TS' + diagnostic.code + ': ' + message;
+	if (diagnostic.file) {
+		var position = diagnostic.file.getLineAndCharacterOfPosition(diagnostic.start);
+		text = path.relative(currentDirectory, diagnostic.file.fileName) + '(' + (position.line + 1) + ','
+				+ (position.character + 1) + '): ' + text;
+	}
+	return text;
+}
+
+function ensureDirectory(directory) {
+	if (!ts.sys.directoryExists(directory)) {
+		ensureDirectory(path.dirname(directory));
+		ts.sys.createDirectory(directory);
+	}
+}
+
+function writeFile(fileName, data) {
+	ensureDirectory(path.dirname(fileName));
+	ts.sys.writeFile(fileName, data);
+}
+
+var errors = 0;
+
+function report(diagnostics) {
+	diagnostics.forEach(function(diagnostic) {
+		if (diagnostic.category === ts.DiagnosticCategory.Error) {
+			errors++;
+		}
+		send({ type: 'diagnostic', text: format(diagnostic) });
+	});
+}
+
+function transpile(fileNames, options) {
+	var outFile = options.outFile || options.out;
+	if (outFile && options.sourceMap) {
+		report([ {
+			category: ts.DiagnosticCategory.Error,
+			code: 0,
+			messageText: 'source maps cannot be generated with an output file in transpile-only mode'
+		} ]);
+		return;
+	}
+	var outputs = [];
+	fileNames.forEach(function(fileName) {
+		if (/\.d\.ts$/.test(fileName)) {
+			return;
+		}
+		var output = ts.transpileModule(readFile(fileName), {
+			compilerOptions: options,
+			fileName: fileName,
+			reportDiagnostics: true
+		});
+		report(output.diagnostics);
+		if (outFile) {
+			outputs.push(output.outputText);
+			return;
+		}
+		var outputFileName = fileName;
+		if (options.outDir) {
+			outputFileName = path.resolve(currentDirectory, options.outDir,
+					path.relative(path.resolve(currentDirectory, options.rootDir || '.'), fileName));
+		}
+		outputFileName = outputFileName.replace(/\.tsx?$/, '.js');
+		writeFile(outputFileName, output.outputText);
+		if (output.sourceMapText) {
+			writeFile(outputFileName + '.map', output.sourceMapText);
+		}
+	});
+	if (outFile) {
+		writeFile(path.resolve(currentDirectory, outFile), outputs.join('\n'));
+	}
+}
+
+function compile(request) {
+	currentDirectory = request.directory;
+	(request.removedFiles || []).forEach(function(fileName) {
+		delete inMemoryFiles[ts.normalizePath(path.resolve(fileName))];
+	});
+	Object.keys(request.files || {}).forEach(function(fileName) {
+		inMemoryFiles[ts.normalizePath(path.resolve(fileName))] = request.files[fileName];
+	});
+	var commandLine = ts.parseCommandLine(request.args);
+	currentOptions = commandLine.options;
+	currentFileNames = commandLine.fileNames.map(function(fileName) {
+		return ts.normalizePath(path.resolve(currentDirectory, fileName));
+	});
+	errors = 0;
+	report(commandLine.errors);
+	if (request.transpileOnly) {
+		transpile(currentFileNames, currentOptions);
+	} else {
+		Object.keys(versions).forEach(updateVersion);
+		currentFileNames.forEach(updateVersion);
+
+		var program = service.getProgram();
+		// same diagnostics as ts.getPreEmitDiagnostics, but reported file by
+		// file instead of once the whole program is checked
+		report(program.getOptionsDiagnostics());
+		report(program.getGlobalDiagnostics());
+		program.getSourceFiles().forEach(function(sourceFile) {
+			report(program.getSyntacticDiagnostics(sourceFile));
+			report(program.getSemanticDiagnostics(sourceFile));
+			if (currentOptions.declaration) {
+				report(program.getDeclarationDiagnostics(sourceFile));
+			}
+		});
+		var emitResult = program.emit(undefined, function(fileName, data, writeByteOrderMark) {
+			ts.sys.writeFile(fileName, data, writeByteOrderMark);
+		});
+		report(emitResult.diagnostics);
+	}
+	send({ type: 'completed', errors: errors });
+}
+
+readline.createInterface({ input: process.stdin, terminal: false }).on('line', function(line) {
+	if (!line.trim()) {
+		return;
+	}
+	try {
+		compile(JSON.parse(line));
+	} catch (e) {
+		send({ type: 'diagnostic', text: 'error TS0: ' + e });
+		send({ type: 'completed', errors: 1 });
+	}
+}).on('close', function() {
+	process.exit(0);
+});
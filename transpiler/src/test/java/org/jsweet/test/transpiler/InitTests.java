@@ -46,6 +46,7 @@ import source.init.OptionalFieldError;
 import source.init.ParentInstanceAccess;
 import source.init.StaticFieldWithInnerClass;
 import source.init.StaticInitializer;
+import source.init.TypedArrays;
 import source.init.UntypedObject;
 import source.init.UntypedObjectWrongUses;
 
@@ -193,6 +194,27 @@ public class InitTests extends AbstractTest {
 		}, getSourceFile(ArrayNew.class));
 	}
 
+	@Test
+	public void testTypedArrays() {
+		try {
+			transpiler.setUseTypedArrays(true);
+			eval(ModuleKind.none, (logHandler, result) -> {
+				logHandler.assertNoProblems();
+				assertEquals("0,5,0", result.get("ints"));
+				assertEquals(4, result.<Number> get("doubles").intValue());
+				assertEquals("2,3,7", result.get("matrix"));
+				assertEquals(true, result.get("instanceof"));
+				assertEquals(5, result.<Number> get("sum").intValue());
+				assertEquals(6, result.<Number> get("varargs").intValue());
+				assertEquals(5, result.<Number> get("varargsArray").intValue());
+				assertEquals(true, result.get("varargsTyped"));
+				assertEquals(4, result.<Number> get("varargsConcat").intValue());
+			}, getSourceFile(TypedArrays.class));
+		} finally {
+			transpiler.setUseTypedArrays(false);
+		}
+	}
+
 	@Test
 	public void testUntypedObject() {
 		eval(ModuleKind.none, (logHandler, result) -> {
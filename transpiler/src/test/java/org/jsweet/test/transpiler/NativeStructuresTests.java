@@ -1,8 +1,16 @@
 package org.jsweet.test.transpiler;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.jsweet.transpiler.EcmaScriptComplianceLevel;
 import org.jsweet.transpiler.JSweetFactory;
+import org.jsweet.transpiler.JSweetProblem;
+import org.jsweet.transpiler.ModuleKind;
+import org.jsweet.transpiler.SourceFile;
 import org.jsweet.transpiler.extension.RemoveJavaDependenciesFactory;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -15,6 +23,7 @@ import source.nativestructures.Exceptions;
 import source.nativestructures.Input;
 import source.nativestructures.Maps;
 import source.nativestructures.NativeArrays;
+import source.nativestructures.NativeCollections;
 import source.nativestructures.NativeStringBuilder;
 import source.nativestructures.NativeSystem;
 import source.nativestructures.Numbers;
@@ -22,6 +31,7 @@ import source.nativestructures.ObjectMaps;
 import source.nativestructures.OverloadWithNative;
 import source.nativestructures.Reflect;
 import source.nativestructures.Strings;
+import source.nativestructures.UnsupportedNativeCollectionMethods;
 import source.nativestructures.WeakReferences;
 
 public class NativeStructuresTests extends AbstractTest {
@@ -48,10 +58,30 @@ public class NativeStructuresTests extends AbstractTest {
 
 	@Test
 	public void testStringBuilder() {
-		eval((logHandler, result) -> {
+		SourceFile file = getSourceFile(NativeStringBuilder.class);
+		eval(ModuleKind.none, (logHandler, result) -> {
+			Assert.assertEquals("There should be no errors", 0, logHandler.reportedProblems.size());
+			assertEquals("a,abc,a,abc,ab,X,abc_def,Abcdef6,e3,feA", result.get("trace"));
+			// the string builder prototype is declared once per global file
+			assertDeclaredOnce(file, "var __jsweet_newStringBuilder");
+		}, file);
+		eval(ModuleKind.commonjs, (logHandler, result) -> {
 			Assert.assertEquals("There should be no errors", 0, logHandler.reportedProblems.size());
-			assertEquals("a,abc,a,abc,ab,X", result.get("trace"));
-		}, getSourceFile(NativeStringBuilder.class));
+			assertEquals("a,abc,a,abc,ab,X,abc_def,Abcdef6,e3,feA", result.get("trace"));
+			// the string builder prototype is declared once per module
+			assertDeclaredOnce(file, "function __jsweet_newStringBuilder(");
+		}, file);
+	}
+
+	private void assertDeclaredOnce(SourceFile file, String declaration) {
+		try {
+			String generated = FileUtils.readFileToString(file.getTsFile());
+			assertTrue(generated.contains(declaration));
+			assertEquals(generated.indexOf(declaration), generated.lastIndexOf(declaration));
+			assertEquals(generated.indexOf("deleteCharAt: function"), generated.lastIndexOf("deleteCharAt: function"));
+		} catch (IOException e) {
+			Assert.fail(e.getMessage());
+		}
 	}
 
 	@Test
@@ -94,6 +124,37 @@ public class NativeStructuresTests extends AbstractTest {
 		}, getSourceFile(ObjectMaps.class));
 	}
 
+	@Test
+	public void testNativeCollections() {
+		transpiler.setUseNativeCollections(true);
+		transpiler.setEcmaTargetVersion(EcmaScriptComplianceLevel.ES6);
+		try {
+			eval((logHandler, result) -> {
+				Assert.assertEquals("There should be no errors", 0, logHandler.reportedProblems.size());
+				assertEquals(
+						"true,false,2,true,true,1,b,false,true,1,true,true,2,a,b,1,2,1,1,true,2,true,40,true,2,b3,c4,3,o,3,3,true,2,1,b",
+						result.get("trace"));
+			}, getSourceFile(NativeCollections.class));
+		} finally {
+			transpiler.setUseNativeCollections(false);
+			transpiler.setEcmaTargetVersion(EcmaScriptComplianceLevel.ES5);
+		}
+	}
+
+	@Test
+	public void testUnsupportedNativeCollectionMethods() {
+		transpiler.setUseNativeCollections(true);
+		transpiler.setEcmaTargetVersion(EcmaScriptComplianceLevel.ES6);
+		try {
+			transpile(logHandler -> {
+				logHandler.assertReportedProblems(JSweetProblem.JDK_METHOD, JSweetProblem.JDK_METHOD);
+			}, getSourceFile(UnsupportedNativeCollectionMethods.class));
+		} finally {
+			transpiler.setUseNativeCollections(false);
+			transpiler.setEcmaTargetVersion(EcmaScriptComplianceLevel.ES5);
+		}
+	}
+
 	@Test
 	public void testNativeArrays() {
 		eval((logHandler, result) -> {
@@ -75,6 +75,23 @@ public class OverloadTests extends AbstractTest {
 		}, getSourceFile(WrongOverloads.class));
 	}
 
+	@Test
+	public void testStaticOverloadDispatch() {
+		try {
+			transpiler.setStaticOverloadDispatch(true);
+			eval((logHandler, r) -> {
+				logHandler.assertNoProblems();
+				assertEquals("1,5,2,3,2,4,test5,tutu,2,4,1,tutu,6", r.get("trace"));
+			}, getSourceFile(WrongOverloads.class));
+			eval((logHandler, r) -> {
+				logHandler.assertNoProblems();
+				assertEquals("0-88,0-99,1-s1,m2,2-99-s2,3-true,m1,4,5-5,5-6,test2,test1", r.get("trace"));
+			}, getSourceFile(WrongOverloadWithInheritance.class));
+		} finally {
+			transpiler.setStaticOverloadDispatch(false);
+		}
+	}
+
 	@Test
 	public void testWrongOverloadsWithDefaultMethods() {
 		eval((logHandler, r) -> {
@@ -203,7 +203,8 @@ public class StructuralTests extends AbstractTest {
 	public void testInstanceofForInterfaces() {
 		eval((logHandler, r) -> {
 			logHandler.assertNoProblems();
-			Assert.assertEquals("1,2,1,3,4,5,6", r.get("trace"));
+			Assert.assertEquals("1,2,1,3,4,5,6,1,1,7", r.get("trace"));
+			Assert.assertEquals(1, r.<Number> get("evaluations").intValue());
 		}, getSourceFile(InstanceofForInterfaces.class));
 	}
 
@@ -24,6 +24,7 @@ import static org.junit.Assert.fail;
 
 import org.apache.commons.io.FileUtils;
 import org.jsweet.transpiler.JSweetProblem;
+import org.jsweet.transpiler.ModuleKind;
 import org.jsweet.transpiler.SourceFile;
 import org.jsweet.transpiler.util.EvaluationResult;
 import org.junit.Assert;
@@ -45,6 +46,7 @@ import source.syntax.Literals;
 import source.syntax.Looping;
 import source.syntax.QualifiedNames;
 import source.syntax.References;
+import source.syntax.RuntimeHelpers;
 import source.syntax.SpecialFunctions;
 import source.syntax.StatementsWithNoBlocks;
 import source.syntax.SuperInvocation;
@@ -223,6 +225,33 @@ public class SyntaxTests extends AbstractTest {
 		}, getSourceFile(Casts.class));
 	}
 
+	@Test
+	public void testRuntimeHelpers() {
+		SourceFile file = getSourceFile(RuntimeHelpers.class);
+		try {
+			transpiler.setUseRuntimeHelpers(true);
+			eval(ModuleKind.commonjs, (logHandler, r) -> {
+				logHandler.assertNoProblems();
+				assertEquals(1, r.<Number> get("charCode").intValue());
+				assertEquals(true, r.get("compare"));
+				assertEquals("12,0", r.get("numbers"));
+				assertEquals("2,3", r.get("strings"));
+				try {
+					String generated = FileUtils.readFileToString(file.getTsFile());
+					// helpers are declared once per module
+					assertTrue(generated.contains("function __jsweet_charCode("));
+					assertEquals(generated.indexOf("function __jsweet_charCode("),
+							generated.lastIndexOf("function __jsweet_charCode("));
+					assertTrue(generated.contains("__jsweet_allocateArray(["));
+				} catch (Exception e) {
+					fail(e.getMessage());
+				}
+			}, file);
+		} finally {
+			transpiler.setUseRuntimeHelpers(false);
+		}
+	}
+
 	@Test
 	public void testSuperInvocation() {
 		transpile(logHandler -> logHandler.assertNoProblems(), getSourceFile(SuperInvocation.class));
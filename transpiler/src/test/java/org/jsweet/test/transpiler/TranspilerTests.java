@@ -18,30 +18,51 @@ package org.jsweet.test.transpiler;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jsweet.JSweetCommandLineLauncher;
+import org.jsweet.JSweetDaemon;
+import org.jsweet.transpiler.EcmaScriptComplianceLevel;
 import org.jsweet.transpiler.JSweetContext;
 import org.jsweet.transpiler.JSweetFactory;
 import org.jsweet.transpiler.JSweetTranspiler;
+import org.jsweet.transpiler.JsOptimizationLevel;
 import org.jsweet.transpiler.ModuleKind;
 import org.jsweet.transpiler.SourceFile;
+import org.jsweet.transpiler.SourceFileIndex;
 import org.jsweet.transpiler.SourcePosition;
 import org.jsweet.transpiler.extension.AddPrefixToNonPublicMembersAdapter;
 import org.jsweet.transpiler.extension.Java2TypeScriptAdapter;
 import org.jsweet.transpiler.extension.PrinterAdapter;
+import org.jsweet.transpiler.util.ClosureOptimizer;
 import org.jsweet.transpiler.util.ProcessUtil;
+import org.jsweet.transpiler.util.TypeScriptCompilerHost;
 import org.jsweet.transpiler.util.Util;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.google.debugging.sourcemap.FilePosition;
+import com.google.debugging.sourcemap.SourceMapConsumerV3;
+import com.google.debugging.sourcemap.SourceMapFormat;
+import com.google.debugging.sourcemap.SourceMapGeneratorFactory;
+import com.google.debugging.sourcemap.SourceMapGeneratorV3;
+
 import source.blocksgame.Ball;
 import source.blocksgame.BlockElement;
 import source.blocksgame.Factory;
@@ -62,7 +83,11 @@ import source.overload.Overload;
 import source.structural.AbstractClass;
 import source.transpiler.CanvasDrawing;
 import source.transpiler.Extended;
+import source.transpiler.OptimizedObjectTypes;
 import source.transpiler.PrefixExtension;
+import source.transpiler.PrintedTypes;
+import source.transpiler.TreeShaking;
+import source.transpiler.TreeShakingUnused;
 import source.transpiler.p.A;
 import source.transpiler.p.B;
 
@@ -311,6 +336,9 @@ public class TranspilerTests extends AbstractTest {
 		logger.info("org: " + javaPosition + " --> " + tsPosition);
 		assertEquals(getPosition(sourceFile.getJavaFile(), javaCodeSnippet).getStartLine(),
 				javaPosition.getStartLine());
+		SourcePosition indexedJavaPosition = new SourceFileIndex(sourceFiles).findOriginPosition(tsPosition);
+		assertEquals(javaPosition.getFile(), indexedJavaPosition.getFile());
+		assertEquals(javaPosition.getStartLine(), indexedJavaPosition.getStartLine());
 	}
 
 	private SourcePosition getPosition(File f, String codeSnippet) {
@@ -363,6 +391,299 @@ public class TranspilerTests extends AbstractTest {
 		createTranspiler(new JSweetFactory());
 	}
 
+	@Test
+	public void testDaemonProtocol() throws Exception {
+		File source = getSourceFile(CanvasDrawing.class).getJavaFile();
+		PrintStream stdout = System.out;
+		PrintStream stderr = System.err;
+		ByteArrayOutputStream protocol = new ByteArrayOutputStream();
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(protocol, true));
+		System.setErr(new PrintStream(console, true));
+		try {
+			PrintStream protocolOut = JSweetDaemon.detachStandardOutput();
+			String requests = "transpile " + source.getPath() + "\nfoo\nclean\nexit\ntranspile\n";
+			new JSweetDaemon(transpiler, () -> Arrays.asList(source))
+					.run(new ByteArrayInputStream(requests.getBytes()), protocolOut);
+		} finally {
+			System.setOut(stdout);
+			System.setErr(stderr);
+		}
+		String[] answers = protocol.toString().split("\\r?\\n");
+		assertEquals("wrong answers: " + protocol, 4, answers.length);
+		assertEquals("ready", answers[0]);
+		assertTrue(answers[1], answers[1].matches("done 0 0 \\d+"));
+		assertEquals("error unknown request: foo", answers[2]);
+		assertEquals("done 0 0 0", answers[3]);
+		assertTrue("logs should have been moved to the standard error", console.toString().contains("scanning"));
+	}
+
+	@Test
+	public void testTsCompilerHostDiagnostics() throws Exception {
+		File dir = new File(transpiler.getWorkingDirectory(), "tsHost");
+		FileUtils.deleteQuietly(dir);
+		FileUtils.write(new File(dir, "a.ts"), "var a: number = 'a';\n");
+		FileUtils.write(new File(dir, "b.ts"), "var b: string = 1;\nvar c: string = 2;\n");
+		TypeScriptCompilerHost host = new TypeScriptCompilerHost(transpiler.getWorkingDirectory());
+		try {
+			LinkedList<String> diagnostics = new LinkedList<>();
+			int errorCount = host.compile(dir, Arrays.asList("--noEmit", "a.ts", "b.ts"), null, false,
+					diagnostics::add);
+			// diagnostics are forwarded one by one, in the order the files are
+			// checked
+			assertEquals(diagnostics.toString(), 3, errorCount);
+			assertEquals(diagnostics.toString(), 3, diagnostics.size());
+			assertTrue(diagnostics.get(0), diagnostics.get(0).startsWith("a.ts(1,"));
+			assertTrue(diagnostics.get(1), diagnostics.get(1).startsWith("b.ts(1,"));
+			assertTrue(diagnostics.get(2), diagnostics.get(2).startsWith("b.ts(2,"));
+
+			diagnostics.clear();
+			FileUtils.write(new File(dir, "b.ts"), "var b: string = ;\n");
+			errorCount = host.compile(dir, Arrays.asList("--outDir", "js", "a.ts", "b.ts"), null, true,
+					diagnostics::add);
+			// transpile-only: syntax errors only
+			assertEquals(diagnostics.toString(), 1, errorCount);
+			assertTrue(diagnostics.get(0), diagnostics.get(0).startsWith("b.ts(1,"));
+			assertTrue(new File(dir, "js/a.js").exists());
+
+			// transpile-only with an output file: the outputs are
+			// concatenated
+			diagnostics.clear();
+			FileUtils.write(new File(dir, "b.ts"), "var b: string = 'b';\n");
+			errorCount = host.compile(dir, Arrays.asList("--outFile", "js/all.js", "a.ts", "b.ts"), null, true,
+					diagnostics::add);
+			assertEquals(diagnostics.toString(), 0, errorCount);
+			String js = FileUtils.readFileToString(new File(dir, "js/all.js"));
+			assertTrue(js, js.contains("var a = 'a';"));
+			assertTrue(js, js.contains("var b = 'b';"));
+			assertTrue(js, js.indexOf("var a") < js.indexOf("var b"));
+			diagnostics.clear();
+			errorCount = host.compile(dir, Arrays.asList("--outFile", "js/all.js", "--sourceMap", "a.ts", "b.ts"),
+					null, true, diagnostics::add);
+			assertEquals(diagnostics.toString(), 1, errorCount);
+
+			Map<String, String> inMemoryFiles = new HashMap<>();
+			inMemoryFiles.put(new File(dir, "c.ts").getAbsolutePath(), "var d: number = 'd';\n");
+			diagnostics.clear();
+			errorCount = host.compile(dir, Arrays.asList("--noEmit", "c.ts"), inMemoryFiles, false,
+					diagnostics::add);
+			assertEquals(diagnostics.toString(), 1, errorCount);
+			assertTrue(diagnostics.get(0), diagnostics.get(0).startsWith("c.ts(1,"));
+			// unchanged in-memory files are not sent again, but are still known
+			// by the host
+			diagnostics.clear();
+			errorCount = host.compile(dir, Arrays.asList("--noEmit", "c.ts"), inMemoryFiles, false,
+					diagnostics::add);
+			assertEquals(diagnostics.toString(), 1, errorCount);
+			assertTrue(diagnostics.get(0), diagnostics.get(0).startsWith("c.ts(1,"));
+			// removed in-memory files are dropped by the host
+			inMemoryFiles.clear();
+			diagnostics.clear();
+			errorCount = host.compile(dir, Arrays.asList("--noEmit", "c.ts"), inMemoryFiles, false,
+					diagnostics::add);
+			assertEquals(diagnostics.toString(), 1, errorCount);
+			assertFalse(diagnostics.get(0), diagnostics.get(0).startsWith("c.ts(1,"));
+			assertTrue(diagnostics.get(0), diagnostics.get(0).contains("c.ts"));
+		} finally {
+			host.close();
+			FileUtils.deleteQuietly(dir);
+		}
+	}
+
+	@Test
+	public void testSkipTypeScriptChecks() {
+		transpiler.setSkipTypeScriptChecks(true);
+		try {
+			eval(ModuleKind.none, (logHandler, result) -> {
+				logHandler.assertNoProblems();
+			}, getSourceFile(Overload.class));
+			eval(ModuleKind.commonjs, (logHandler, result) -> {
+				logHandler.assertNoProblems();
+			}, getSourceFile(Overload.class));
+		} finally {
+			transpiler.setSkipTypeScriptChecks(false);
+		}
+	}
+
+	@Test
+	public void testTreeShaking() {
+		SourceFile f = getSourceFile(TreeShaking.class);
+		transpiler.setBundle(true);
+		transpiler.setTreeShaking(true);
+		try {
+			eval(ModuleKind.none, false, (logHandler, result) -> {
+				logHandler.assertNoProblems();
+				assertEquals("4,shape", result.get("trace"));
+				try {
+					String generatedCode = FileUtils.readFileToString(f.getTsFile());
+					assertTrue(generatedCode.contains("area"));
+					assertFalse(generatedCode.contains("perimeter"));
+					assertFalse(generatedCode.contains("TreeShakingUnused"));
+				} catch (Exception e) {
+					e.printStackTrace();
+					fail(e.getMessage());
+				}
+			}, f, getSourceFile(TreeShakingUnused.class));
+		} finally {
+			transpiler.setTreeShaking(false);
+			transpiler.setBundle(false);
+		}
+	}
+
+	@Test
+	public void testPrintedTypeCache() {
+		SourceFile f = getSourceFile(PrintedTypes.class);
+		transpile(logHandler -> {
+			logHandler.assertNoProblems();
+			JSweetContext context = transpiler.getContext();
+			// Array<String> and String are printed once, then taken from the
+			// cache
+			assertTrue("misses: " + context.getPrintedTypeCacheMissCount(),
+					context.getPrintedTypeCacheMissCount() >= 2);
+			assertTrue("hits: " + context.getPrintedTypeCacheHitCount(),
+					context.getPrintedTypeCacheHitCount() >= 5);
+			try {
+				String generatedCode = FileUtils.readFileToString(f.getTsFile());
+				assertTrue(generatedCode, generatedCode.contains("names : Array<string>"));
+				assertTrue(generatedCode, generatedCode.contains("values : Array<string>"));
+				assertTrue(generatedCode, generatedCode.contains("separator : string"));
+			} catch (Exception e) {
+				fail(e.getMessage());
+			}
+		}, f);
+	}
+
+	@Test
+	public void testJsOptimization() {
+		SourceFile f = getSourceFile(Overload.class);
+		String[] optimizedCode = { null };
+		transpiler.setJsOptimizationLevel(JsOptimizationLevel.simple);
+		try {
+			eval(ModuleKind.none, (logHandler, result) -> {
+				logHandler.assertNoProblems();
+				optimizedCode[0] = readFile(f.getJsFile());
+			}, f);
+			// a file generated again right away (within the resolution of the
+			// file timestamps) is optimized again
+			eval(ModuleKind.none, (logHandler, result) -> {
+				logHandler.assertNoProblems();
+				assertEquals(optimizedCode[0], readFile(f.getJsFile()));
+			}, f);
+		} finally {
+			transpiler.setJsOptimizationLevel(JsOptimizationLevel.none);
+		}
+	}
+
+	private static String readFile(File file) {
+		try {
+			return FileUtils.readFileToString(file);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+			return null;
+		}
+	}
+
+	@Test
+	public void testAdvancedJsOptimization() {
+		SourceFile f = getSourceFile(OptimizedObjectTypes.class);
+		transpiler.setJsOptimizationLevel(JsOptimizationLevel.advanced);
+		transpiler.setBundle(true);
+		try {
+			eval(ModuleKind.none, (logHandler, result) -> {
+				logHandler.assertNoProblems();
+				// the members of the object types are in the externs
+				assertEquals(4, result.<Number> get("sum").intValue());
+				try {
+					String js = FileUtils.readFileToString(f.getJsFile());
+					// the other members are renamed
+					assertFalse(js, js.contains("getCount"));
+				} catch (Exception e) {
+					e.printStackTrace();
+					fail(e.getMessage());
+				}
+			}, f);
+		} finally {
+			transpiler.setBundle(false);
+			transpiler.setJsOptimizationLevel(JsOptimizationLevel.none);
+		}
+	}
+
+	@Test
+	public void testJsOptimizationSourceMap() throws Exception {
+		File dir = new File(transpiler.getWorkingDirectory(), "jsOptimization");
+		FileUtils.deleteQuietly(dir);
+		File jsFile = new File(dir, "a.js");
+		File mapFile = new File(dir, "a.js.map");
+		FileUtils.write(jsFile, "var a = 1;\nfunction f(x) {\n  return x + a;\n}\nconsole.log(f(2));\n"
+				+ "//# sourceMappingURL=a.js.map");
+		// maps the JavaScript line i to the Java line i + 10
+		SourceMapGeneratorV3 generator = (SourceMapGeneratorV3) SourceMapGeneratorFactory
+				.getInstance(SourceMapFormat.V3);
+		for (int line = 0; line < 5; line++) {
+			generator.addMapping("A.java", null, new FilePosition(line + 10, 0), new FilePosition(line, 0),
+					new FilePosition(line, 20));
+		}
+		StringBuilder sourceMap = new StringBuilder();
+		generator.appendTo(sourceMap, jsFile.getName());
+		FileUtils.write(mapFile, sourceMap);
+		try {
+			List<String> errors = new ClosureOptimizer(JsOptimizationLevel.simple, EcmaScriptComplianceLevel.ES5)
+					.optimize(jsFile);
+			assertTrue(errors.toString(), errors.isEmpty());
+			assertTrue(FileUtils.readFileToString(jsFile).endsWith("//# sourceMappingURL=a.js.map"));
+			// the optimized file still maps to the Java lines
+			SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+			consumer.parse(FileUtils.readFileToString(mapFile));
+			assertEquals(Arrays.asList("A.java"), new ArrayList<>(consumer.getOriginalSources()));
+			List<Integer> javaLines = new ArrayList<>();
+			consumer.visitMappings((sourceName, symbolName, javaPosition, startPosition, endPosition) -> {
+				javaLines.add(javaPosition.getLine());
+			});
+			assertFalse(javaLines.isEmpty());
+			for (int javaLine : javaLines) {
+				assertTrue(javaLines.toString(), javaLine >= 10 && javaLine < 15);
+			}
+		} finally {
+			FileUtils.deleteQuietly(dir);
+		}
+	}
+
+	@Test
+	public void testParallelOutputs() {
+		boolean sourceMaps = transpiler.isPreserveSourceLineNumbers();
+		Class<?>[] classes = { Point.class, Vector.class, AnimatedElement.class, Line.class, MobileElement.class,
+				Rectangle.class, Direction.class, Collisions.class, Ball.class, Globals.class, BlockElement.class,
+				Factory.class, GameArea.class, GameManager.class, Player.class };
+		SourceFile[] sequentialFiles = Arrays.stream(classes).map(this::getSourceFile).toArray(SourceFile[]::new);
+		String[] sequentialOutputs = new String[classes.length];
+		try {
+			transpiler.setPreserveSourceLineNumbers(true);
+			transpile(ModuleKind.commonjs, logHandler -> {
+				logHandler.assertNoProblems();
+				for (int i = 0; i < classes.length; i++) {
+					sequentialOutputs[i] = readOutputs(sequentialFiles[i]);
+				}
+			}, sequentialFiles);
+			transpiler.setOutputThreadCount(4);
+			SourceFile[] parallelFiles = Arrays.stream(classes).map(this::getSourceFile).toArray(SourceFile[]::new);
+			transpile(ModuleKind.commonjs, logHandler -> {
+				logHandler.assertNoProblems();
+				for (int i = 0; i < classes.length; i++) {
+					assertEquals(sequentialOutputs[i], readOutputs(parallelFiles[i]));
+				}
+			}, parallelFiles);
+		} finally {
+			transpiler.setOutputThreadCount(1);
+			transpiler.setPreserveSourceLineNumbers(sourceMaps);
+		}
+	}
+
+	private static String readOutputs(SourceFile sourceFile) {
+		return readFile(sourceFile.getTsFile()) + readFile(sourceFile.getJsFile())
+				+ readFile(sourceFile.getJsMapFile());
+	}
+
 	@Test
 	public void testDefaultHeader() {
 		SourceFile f = getSourceFile(CanvasDrawing.class);
@@ -390,6 +711,127 @@ public class TranspilerTests extends AbstractTest {
 		transpiler.setBundle(false);
 	}
 
+	@Test
+	public void testIncrementalTranspilation() {
+		transpiler.setIncremental(true);
+		try {
+			transpiler.clearIncrementalIndex();
+			SourceFile f1 = getSourceFile(CanvasDrawing.class);
+			long[] lastModified = { 0 };
+			transpile(ModuleKind.none, logHandler -> {
+				logHandler.assertNoProblems();
+				assertTrue(f1.getTsFile().exists());
+				lastModified[0] = f1.getTsFile().lastModified();
+			}, f1);
+			Thread.sleep(1100);
+			SourceFile f2 = getSourceFile(CanvasDrawing.class);
+			transpile(ModuleKind.none, logHandler -> {
+				logHandler.assertNoProblems();
+				assertEquals(f1.getTsFile(), f2.getTsFile());
+				assertEquals("unchanged file should not be rewritten", lastModified[0],
+						f2.getTsFile().lastModified());
+			}, f2);
+		} catch (InterruptedException e) {
+			fail(e.getMessage());
+		} finally {
+			transpiler.clearIncrementalIndex();
+			transpiler.setIncremental(false);
+		}
+	}
+
+	@Test
+	public void testInMemoryTsFiles() throws Exception {
+		File sourceDir = new File(transpiler.getWorkingDirectory(), "inMemory/source/inmemory");
+		File a = new File(sourceDir, "A.java").getAbsoluteFile();
+		File b = new File(sourceDir, "B.java").getAbsoluteFile();
+		FileUtils.write(a, "package source.inmemory; public class A { }", false);
+		FileUtils.write(b, "package source.inmemory; public class B { }", false);
+		transpiler.setInMemoryTsFiles(true);
+		try {
+			SourceFile aFile = new SourceFile(a);
+			SourceFile bFile = new SourceFile(b);
+			transpile(ModuleKind.commonjs, logHandler -> {
+				logHandler.assertNoProblems();
+				assertTrue(transpiler.getInMemoryTsFile(aFile.getTsFile()) != null);
+				assertTrue(transpiler.getInMemoryTsFile(bFile.getTsFile()) != null);
+				assertTrue(aFile.getJsFile().exists());
+				assertTrue(bFile.getJsFile().exists());
+			}, aFile, bFile);
+
+			FileUtils.write(a, "package source.inmemory; public class A { int i = 1; }", false);
+			FileUtils.deleteQuietly(b);
+			SourceFile aFile2 = new SourceFile(a);
+			transpile(ModuleKind.commonjs, logHandler -> {
+				logHandler.assertNoProblems();
+				assertTrue(transpiler.getInMemoryTsFile(aFile2.getTsFile()).toString().contains("= 1"));
+				assertNull("the TypeScript of a deleted source should be dropped",
+						transpiler.getInMemoryTsFile(bFile.getTsFile()));
+				try {
+					assertTrue(FileUtils.readFileToString(aFile2.getJsFile()).contains("this.i = 1"));
+				} catch (Exception e) {
+					fail(e.getMessage());
+				}
+			}, aFile2);
+		} finally {
+			transpiler.setInMemoryTsFiles(false);
+			FileUtils.deleteQuietly(sourceDir.getParentFile());
+		}
+	}
+
+	@Test
+	public void testIncrementalInvalidation() throws Exception {
+		File sourceDir = new File(transpiler.getWorkingDirectory(), "incremental/source/incremental");
+		File i = new File(sourceDir, "I.java").getAbsoluteFile();
+		File c = new File(sourceDir, "C.java").getAbsoluteFile();
+		File d = new File(sourceDir, "D.java").getAbsoluteFile();
+		FileUtils.write(i, "package source.incremental; public interface I { default String m() { return \"a\"; } }",
+				false);
+		FileUtils.write(c, "package source.incremental; public class C implements I { "
+				+ "public static void main(String[] args) { new C().m(); } }", false);
+		FileUtils.write(d, "package source.incremental; public class D { }", false);
+		transpiler.setIncremental(true);
+		transpiler.setPreserveSourceLineNumbers(true);
+		try {
+			transpiler.clearIncrementalIndex();
+			transpile(ModuleKind.none, logHandler -> {
+				logHandler.assertNoProblems();
+				assertEquals(new HashSet<>(Arrays.asList(i, c, d)),
+						transpiler.getIncrementalIndex().getTranslatedFiles());
+			}, new SourceFile(i), new SourceFile(c), new SourceFile(d));
+
+			// a new transpiler (as in a new process) reads the persisted index
+			createTranspiler(new JSweetFactory());
+			transpiler.setIncremental(true);
+			transpiler.setPreserveSourceLineNumbers(true);
+			SourceFile cFile = new SourceFile(c);
+			transpile(ModuleKind.none, logHandler -> {
+				logHandler.assertNoProblems();
+				assertTrue("units should be skipped", transpiler.getIncrementalIndex().getTranslatedFiles().isEmpty());
+				assertTrue(cFile.getSourceMap() != null);
+				assertEquals("context contributions should be replayed", Arrays.asList(c),
+						transpiler.getContext().entryFiles);
+			}, new SourceFile(i), cFile, new SourceFile(d));
+
+			// the default method's body is generated in the implementing class
+			FileUtils.write(i, "package source.incremental; public interface I { default String m() { return \"b\"; } }",
+					false);
+			SourceFile cFile2 = new SourceFile(c);
+			transpile(ModuleKind.none, logHandler -> {
+				logHandler.assertNoProblems();
+				assertEquals(new HashSet<>(Arrays.asList(i, c)), transpiler.getIncrementalIndex().getTranslatedFiles());
+				try {
+					assertTrue(FileUtils.readFileToString(cFile2.getTsFile()).contains("\"b\""));
+				} catch (Exception e) {
+					fail(e.getMessage());
+				}
+			}, new SourceFile(i), cFile2, new SourceFile(d));
+		} finally {
+			transpiler.clearIncrementalIndex();
+			FileUtils.deleteQuietly(sourceDir);
+			createTranspiler(new JSweetFactory());
+		}
+	}
+
 	@Test
 	public void testHeaderFile() {
 		SourceFile f = getSourceFile(CanvasDrawing.class);
@@ -16,11 +16,30 @@
  */
 package org.jsweet.test.transpiler;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jsweet.transpiler.SourceFile;
+import org.jsweet.transpiler.util.DirectedGraph;
+import org.jsweet.transpiler.util.Position;
+import org.jsweet.transpiler.util.SourceMap;
+import org.jsweet.transpiler.util.SourceMapComposer;
 import org.jsweet.transpiler.util.Util;
 import org.junit.Test;
 
+import com.google.debugging.sourcemap.FilePosition;
+import com.google.debugging.sourcemap.SourceMapConsumerV3;
+import com.google.debugging.sourcemap.SourceMapFormat;
+import com.google.debugging.sourcemap.SourceMapGeneratorFactory;
+import com.google.debugging.sourcemap.SourceMapGeneratorV3;
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
+
 public class UtilTests {
 
 	@Test
@@ -35,4 +54,117 @@ public class UtilTests {
 		assertEquals("..", Util.getRelativePath("/a/b/c", "/a/b"));
 	}
 	
+	
+	@Test
+	public void testSourceMapLookup() {
+		SourceMap sourceMap = new SourceMap();
+		sourceMap.addEntry(new Position(0, 1, 0), new Position(0, 0));
+		sourceMap.addEntry(new Position(10, 2, 4), new Position(1, 4));
+		sourceMap.addEntry(new Position(20, 2, 10), new Position(1, 12));
+		sourceMap.addEntry(new Position(30, 4, 4), new Position(3, 2));
+		assertEquals(1, sourceMap.findInputPosition(0, 0).getLine());
+		assertEquals(4, sourceMap.findInputPosition(1, 0).getColumn());
+		assertEquals(10, sourceMap.findInputPosition(1, 12).getColumn());
+		assertEquals(10, sourceMap.findInputPosition(1, 20).getColumn());
+		// no entry on line 2: closest previous entry
+		assertEquals(20, sourceMap.findInputPosition(2, 0).getPosition());
+		assertEquals(4, sourceMap.findInputPosition(3, 0).getLine());
+		assertNull(sourceMap.findInputPosition(4, 0));
+		sourceMap.shiftOutputPositions(2);
+		assertNull(sourceMap.findInputPosition(1, 0));
+		assertEquals(1, sourceMap.findInputPosition(2, 0).getLine());
+		assertEquals(4, sourceMap.findInputPosition(5, 0).getLine());
+		assertEquals(5, sourceMap.getSortedEntries((e1, e2) -> e1.getInputPosition().compareTo(e2.getInputPosition()))
+				.get(3).getOutputPosition().getLine());
+		sourceMap.removeLastInsertedEntry();
+		assertNull(sourceMap.findInputPosition(5, 0));
+		assertEquals(20, sourceMap.findInputPosition(3, 20).getPosition());
+
+		SourceMap emptySourceMap = new SourceMap();
+		assertNull(emptySourceMap.findInputPosition(0, 0));
+		emptySourceMap.addEntry(new Position(0, 1, 0), new Position(0, 0));
+		assertEquals(1, emptySourceMap.findInputPosition(0, 0).getLine());
+		emptySourceMap.removeLastInsertedEntry();
+		assertNull(emptySourceMap.findInputPosition(0, 0));
+	}
+
+	@Test
+	public void testSourceMapComposition() throws Exception {
+		File sourceDir = new File("src").getCanonicalFile();
+		SourceFile sourceFile = new SourceFile(new File(sourceDir, "p/A.java"));
+		// Java (1-based lines and columns) -> TypeScript (1-based lines,
+		// 0-based columns), as filled by the printer
+		SourceMap javaToTs = new SourceMap();
+		javaToTs.addEntry(new Position(40, 3, 5), new Position(1, 4));
+		javaToTs.addEntry(new Position(47, 3, 12), new Position(1, 10));
+		javaToTs.addEntry(new Position(60, 4, 9), new Position(2, 2));
+		sourceFile.setSourceMap(javaToTs);
+
+		// TypeScript -> JavaScript (0-based), as generated by tsc
+		SourceMapGeneratorV3 tsToJs = (SourceMapGeneratorV3) SourceMapGeneratorFactory
+				.getInstance(SourceMapFormat.V3);
+		tsToJs.addMapping("A.ts", null, new FilePosition(0, 4), new FilePosition(0, 8), new FilePosition(0, 14));
+		tsToJs.addMapping("A.ts", null, new FilePosition(0, 10), new FilePosition(0, 14), new FilePosition(0, 20));
+		tsToJs.addMapping("A.ts", null, new FilePosition(1, 2), new FilePosition(1, 6), new FilePosition(1, 12));
+		StringBuilder tsToJsMap = new StringBuilder();
+		tsToJs.appendTo(tsToJsMap, "A.js");
+
+		SourceMapGeneratorV3 javaToJs = new SourceMapComposer(sourceDir.toPath(), asList(sourceFile))
+				.compose(tsToJsMap.toString(), "");
+		StringBuilder javaToJsMap = new StringBuilder();
+		javaToJs.appendTo(javaToJsMap, "A.js");
+		SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+		consumer.parse(javaToJsMap.toString());
+
+		// consumer lookups and original mappings are 1-based
+		OriginalMapping mapping = consumer.getMappingForLine(1, 9);
+		assertEquals("p" + File.separator + "A.java", mapping.getOriginalFile());
+		assertEquals(3, mapping.getLineNumber());
+		assertEquals(5, mapping.getColumnPosition());
+		mapping = consumer.getMappingForLine(1, 15);
+		assertEquals(3, mapping.getLineNumber());
+		assertEquals(12, mapping.getColumnPosition());
+		mapping = consumer.getMappingForLine(2, 7);
+		assertEquals(4, mapping.getLineNumber());
+		assertEquals(9, mapping.getColumnPosition());
+	}
+
+	@Test
+	public void testDirectedGraph() {
+		DirectedGraph<Integer> g = new DirectedGraph<>();
+		g.add(7, 5, 3, 11, 8, 2, 9, 10);
+		g.addEdge(3, 5);
+		g.addEdge(7, 11);
+		g.addEdge(11, 2);
+		g.addEdge(11, 9);
+		g.addEdge(8, 9);
+		assertEquals(asList(7, 3, 8, 10, 11, 5, 2, 9), g.topologicalSort(null));
+		assertTrue(g.findCycles().isEmpty());
+
+		g.addEdge(9, 7);
+		g.addEdge(2, 3);
+		g.addEdge(5, 2);
+		List<Integer> unsorted = new ArrayList<>();
+		assertEquals(asList(8, 10), g.topologicalSort(n -> unsorted.add(n.element)));
+		assertEquals(asList(7, 5, 3, 11, 2, 9), unsorted);
+		assertEquals(asList(asList(2, 3, 5), asList(7, 11, 9)), g.findCycles());
+
+		g.remove(11);
+		assertEquals(asList(8, 10, 9, 7), g.topologicalSort(null));
+		assertEquals(asList(asList(5, 2, 3)), g.findCycles());
+
+		DirectedGraph<Integer> chain = new DirectedGraph<>();
+		int size = 50000;
+		for (int i = 0; i < size; i++) {
+			chain.add(i);
+		}
+		for (int i = 0; i < size - 1; i++) {
+			chain.addEdge(i, i + 1);
+		}
+		assertEquals(size, chain.topologicalSort(null).size());
+		assertTrue(chain.findCycles().isEmpty());
+		chain.addEdge(size - 1, 0);
+		assertEquals(size, chain.findCycles().get(0).size());
+	}
+
 }
@@ -0,0 +1,48 @@
+package source.init;
+
+import static jsweet.util.Lang.$export;
+
+public class TypedArrays {
+
+	public static void main(String[] args) {
+		int[] ints = new int[3];
+		ints[1] = 5;
+		double[] doubles = { 1.5, 2.5 };
+		int[][] matrix = new int[2][3];
+		matrix[1][2] = 7;
+		Object o = ints;
+
+		$export("ints", ints[0] + "," + ints[1] + "," + ints[2]);
+		$export("doubles", doubles[0] + doubles[1]);
+		$export("matrix", matrix.length + "," + matrix[1].length + "," + matrix[1][2]);
+		$export("instanceof", o instanceof int[]);
+		$export("sum", sum(ints));
+		$export("varargs", varargsSum(1, 2, 3));
+		$export("varargsArray", varargsSum(ints));
+		$export("varargsTyped", isTypedArray(1, 2));
+		$export("varargsConcat", count(1, ints));
+	}
+
+	static int varargsSum(int... values) {
+		// varargs are typed arrays as any other int array
+		return sum(values);
+	}
+
+	static boolean isTypedArray(int... values) {
+		Object o = values;
+		return o instanceof int[];
+	}
+
+	static int count(int first, int... values) {
+		return first + values.length;
+	}
+
+	static int sum(int[] array) {
+		int sum = 0;
+		for (int i : array) {
+			sum += i;
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,96 @@
+package source.nativestructures;
+
+import static jsweet.util.Lang.$export;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import def.js.Array;
+
+/**
+ * This test is executed without any Java runtime, with native collections.
+ */
+public class NativeCollections {
+
+	static Array<String> trace = new Array<>();
+
+	public static void main(String[] args) {
+		Set<String> s = new HashSet<>();
+		trace.push("" + s.add("a"));
+		s.add("b");
+		trace.push("" + s.add("a"));
+		trace.push("" + s.size());
+		trace.push("" + s.contains("b"));
+		trace.push("" + s.remove("a"));
+		trace.push("" + s.size());
+		for (String e : s) {
+			trace.push(e);
+		}
+		trace.push("" + s.isEmpty());
+		s.clear();
+		trace.push("" + s.isEmpty());
+
+		Map<String, Integer> m = new HashMap<>();
+		m.put("a", 1);
+		m.put("b", 2);
+		trace.push("" + m.get("a"));
+		trace.push("" + (m.get("c") == null));
+		trace.push("" + m.containsKey("b"));
+		trace.push("" + m.size());
+		for (String k : m.keySet()) {
+			trace.push(k);
+		}
+		for (Integer v : m.values()) {
+			trace.push("" + v);
+		}
+		trace.push("" + m.remove("a"));
+		trace.push("" + m.size());
+
+		trace.push("" + Collections.singleton("x").contains("x"));
+
+		trace.push("" + m.put("b", 3));
+		trace.push("" + (m.put("c", 4) == null));
+		m.putIfAbsent("c", 5);
+		trace.push("" + m.getOrDefault("c", 0) + m.getOrDefault("d", 0));
+		trace.push("" + m.containsValue(3));
+		Map<String, Integer> copy = new HashMap<>();
+		copy.putAll(m);
+		trace.push("" + copy.size());
+		m.forEach((k, v) -> trace.push(k + v));
+		trace.push("" + putAndCount(m, "d", 6));
+
+		Map<Object, String> objectKeys = new HashMap<>();
+		Object key = new Object();
+		objectKeys.put(key, "o");
+		trace.push(objectKeys.get(key));
+
+		Set<String> s2 = new HashSet<>();
+		s2.add("a");
+		s2.add("b");
+		s2.add("c");
+		List<String> l = new ArrayList<>(s2);
+		trace.push("" + l.size());
+		List<String> l2 = new ArrayList<>();
+		l2.addAll(s2);
+		trace.push("" + l2.size());
+		trace.push("" + s2.containsAll(l));
+		s2.removeAll(Collections.singletonList("a"));
+		trace.push("" + s2.size());
+		s2.retainAll(Collections.singletonList("b"));
+		trace.push("" + s2.size());
+		s2.forEach(e -> trace.push(e));
+
+		$export("trace", trace.join(","));
+	}
+
+	static <K, V> int putAndCount(Map<K, V> map, K key, V value) {
+		map.put(key, value);
+		return map.size();
+	}
+
+}
@@ -40,6 +40,15 @@ public class NativeStringBuilder {
 
 		trace.push("X" + sb2.toString());
 
+		StringBuilder sb3 = new StringBuilder("cd");
+		sb3.append("e").append('f').insert(0, "ab").insert(3, "_");
+		trace.push(sb3.toString());
+		sb3.deleteCharAt(3).setCharAt(0, 'A');
+		trace.push(sb3.toString() + sb3.length());
+		trace.push("" + sb3.charAt(4) + sb3.indexOf("d"));
+		sb3.delete(1, 4).reverse();
+		trace.push(sb3.toString());
+
 		$export("trace", trace.join(","));
 
 	}
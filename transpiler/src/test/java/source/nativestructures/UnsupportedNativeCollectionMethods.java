@@ -0,0 +1,22 @@
+package source.nativestructures;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This test is transpiled without any Java runtime, with native collections.
+ */
+public class UnsupportedNativeCollectionMethods {
+
+	public static void main(String[] args) {
+		Map<String, Integer> m = new HashMap<>();
+		m.put("a", 1);
+		m.remove("a", 1);
+		Set<String> s = new HashSet<>();
+		s.add("a");
+		s.removeIf(e -> e.isEmpty());
+	}
+
+}
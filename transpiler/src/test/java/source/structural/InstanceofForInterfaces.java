@@ -17,6 +17,7 @@
 package source.structural;
 
 import static jsweet.util.Lang.$export;
+import static jsweet.util.Lang.$map;
 
 import java.util.function.BinaryOperator;
 import java.util.function.IntFunction;
@@ -43,6 +44,13 @@ public class InstanceofForInterfaces {
 		}
 	}
 
+	static int evaluations = 0;
+
+	static Object next(Object o) {
+		evaluations++;
+		return o;
+	}
+
 	static void m2(BinaryOperator<String> op) {
 		assert op instanceof BinaryOperator && !(op instanceof IntFunction);
 	}
@@ -71,7 +79,15 @@ public class InstanceofForInterfaces {
 		if (c2 == InstanceofForInterfaces.class) {
 			trace.push("6");
 		}
+		// objects generated without interface sets
+		new InstanceofForInterfaces().m($map("__interfaces", new String[] { "source.structural.I1" }));
+		new InstanceofForInterfaces().m(
+				$map("__interfaceSet", $map(), "__interfaces", new String[] { "source.structural.I1" }));
+		if (next(new C3()) instanceof I1) {
+			trace.push("7");
+		}
 		$export("trace", trace.join());
+		$export("evaluations", evaluations);
 	}
 
 }
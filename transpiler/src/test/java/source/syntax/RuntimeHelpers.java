@@ -0,0 +1,18 @@
+package source.syntax;
+
+import static jsweet.util.Lang.$export;
+
+public class RuntimeHelpers {
+
+	public static void main(String[] args) {
+		char c = 'b';
+		int n = 12;
+		int[] numbers = new int[n];
+		String[][] strings = new String[2][3];
+		$export("charCode", c - 'a');
+		$export("compare", c > 'a');
+		$export("numbers", numbers.length + "," + numbers[11]);
+		$export("strings", strings.length + "," + strings[1].length);
+	}
+
+}
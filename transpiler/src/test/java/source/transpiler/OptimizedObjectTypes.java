@@ -0,0 +1,36 @@
+package source.transpiler;
+
+import static jsweet.util.Lang.$export;
+
+import def.js.JSON;
+import jsweet.lang.Interface;
+
+@Interface
+abstract class JsonPoint {
+	public double x;
+	public double y;
+}
+
+class Counter {
+	private int count;
+
+	void increment() {
+		count++;
+	}
+
+	int getCount() {
+		return count;
+	}
+}
+
+public class OptimizedObjectTypes {
+
+	public static void main(String[] args) {
+		// the properties of parsed objects must not be renamed
+		JsonPoint p = (JsonPoint) JSON.parse("{\"x\":1,\"y\":2}");
+		Counter c = new Counter();
+		c.increment();
+		$export("sum", p.x + p.y + c.getCount());
+	}
+
+}
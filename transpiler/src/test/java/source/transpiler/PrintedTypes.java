@@ -0,0 +1,15 @@
+package source.transpiler;
+
+import def.js.Array;
+
+public class PrintedTypes {
+
+	Array<String> names = new Array<>();
+
+	Array<String> values = new Array<>();
+
+	Array<String> select(Array<String> names, Array<String> values, String separator) {
+		return separator == null ? names : values;
+	}
+
+}
@@ -0,0 +1,51 @@
+package source.transpiler;
+
+import static jsweet.util.Lang.$export;
+
+import def.js.Array;
+
+public class TreeShaking {
+
+	static Array<String> trace = new Array<>();
+
+	public static void main(String[] args) {
+		Shape shape = new Square(2);
+		trace.push("" + shape.area());
+		trace.push(shape.toString());
+		$export("trace", trace.join(","));
+	}
+
+}
+
+abstract class Shape {
+
+	abstract int area();
+
+	abstract int perimeter();
+
+	@Override
+	public String toString() {
+		return "shape";
+	}
+
+}
+
+class Square extends Shape {
+
+	int side;
+
+	Square(int side) {
+		this.side = side;
+	}
+
+	@Override
+	int area() {
+		return side * side;
+	}
+
+	@Override
+	int perimeter() {
+		return 4 * side;
+	}
+
+}
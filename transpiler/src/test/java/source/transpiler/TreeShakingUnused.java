@@ -0,0 +1,9 @@
+package source.transpiler;
+
+public class TreeShakingUnused {
+
+	public int unreachable() {
+		return 0;
+	}
+
+}